@@ -0,0 +1,237 @@
+package com.prolog.jvm.benchmark;
+
+import static com.prolog.jvm.zip.util.Instructions.CALL;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prolog.jvm.main.Factory;
+import com.prolog.jvm.main.PreparedQuery;
+import com.prolog.jvm.main.Term;
+import com.prolog.jvm.zip.api.StepEvent;
+import com.prolog.jvm.zip.api.StepListener;
+import com.prolog.jvm.zip.api.ZipInterpreter;
+
+/**
+ * Benchmarks running classic Prolog workloads on the {@link ZipInterpreter},
+ * as found in {@code workloads.pl}. Each benchmark executes a single query up
+ * to its first answer, and declares the number of logical inferences (i.e.,
+ * predicate calls) made thereby as its operations per invocation. As such,
+ * the reported throughput is in logical inferences per second (LIPS). Said
+ * numbers are verified upon setup, so that changes to the compiler or
+ * interpreter affecting them are noticed. The exception is
+ * {@link #failFast()}, which reports the latency of a query failing upon its
+ * first call instead.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgramBenchmark {
+
+    // Class-path resource
+    private static final String WORKLOADS = "workloads.pl";
+
+    // Depth of the natural number recursed over by len/1
+    private static final int DEPTH = 2000;
+
+    // Number of facts in the generated fact table
+    private static final int FACTS = 1000;
+
+    // Depth of the binary trees unified by eq/2
+    private static final int TREE_DEPTH = 10;
+
+    // Logical inferences per query, including the call made by the query
+    static final int NREV_INFERENCES = 498;
+    static final int QUEENS_INFERENCES = 22238;
+    static final int ZEBRA_INFERENCES = 407;
+    static final int DEEP_INFERENCES = DEPTH + 1;
+    static final int LOOKUP_INFERENCES = 1;
+    static final int UNIFY_INFERENCES = 1;
+    static final int FAIL_INFERENCES = 1;
+
+    // Only the first answer is asked for
+    private final BufferedReader in = new BufferedReader(new StringReader(""));
+    private final Writer out = new NullWriter();
+
+    private PreparedQuery nrev;
+    private PreparedQuery queens;
+    private PreparedQuery zebra;
+    private PreparedQuery deep;
+    private PreparedQuery lookup;
+    private PreparedQuery unify;
+    private PreparedQuery fail;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final StringBuilder program = new StringBuilder();
+        try (final InputStream is = ProgramBenchmark.class
+                .getResourceAsStream(WORKLOADS);
+                final Reader reader = new InputStreamReader(is, "UTF-8")) {
+            final char[] buffer = new char[4096];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                program.append(buffer, 0, count);
+            }
+        }
+        for (int i = 0; i < FACTS; i++) {
+            program.append("fact(k").append(i).append(",v").append(i)
+                    .append(").\n");
+        }
+        try (final Reader source = new StringReader(program.toString())) {
+            Factory.newProgramCompiler().compile(source);
+        }
+
+        this.nrev = Factory.prepareQuery("nrev30.");
+        this.queens = Factory.prepareQuery("queens8.");
+        this.zebra = Factory.prepareQuery("solve_zebra.");
+        this.deep = Factory.prepareQuery("len(N).").bind("N",
+                natural(DEPTH));
+        this.lookup = Factory.prepareQuery("fact(K,V).").bind("K",
+                "k" + (FACTS - 1));
+        this.unify = Factory.prepareQuery("eq(A,B).")
+                .bind("A", tree(TREE_DEPTH)).bind("B", tree(TREE_DEPTH));
+        this.fail = Factory.prepareQuery("eq(a,b).");
+
+        verify(this.nrev, NREV_INFERENCES);
+        verify(this.queens, QUEENS_INFERENCES);
+        verify(this.zebra, ZEBRA_INFERENCES);
+        verify(this.deep, DEEP_INFERENCES);
+        verify(this.lookup, LOOKUP_INFERENCES);
+        verify(this.unify, UNIFY_INFERENCES);
+        verify(this.fail, FAIL_INFERENCES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NREV_INFERENCES)
+    public void nrev30() throws Exception {
+        this.nrev.execute(this.in, this.out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUEENS_INFERENCES)
+    public void queens8() throws Exception {
+        this.queens.execute(this.in, this.out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ZEBRA_INFERENCES)
+    public void zebra() throws Exception {
+        this.zebra.execute(this.in, this.out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DEEP_INFERENCES)
+    public void deepRecursion() throws Exception {
+        this.deep.execute(this.in, this.out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUP_INFERENCES)
+    public void factLookup() throws Exception {
+        this.lookup.execute(this.in, this.out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(UNIFY_INFERENCES)
+    public void deepUnification() throws Exception {
+        this.unify.execute(this.in, this.out);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void failFast() throws Exception {
+        this.fail.execute(this.in, this.out);
+    }
+
+    // Counts the predicate calls made by query, comparing them to expected
+    private void verify(final PreparedQuery query, final int expected)
+            throws Exception {
+        final CallCounter counter = new CallCounter();
+        Factory.getInterpreter().register(counter);
+        try {
+            query.execute(this.in, this.out);
+        } finally {
+            Factory.getInterpreter().unregister(counter);
+        }
+        if (counter.calls != expected) {
+            throw new IllegalStateException(String.format(
+                    "Expected %d inferences, but counted %d", expected,
+                    counter.calls));
+        }
+    }
+
+    // Returns the natural number n in successor notation
+    private static Term natural(final int n) {
+        Term result = Term.atom("z");
+        for (int i = 0; i < n; i++) {
+            result = Term.compound("s", result);
+        }
+        return result;
+    }
+
+    // Returns a complete binary tree of the specified depth
+    private static Term tree(final int depth) {
+        if (depth == 0) {
+            return Term.atom("leaf");
+        }
+        final Term subtree = tree(depth - 1);
+        return Term.compound("t", subtree, subtree);
+    }
+
+    private static final class CallCounter implements StepListener {
+        private int calls;
+
+        @Override
+        public void handleEvent(final StepEvent event) {
+            if (event.getOpcode() == CALL) {
+                this.calls++;
+            }
+        }
+    }
+
+    // Discards the answers written by the interpreter
+    private static final class NullWriter extends Writer {
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len)
+                throws IOException {
+            // Discard
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Nothing to flush
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Nothing to close
+        }
+    }
+}
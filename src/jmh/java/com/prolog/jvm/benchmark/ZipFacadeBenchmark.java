@@ -0,0 +1,140 @@
+package com.prolog.jvm.benchmark;
+
+import static com.prolog.jvm.zip.util.MemoryConstants.MIN_HEAP_INDEX;
+import static com.prolog.jvm.zip.util.PlWords.REF;
+import static com.prolog.jvm.zip.util.PlWords.getWord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.prolog.jvm.exceptions.BacktrackException;
+import com.prolog.jvm.main.Factory;
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.zip.ZipFacadeImpl;
+import com.prolog.jvm.zip.api.ZipFacade;
+import com.prolog.jvm.zip.util.PlWords;
+
+/**
+ * Microbenchmarks for the runtime primitives of {@link ZipFacadeImpl}, run on
+ * the instance returned by {@link Factory#getMachine()}. Each benchmark
+ * leaves the machine in the state it found it in, so that its invocations can
+ * be repeated indefinitely; the sole exception being {@link #pushFunctor()},
+ * which resets the machine once per batch of pushes instead.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipFacadeBenchmark {
+
+    // Number of structures pushed per invocation of pushFunctor
+    private static final int BATCH = 1000;
+
+    // Length of the reference chain dereferenced by deref
+    private static final int CHAIN = 8;
+
+    // Depth of the binary trees unified by unifiable
+    private static final int TREE_DEPTH = 6;
+
+    private final ZipFacade facade = Factory.getMachine();
+    private final List<Integer> vars = new ArrayList<>();
+    private final ClauseSymbol clause = new ClauseSymbol();
+
+    private final FunctorSymbol leaf = FunctorSymbol.valueOf("leaf");
+    private final FunctorSymbol node = FunctorSymbol.valueOf("t", 2);
+
+    private int chain; // Start of a reference chain
+    private int left;  // Address of a binary tree
+    private int right; // Address of a copy of the former
+    private int var;   // Address of an unbound variable
+    private int atom;  // Address of an atom
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final FunctorSymbol root = FunctorSymbol.valueOf("root", 4);
+        final FunctorSymbol links = FunctorSymbol.valueOf("links", CHAIN);
+        for (final FunctorSymbol symbol : new FunctorSymbol[] { this.leaf,
+                this.node, root, links }) {
+            Factory.getBytecode().getConstantPoolIndex(symbol);
+        }
+
+        this.facade.reset(MIN_HEAP_INDEX);
+        final int args = PlWords.getValue(this.facade.pushFunctor(root));
+        this.var = args + 1;
+        this.atom = args + 2;
+        this.left = args + 3;
+        this.right = args + 4;
+        this.facade.setWord(this.atom, this.leaf);
+        writeTree(this.left, TREE_DEPTH);
+        writeTree(this.right, TREE_DEPTH);
+
+        // Each argument refers to the next, the last being bound to an atom
+        this.chain = PlWords.getValue(this.facade.pushFunctor(links)) + 1;
+        for (int i = 0; i < CHAIN - 1; i++) {
+            this.facade.setWord(this.chain + i,
+                    getWord(REF, this.chain + i + 1));
+        }
+        this.facade.setWord(this.chain + CHAIN - 1, this.leaf);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int pushFunctor() {
+        this.facade.reset(MIN_HEAP_INDEX);
+        int word = 0;
+        for (int i = 0; i < BATCH; i++) {
+            word = this.facade.pushFunctor(this.node);
+        }
+        return word;
+    }
+
+    @Benchmark
+    public int deref() {
+        return this.facade.getWordAt(this.chain);
+    }
+
+    @Benchmark
+    public List<Integer> unifiable() {
+        return this.facade.unifiable(this.left, this.right);
+    }
+
+    @Benchmark
+    public int backtrack() throws BacktrackException {
+        this.facade.pushChoicePoint(this.clause, 0L, 0);
+        this.facade.bind(this.var, this.atom);
+        this.vars.clear();
+        return this.facade.backtrack(this.vars);
+    }
+
+    // Writes a complete binary tree of the specified depth to address
+    private void writeTree(final int address, final int depth) {
+        if (depth == 0) {
+            this.facade.setWord(address, this.leaf);
+            return;
+        }
+        final int word = this.facade.pushFunctor(this.node);
+        this.facade.setWord(address, word);
+        writeTree(PlWords.getValue(word) + 1, depth - 1);
+        writeTree(PlWords.getValue(word) + 2, depth - 1);
+    }
+}
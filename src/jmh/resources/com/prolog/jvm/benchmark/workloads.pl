@@ -0,0 +1,84 @@
+/*
+ * Classic Prolog benchmark workloads, written for the core language supported
+ * by Prolog-JVM. Lists use cons/2 as a constructor, and natural numbers are
+ * written in successor notation, using z for zero.
+ */
+
+% Naive reverse of a list of 30 elements (496 logical inferences).
+nrev([],[]).
+nrev(cons(X,XS),YS) :- nrev(XS,ZS), app(ZS,cons(X,[]),YS).
+
+app([],YS,YS).
+app(cons(X,XS),YS,cons(X,ZS)) :- app(XS,YS,ZS).
+
+list30(cons(a1,cons(a2,cons(a3,cons(a4,cons(a5,cons(a6,cons(a7,cons(a8,
+    cons(a9,cons(a10,cons(a11,cons(a12,cons(a13,cons(a14,cons(a15,cons(a16,
+    cons(a17,cons(a18,cons(a19,cons(a20,cons(a21,cons(a22,cons(a23,cons(a24,
+    cons(a25,cons(a26,cons(a27,cons(a28,cons(a29,cons(a30,
+    []))))))))))))))))))))))))))))))).
+
+nrev30 :- list30(L), nrev(L,R).
+
+% The first solution to the 8 queens problem, placing queens one at a time.
+queens(Ns,Qs) :- place(Ns,[],Qs).
+
+place([],Qs,Qs).
+place(Ns,Safe,Qs) :-
+    sel(Q,Ns,Rest), noattack(Q,Safe,s(z)), place(Rest,cons(Q,Safe),Qs).
+
+noattack(Q,[],D).
+noattack(Q,cons(Y,Ys),D) :-
+    add(Y,D,YD), neq(Q,YD), add(Q,D,QD), neq(Y,QD), noattack(Q,Ys,s(D)).
+
+sel(X,cons(X,XS),XS).
+sel(X,cons(Y,YS),cons(Y,ZS)) :- sel(X,YS,ZS).
+
+add(z,Y,Y).
+add(s(X),Y,s(Z)) :- add(X,Y,Z).
+
+neq(z,s(X)).
+neq(s(X),z).
+neq(s(X),s(Y)) :- neq(X,Y).
+
+queens8 :- queens(cons(s(z),cons(s(s(z)),cons(s(s(s(z))),
+    cons(s(s(s(s(z)))),cons(s(s(s(s(s(z))))),cons(s(s(s(s(s(s(z)))))),
+    cons(s(s(s(s(s(s(s(z))))))),cons(s(s(s(s(s(s(s(s(z)))))))),
+    [])))))))),Qs).
+
+% The zebra puzzle, as popularized by Life International in 1962.
+zebra(Zebra,Water) :-
+    houses(Hs),
+    mem(h(red,english,P1,D1,S1),Hs),
+    mem(h(green,N2,P2,coffee,S2),Hs),
+    right_of(h(green,N3,P3,D3,S3),h(ivory,N4,P4,D4,S4),Hs),
+    mem(h(C5,spaniard,dog,D5,S5),Hs),
+    mem(h(yellow,N6,P6,D6,kools),Hs),
+    mem(h(C7,ukrainian,P7,tea,S7),Hs),
+    mem(h(C8,N8,snails,D8,winston),Hs),
+    next_to(h(C9,N9,P9,D9,chesterfield),h(C10,N10,fox,D10,S10),Hs),
+    next_to(h(C11,N11,P11,D11,kools),h(C12,N12,horse,D12,S12),Hs),
+    mem(h(C13,N13,P13,orange_juice,lucky),Hs),
+    mem(h(C14,japanese,P14,D14,parliament),Hs),
+    mem(h(C15,Zebra,zebra,D15,S15),Hs),
+    mem(h(C16,Water,P16,water,S16),Hs).
+
+houses(cons(h(C1,norwegian,P1,D1,S1),cons(h(blue,N2,P2,D2,S2),
+    cons(h(C3,N3,P3,milk,S3),cons(H4,cons(H5,[])))))).
+
+right_of(A,B,cons(B,cons(A,T))).
+right_of(A,B,cons(H,T)) :- right_of(A,B,T).
+
+next_to(A,B,L) :- right_of(A,B,L).
+next_to(A,B,L) :- right_of(B,A,L).
+
+mem(X,cons(X,T)).
+mem(X,cons(H,T)) :- mem(X,T).
+
+solve_zebra :- zebra(Zebra,Water).
+
+% Deep recursion over a natural number, bound from Java.
+len(z).
+len(s(N)) :- len(N).
+
+% Unification of two structures, bound from Java.
+eq(X,X).
@@ -20,6 +20,7 @@ import com.prolog.jvm.symbol.Scope;
 import com.prolog.jvm.symbol.Symbol;
 import com.prolog.jvm.symbol.SymbolKey;
 import com.prolog.jvm.zip.api.PrologBytecode;
+import com.prolog.jvm.zip.util.Instructions;
 
 /**
  * Abstract implementation of a Prolog compiler based on the Template method
@@ -78,9 +79,24 @@ public abstract class AbstractCompiler {
             RecognitionException {
         this.root = constructAst(requireNonNull(source));
         this.symbols = resolveSymbols();
+        annotateSymbols();
         generateBytecode();
     }
 
+    /**
+     * Returns the target for writing the generated bytecode to.
+     */
+    protected final PrologBytecode<?> getCode() {
+        return this.code;
+    }
+
+    /**
+     * Returns the ground scope used when resolving symbols.
+     */
+    protected final Scope getScope() {
+        return this.scope;
+    }
+
     // First compiler pass.
     private Ast constructAst(final Reader source) throws IOException,
             RecognitionException {
@@ -92,7 +108,8 @@ public abstract class AbstractCompiler {
 
     // Second compiler pass.
     private Map<Ast, Symbol> resolveSymbols() {
-        final SymbolResolver visitor = new SymbolResolver(this.scope);
+        final SymbolResolver visitor = new SymbolResolver(this.scope,
+                allocatesSingletons());
         walkAst(this.root, visitor);
         verifySymbols();
         return visitor.getSymbols();
@@ -101,12 +118,18 @@ public abstract class AbstractCompiler {
     // Third compiler pass.
     private void generateBytecode() {
         final BytecodeGenerator visitor = new BytecodeGenerator(this.symbols,
-                this.code);
+                this.code, internsGroundTerms());
         walkAst(this.root, visitor);
     }
 
-    // Checks for each declared predicate if it has any clauses.
-    private void verifySymbols() {
+    /**
+     * Checks for each predicate declared in the ground scope if it has any
+     * clauses.
+     *
+     * @throws InternalCompilerException if a predicate without clauses was
+     * found
+     */
+    protected final void verifySymbols() {
         for (SymbolKey<?> key : this.scope.getKeys()) {
             if (key.getSymbolClass().equals(PredicateSymbol.class)) {
                 final PredicateSymbol symbol = (PredicateSymbol) this.scope
@@ -120,6 +143,35 @@ public abstract class AbstractCompiler {
         }
     }
 
+    /**
+     * Hook invoked in between symbol resolution and bytecode generation,
+     * allowing subclasses to annotate the {@link Symbol}s found in
+     * {@link #symbols} in ways affecting the generated code. Does nothing by
+     * default.
+     */
+    protected void annotateSymbols() {
+        // Nothing.
+    }
+
+    /**
+     * Returns whether variables occurring only once in a clause are to be
+     * allocated a slot in its activation record all the same, rather than
+     * being compiled to {@link Instructions#VOID}. Returns false by default.
+     */
+    protected boolean allocatesSingletons() {
+        return false;
+    }
+
+    /**
+     * Returns whether ground compound terms are to be stored in the static
+     * area of the target bytecode, if it has one, rather than being compiled
+     * to instructions copying them to the global stack. Returns true by
+     * default.
+     */
+    protected boolean internsGroundTerms() {
+        return true;
+    }
+
     /**
      * Template method for returning a visitor for the initial source pass.
      */
@@ -0,0 +1,181 @@
+package com.prolog.jvm.compiler;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.prolog.jvm.compiler.ast.Ast;
+import com.prolog.jvm.compiler.ast.AstWalker;
+import com.prolog.jvm.compiler.parser.PrologParser;
+import com.prolog.jvm.compiler.parser.Tokens;
+import com.prolog.jvm.compiler.visitor.BytecodeGenerator;
+import com.prolog.jvm.compiler.visitor.PrologVisitor;
+import com.prolog.jvm.compiler.visitor.SourcePass;
+import com.prolog.jvm.compiler.visitor.SymbolResolver;
+import com.prolog.jvm.exceptions.InternalCompilerException;
+import com.prolog.jvm.exceptions.RecognitionException;
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.symbol.PredicateSymbol;
+import com.prolog.jvm.symbol.Scope;
+import com.prolog.jvm.symbol.Symbol;
+import com.prolog.jvm.symbol.SymbolKey;
+import com.prolog.jvm.symbol.SymbolKeys;
+import com.prolog.jvm.zip.api.PrologBytecode;
+
+/**
+ * A compiler for clauses that are to be added to an already compiled program.
+ * The clauses are resolved against a scope of their own, after which calls to
+ * predicates already defined in the ground scope are linked to the latter, and
+ * their bytecode is written at the current end of the code memory.
+ * <p>
+ * Unlike other compilers, the compiled clauses are not yet added to the clause
+ * alternatives of their predicates, leaving it to clients to decide where (and
+ * when) to do so through {@link #getClauses()}. As such, calls in progress
+ * remain unaffected by compilation.
+ * <p>
+ * Ground terms are not stored in the static area, since the latter is never
+ * reclaimed, whereas the compiled clauses may later be retracted.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class IncrementalCompiler extends AbstractCompiler {
+
+    // Canonical predicates, mapped to the first of their compiled clauses
+    private final Map<PredicateSymbol,ClauseSymbol> clauses =
+            new LinkedHashMap<>();
+
+    /**
+     * @param code the target for writing the generated bytecode to; not allowed
+     * to be null
+     * @param scope the ground scope of the compiled program; not allowed to be
+     * null
+     * @throws NullPointerException if {@code code == null || scope == null}
+     */
+    public IncrementalCompiler(final PrologBytecode<?> code,
+            final Scope scope) {
+        super(code, scope);
+    }
+
+    /**
+     * Compiles the clauses in the specified {@code source}. Predicates and
+     * functors not yet found in the ground scope are defined therein, though
+     * predicates only after the source has been verified to not call any
+     * predicates for which no clauses were defined.
+     *
+     * @throws InternalCompilerException if a predicate was called without it
+     * being defined either in {@code source} or the ground scope
+     */
+    @Override
+    public void compile(final Reader source) throws IOException,
+            RecognitionException {
+        final SourcePass visitor = createSourcePassVisitor();
+        parseSource(PrologParser.newInstance(requireNonNull(source), visitor));
+        this.root = visitor.getAst();
+        final Scope unitScope = Scope.newRootInstance();
+        final SymbolResolver resolver = new SymbolResolver(unitScope);
+        walkAst(this.root, resolver);
+        verifyPredicates(unitScope);
+        final Map<PredicateSymbol,PredicateSymbol> canonical =
+                link(unitScope);
+        final Map<Ast,Symbol> symbols = new IdentityHashMap<>(
+                resolver.getSymbols());
+        for (final Map.Entry<Ast,Symbol> entry : symbols.entrySet()) {
+            if (entry.getValue() instanceof PredicateSymbol) {
+                entry.setValue(canonical.get(entry.getValue()));
+            }
+        }
+        this.symbols = Collections.unmodifiableMap(symbols);
+        walkAst(this.root, new BytecodeGenerator(this.symbols, getCode(),
+                false));
+    }
+
+    /**
+     * Returns an unmodifiable view of the compiled clauses, mapping each of the
+     * predicates for which clauses were compiled (as found in the ground
+     * scope) to the first thereof. Subsequent clauses for the same predicate
+     * are reached through {@link ClauseSymbol#getNext()}, in the order in
+     * which they appeared in the source.
+     */
+    public Map<PredicateSymbol,ClauseSymbol> getClauses() {
+        return Collections.unmodifiableMap(this.clauses);
+    }
+
+    @Override
+    protected SourcePass createSourcePassVisitor() {
+        return new SourcePass(Tokens.PROGRAM);
+    }
+
+    @Override
+    protected void parseSource(final PrologParser parser) throws IOException,
+            RecognitionException {
+        parser.parseProgram();
+    }
+
+    @Override
+    protected void walkAst(final Ast root, final PrologVisitor<Ast> visitor) {
+        AstWalker.INSTANCE.walkProgram(root, visitor);
+    }
+
+    // Checks each called predicate is defined here or in the ground scope
+    private void verifyPredicates(final Scope unitScope) {
+        for (final SymbolKey<?> key : unitScope.getKeys()) {
+            if (key.getSymbolClass().equals(PredicateSymbol.class)) {
+                final PredicateSymbol symbol = (PredicateSymbol) unitScope
+                        .resolveLocal(key);
+                if (symbol.getFirst() == null
+                        && getScope().resolveLocal(key) == null) {
+                    throw new InternalCompilerException(
+                            "No clauses defined for predicate "
+                                    + key.toString());
+                }
+            }
+        }
+    }
+
+    /*
+     * Defines the predicates and functors resolved in unitScope in the ground
+     * scope if not found there already, returning the canonical instance for
+     * each predicate and recording its compiled clauses.
+     */
+    private Map<PredicateSymbol,PredicateSymbol> link(final Scope unitScope) {
+        final Scope scope = getScope();
+        final Map<PredicateSymbol,PredicateSymbol> canonical =
+                new IdentityHashMap<>();
+        for (final SymbolKey<?> key : unitScope.getKeys()) {
+            final Class<?> clazz = key.getSymbolClass();
+            if (clazz.equals(PredicateSymbol.class)) {
+                final PredicateSymbol symbol = (PredicateSymbol) unitScope
+                        .resolveLocal(key);
+                final SymbolKey<PredicateSymbol> predicateKey = SymbolKeys
+                        .ofPredicate(symbol.getName(), symbol.getArity());
+                PredicateSymbol previous = scope.resolveLocal(predicateKey);
+                if (previous == null) {
+                    // A new instance, its clauses still to be added by clients
+                    previous = new PredicateSymbol(symbol.getName(),
+                            symbol.getArity());
+                    scope.defineLocal(predicateKey, previous);
+                }
+                canonical.put(symbol, previous);
+                if (symbol.getFirst() != null) {
+                    this.clauses.put(previous, symbol.getFirst());
+                }
+            } else if (clazz.equals(FunctorSymbol.class)) {
+                final FunctorSymbol symbol = (FunctorSymbol) unitScope
+                        .resolveLocal(key);
+                final SymbolKey<FunctorSymbol> functorKey = SymbolKeys
+                        .ofFunctor(symbol.getName(), symbol.getArity());
+                if (scope.resolveLocal(functorKey) == null) {
+                    scope.defineLocal(functorKey, symbol);
+                }
+            }
+        }
+        return canonical;
+    }
+}
@@ -0,0 +1,260 @@
+package com.prolog.jvm.compiler;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.prolog.jvm.compiler.ast.Ast;
+import com.prolog.jvm.compiler.ast.AstWalker;
+import com.prolog.jvm.compiler.parser.MappedFileReader;
+import com.prolog.jvm.compiler.parser.PrologParser;
+import com.prolog.jvm.compiler.parser.Tokens;
+import com.prolog.jvm.compiler.visitor.BytecodeGenerator;
+import com.prolog.jvm.compiler.visitor.PrologVisitor;
+import com.prolog.jvm.compiler.visitor.SourcePass;
+import com.prolog.jvm.compiler.visitor.SymbolResolver;
+import com.prolog.jvm.exceptions.InternalCompilerException;
+import com.prolog.jvm.exceptions.RecognitionException;
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.symbol.PredicateSymbol;
+import com.prolog.jvm.symbol.Scope;
+import com.prolog.jvm.symbol.Symbol;
+import com.prolog.jvm.symbol.SymbolKey;
+import com.prolog.jvm.zip.api.PrologBytecode;
+
+/**
+ * A compiler for Prolog programs spread over multiple source files, which are
+ * lexed, parsed and resolved in parallel on a {@link ForkJoinPool}. Each file
+ * is resolved against a scope of its own, after which the results are merged
+ * into the ground scope in the order in which the files were supplied, and
+ * bytecode is generated for them in that same order. As such, the outcome is
+ * the same as that of compiling the concatenation of the files with
+ * {@link ProgramCompiler}, including the order of each predicate's clause
+ * alternatives.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class ParallelProgramCompiler extends AbstractCompiler {
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param code the target for writing the generated bytecode to; not allowed
+     * to be null
+     * @param scope the ground scope to use when resolving symbols; not allowed
+     * to be null
+     * @param pool the pool for compiling files in parallel; not allowed to be
+     * null
+     * @throws NullPointerException if {@code code == null || scope == null ||
+     * pool == null}
+     */
+    public ParallelProgramCompiler(final PrologBytecode<?> code,
+            final Scope scope, final ForkJoinPool pool) {
+        super(code, scope);
+        this.pool = requireNonNull(pool);
+    }
+
+    /**
+     * Compiles the specified source {@code files} as a single program.
+     *
+     * @param files the source files, in the order their clauses are to be
+     * tried; not allowed to be null
+     * @throws IOException
+     * @throws NullPointerException if {@code files == null}
+     * @throws RecognitionException if a lexer- or parsing error occurred
+     */
+    public void compile(final List<Path> files) throws IOException,
+            RecognitionException {
+        final List<Callable<Unit>> tasks = new ArrayList<>();
+        for (final Path file : files) {
+            tasks.add(new FileTask(requireNonNull(file)));
+        }
+        final List<Unit> units = new ArrayList<>();
+        for (final Future<Unit> future : this.pool.invokeAll(tasks)) {
+            units.add(getResult(future));
+        }
+        final Map<PredicateSymbol,PredicateSymbol> canonical =
+                new IdentityHashMap<>();
+        for (final Unit unit : units) {
+            merge(unit.scope, canonical);
+        }
+        for (final Unit unit : units) {
+            generateBytecode(unit, canonical);
+        }
+        verifySymbols();
+    }
+
+    @Override
+    protected SourcePass createSourcePassVisitor() {
+        return new SourcePass(Tokens.PROGRAM);
+    }
+
+    @Override
+    protected void parseSource(final PrologParser parser) throws IOException,
+            RecognitionException {
+        parser.parseProgram();
+    }
+
+    @Override
+    protected void walkAst(final Ast root, final PrologVisitor<Ast> visitor) {
+        AstWalker.INSTANCE.walkProgram(root, visitor);
+    }
+
+    // === Merging ===
+
+    /*
+     * Merges the symbols of a single file into the ground scope, appending its
+     * clause alternatives to those of the preceding files and recording the
+     * canonical instance for each of its predicate symbols.
+     */
+    private void merge(final Scope unitScope,
+            final Map<PredicateSymbol,PredicateSymbol> canonical) {
+        final Scope scope = getScope();
+        for (final SymbolKey<?> key : unitScope.getKeys()) {
+            final Class<?> clazz = key.getSymbolClass();
+            if (clazz.equals(PredicateSymbol.class)) {
+                mergePredicate(cast(key, PredicateSymbol.class), unitScope,
+                        canonical);
+            } else if (clazz.equals(ClauseSymbol.class)) {
+                // The last clause alternative so far
+                final SymbolKey<ClauseSymbol> clauseKey = cast(key,
+                        ClauseSymbol.class);
+                scope.defineLocal(clauseKey, unitScope.resolveLocal(clauseKey));
+            } else if (clazz.equals(FunctorSymbol.class)) {
+                final SymbolKey<FunctorSymbol> functorKey = cast(key,
+                        FunctorSymbol.class);
+                if (scope.resolveLocal(functorKey) == null) {
+                    scope.defineLocal(functorKey,
+                            unitScope.resolveLocal(functorKey));
+                }
+            }
+        }
+    }
+
+    private void mergePredicate(final SymbolKey<PredicateSymbol> key,
+            final Scope unitScope,
+            final Map<PredicateSymbol,PredicateSymbol> canonical) {
+        final PredicateSymbol symbol = unitScope.resolveLocal(key);
+        final PredicateSymbol previous = getScope().resolveLocal(key);
+        if (previous == null) {
+            getScope().defineLocal(key, symbol);
+            canonical.put(symbol, symbol);
+            return;
+        }
+        canonical.put(symbol, previous);
+        final ClauseSymbol first = symbol.getFirst();
+        if (first == null) {
+            return; // Only called, but not defined, in this file
+        }
+        if (previous.getFirst() == null) {
+            previous.setFirst(first);
+            return;
+        }
+        ClauseSymbol last = previous.getFirst();
+        while (last.getNext() != null) {
+            last = last.getNext();
+        }
+        last.setNext(first);
+    }
+
+    // Generates the bytecode for a file, using canonical predicate symbols
+    private void generateBytecode(final Unit unit,
+            final Map<PredicateSymbol,PredicateSymbol> canonical) {
+        final Map<Ast,Symbol> symbols = new IdentityHashMap<>(unit.symbols);
+        for (final Map.Entry<Ast,Symbol> entry : symbols.entrySet()) {
+            if (entry.getValue() instanceof PredicateSymbol) {
+                entry.setValue(canonical.get(entry.getValue()));
+            }
+        }
+        walkAst(unit.root, new BytecodeGenerator(symbols, getCode()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Symbol> SymbolKey<T> cast(
+            final SymbolKey<?> key, final Class<T> clazz) {
+        assert key.getSymbolClass().equals(clazz);
+        return (SymbolKey<T>) key;
+    }
+
+    // Unwraps the result of a FileTask, rethrowing any exception it raised
+    private static Unit getResult(final Future<Unit> future)
+            throws IOException, RecognitionException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            Throwable cause = e.getCause();
+            // Unwrap checked exceptions wrapped by the pool
+            while (cause.getClass() == RuntimeException.class
+                    && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RecognitionException) {
+                throw (RecognitionException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new InternalCompilerException(cause);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalCompilerException(e);
+        }
+    }
+
+    // === Parallel tasks ===
+
+    // The outcome of parsing and resolving a single file
+    private static final class Unit {
+        private final Ast root;
+        private final Scope scope;
+        private final Map<Ast,Symbol> symbols;
+
+        private Unit(final Ast root, final Scope scope,
+                final Map<Ast,Symbol> symbols) {
+            this.root = root;
+            this.scope = scope;
+            this.symbols = symbols;
+        }
+    }
+
+    // Parses a file and resolves its symbols against a scope of its own
+    private final class FileTask implements Callable<Unit> {
+        private final Path file;
+
+        private FileTask(final Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public Unit call() throws IOException, RecognitionException {
+            try (final Reader reader = MappedFileReader
+                    .newInstance(this.file)) {
+                final SourcePass visitor = createSourcePassVisitor();
+                parseSource(PrologParser.newInstance(reader, visitor));
+                final Ast root = visitor.getAst();
+                final Scope scope = Scope.newRootInstance();
+                final SymbolResolver resolver = new SymbolResolver(scope);
+                walkAst(root, resolver);
+                return new Unit(root, scope, resolver.getSymbols());
+            }
+        }
+    }
+}
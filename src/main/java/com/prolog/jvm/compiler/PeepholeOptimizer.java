@@ -0,0 +1,166 @@
+package com.prolog.jvm.compiler;
+
+import static com.prolog.jvm.zip.util.Instructions.CALL;
+import static com.prolog.jvm.zip.util.Instructions.ENTER;
+import static com.prolog.jvm.zip.util.Instructions.EXIT;
+import static com.prolog.jvm.zip.util.Instructions.FUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.LASTFUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.POP;
+import static com.prolog.jvm.zip.util.Instructions.RETURN;
+import static com.prolog.jvm.zip.util.Instructions.VOIDFUNCTOR;
+import static java.util.Objects.requireNonNull;
+
+import java.nio.IntBuffer;
+
+import com.prolog.jvm.main.Factory;
+import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.zip.api.PrologBytecode;
+import com.prolog.jvm.zip.util.Instructions;
+
+/**
+ * Optimization pass over the bytecode of a single clause, rewriting it in
+ * place right after it was generated. Two patterns are rewritten, both saving
+ * a {@link Instructions#POP} as well as the scratchpad push it would undo:
+ * <ul>
+ * <li>A {@link Instructions#FUNCTOR} immediately followed by its POP, as for a
+ * compound term whose arguments are all void, is fused into a single
+ * {@link Instructions#VOIDFUNCTOR}.
+ * <li>A FUNCTOR whose POP is followed by another, as for a compound term
+ * occurring as the last argument of another, becomes a
+ * {@link Instructions#LASTFUNCTOR}, leaving it to the enclosing term's POP to
+ * restore the stack address and processor mode. Right-nested terms, such as
+ * lists, are thereby matched and copied using constant scratchpad space. The
+ * same applies if the POP is followed by an {@link Instructions#ENTER},
+ * {@link Instructions#RETURN} or {@link Instructions#CALL}, as for the last
+ * argument of a literal, these being dispatched in COPY mode as well.
+ * </ul>
+ * A {@link Listener} may be set for reporting the number of instructions of
+ * each clause before and after optimization.
+ * <p>
+ * It is recommended that client code does not instantiate this class
+ * directly, but rather use the instance obtained through
+ * {@link Factory#getPeepholeOptimizer()}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class PeepholeOptimizer {
+
+    private volatile Listener listener;
+    private volatile boolean enabled = true;
+
+    /**
+     * Sets the listener to report to, or disables reporting if {@code null}.
+     */
+    public void setListener(final Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets whether to optimize at all, as for comparing the performance of
+     * the optimized code against that of the original. Enabled by default.
+     */
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Optimizes the bytecode of a single clause, ranging from {@code start}
+     * up to the size of the written bytecode, possibly reducing the latter.
+     *
+     * @param code the bytecode to optimize; not allowed to be null
+     * @param start the address of the clause's first instruction
+     * @param head the functor of the clause's head literal, used only for
+     * reporting; not allowed to be null
+     * @throws NullPointerException if {@code code == null || head == null}
+     */
+    public void optimize(final PrologBytecode<?> code, final int start,
+            final FunctorSymbol head) {
+        requireNonNull(head);
+        if (!this.enabled) {
+            return;
+        }
+        final int[] words = new int[code.getCodeSize() - start];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = code.read(start + i);
+        }
+
+        // Decode the instructions, matching each FUNCTOR with its POP
+        final int[] addrs = new int[words.length]; // of each instruction
+        final int[] pops = new int[words.length]; // index of POP per FUNCTOR
+        final int[] functors = new int[words.length]; // stack of indices
+        int size = 0;
+        int depth = 0;
+        for (int i = 0; i < words.length; size++) {
+            addrs[size] = i;
+            final int opcode = words[i++];
+            if (opcode == FUNCTOR) {
+                functors[depth++] = size;
+            } else if (opcode == POP) {
+                pops[functors[--depth]] = size;
+            }
+            if (opcode != POP && opcode != EXIT) {
+                i++; // Skip the operand
+            }
+        }
+
+        // Rewrite the FUNCTORs, marking the POPs to be removed
+        final boolean[] removed = new boolean[size];
+        int after = size;
+        for (int n = 0; n < size; n++) {
+            if (words[addrs[n]] != FUNCTOR) {
+                continue;
+            }
+            final int pop = pops[n];
+            if (pop == n + 1) {
+                words[addrs[n]] = VOIDFUNCTOR;
+            } else if (pop + 1 < size && isLast(words[addrs[pop + 1]])) {
+                words[addrs[n]] = LASTFUNCTOR;
+            } else {
+                continue;
+            }
+            removed[pop] = true;
+            after--;
+        }
+
+        if (after < size) {
+            final IntBuffer result = IntBuffer.allocate(words.length);
+            for (int n = 0; n < size; n++) {
+                if (removed[n]) {
+                    continue;
+                }
+                final int end = n + 1 < size ? addrs[n + 1] : words.length;
+                result.put(words, addrs[n], end - addrs[n]);
+            }
+            result.flip();
+            code.setCodeSize(start);
+            code.writeCode(result);
+        }
+        final Listener l = this.listener;
+        if (l != null) {
+            l.clauseOptimized(head, start, size, after);
+        }
+    }
+
+    // Whether the stack address and mode restored by a POP would go unused
+    private static boolean isLast(final int next) {
+        return next == POP || next == ENTER || next == RETURN || next == CALL;
+    }
+
+    /**
+     * Callback interface for reporting on the optimization of clauses.
+     */
+    public interface Listener {
+
+        /**
+         * Called after the clause starting at {@code address} was optimized.
+         *
+         * @param head the functor of the clause's head literal
+         * @param address the address of the clause's first instruction
+         * @param before the number of instructions before optimization
+         * @param after the number of instructions after optimization
+         */
+        void clauseOptimized(FunctorSymbol head, int address, int before,
+                int after);
+    }
+}
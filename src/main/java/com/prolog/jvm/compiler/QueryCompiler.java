@@ -15,7 +15,10 @@ import com.prolog.jvm.compiler.visitor.QueryVariableTracker;
 import com.prolog.jvm.compiler.visitor.SourcePass;
 import com.prolog.jvm.exceptions.RecognitionException;
 import com.prolog.jvm.symbol.Scope;
+import com.prolog.jvm.symbol.Symbol;
+import com.prolog.jvm.symbol.VariableSymbol;
 import com.prolog.jvm.zip.api.PrologBytecode;
+import com.prolog.jvm.zip.util.Instructions;
 
 /**
  * A compiler for Prolog queries.
@@ -26,6 +29,7 @@ import com.prolog.jvm.zip.api.PrologBytecode;
 public final class QueryCompiler extends AbstractCompiler {
 
     private final Map<Integer, String> queryVars;
+    private final boolean parameterized;
 
     /**
      * @param code the target for writing the generated bytecode to; not allowed
@@ -39,8 +43,31 @@ public final class QueryCompiler extends AbstractCompiler {
      */
     public QueryCompiler(final PrologBytecode<?> code, final Scope scope,
             final Map<Integer, String> queryVars) {
+        this(code, scope, queryVars, false);
+    }
+
+    /**
+     * Constructor for queries whose variables may alternatively be treated as
+     * parameters. In the latter case, the local stack slots of all query
+     * variables are assumed to have been initialized prior to execution (be
+     * it to a bound value or to an unbound variable), so that even their first
+     * occurrences compile to {@link Instructions#VAR}.
+     *
+     * @param code the target for writing the generated bytecode to; not allowed
+     * to be null
+     * @param scope the ground scope to use when resolving symbols; not allowed
+     * to be null
+     * @param queryVars a mapping of local stack addresses to the names of the
+     * query variables allocated thereat; not allowed to be null
+     * @param parameterized whether to treat query variables as parameters
+     * @throws NullPointerException if {@code code == null || scope == null ||
+     * queryVars == null}
+     */
+    public QueryCompiler(final PrologBytecode<?> code, final Scope scope,
+            final Map<Integer, String> queryVars, final boolean parameterized) {
         super(code, scope);
         this.queryVars = requireNonNull(queryVars);
+        this.parameterized = parameterized;
     }
 
     /**
@@ -57,6 +84,29 @@ public final class QueryCompiler extends AbstractCompiler {
                 this.queryVars));
     }
 
+    @Override
+    protected void annotateSymbols() {
+        if (this.parameterized) {
+            for (final Symbol symbol : this.symbols.values()) {
+                if (symbol instanceof VariableSymbol) {
+                    ((VariableSymbol) symbol).setAsSeenBefore();
+                }
+            }
+        }
+    }
+
+    // Query variables are all needed for computing the answers
+    @Override
+    protected boolean allocatesSingletons() {
+        return true;
+    }
+
+    // Queries are discarded after execution, unlike the static area
+    @Override
+    protected boolean internsGroundTerms() {
+        return false;
+    }
+
     @Override
     protected SourcePass createSourcePassVisitor() {
         return new SourcePass(Tokens.IMPL);
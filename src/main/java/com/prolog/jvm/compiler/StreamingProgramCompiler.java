@@ -0,0 +1,253 @@
+package com.prolog.jvm.compiler;
+
+import static com.prolog.jvm.zip.util.Instructions.FACTS;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.prolog.jvm.compiler.ast.Ast;
+import com.prolog.jvm.compiler.ast.AstWalker;
+import com.prolog.jvm.compiler.parser.PrologParser;
+import com.prolog.jvm.compiler.parser.TokenType;
+import com.prolog.jvm.compiler.visitor.BytecodeGenerator;
+import com.prolog.jvm.compiler.visitor.PrologVisitor;
+import com.prolog.jvm.compiler.visitor.SourcePass;
+import com.prolog.jvm.compiler.visitor.SymbolResolver;
+import com.prolog.jvm.exceptions.RecognitionException;
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.FactTable;
+import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.symbol.PredicateSymbol;
+import com.prolog.jvm.symbol.Scope;
+import com.prolog.jvm.symbol.SymbolKey;
+import com.prolog.jvm.symbol.SymbolKeys;
+import com.prolog.jvm.zip.api.PrologBytecode;
+import com.prolog.jvm.zip.util.Validate;
+
+/**
+ * A compiler for Prolog programs that resolves symbols and generates bytecode
+ * for each clause as soon as it has been parsed, after which its {@link Ast}
+ * is discarded. Whereas the memory used by {@link ProgramCompiler} grows with
+ * the size of the entire program, here it is bounded by that of the largest
+ * clause, making this class suited for compiling very large programs.
+ * <p>
+ * The generated bytecode is identical to that of {@link ProgramCompiler},
+ * unless a minimum number of rows was specified for storing facts in a
+ * {@link FactTable}. In that case, each run of at least that many consecutive
+ * facts of the same predicate whose arguments are all constants is added to
+ * a table as they are parsed, without compiling them first. Only the facts of
+ * a run that has not yet reached the minimum are kept until it ends, after
+ * which they are compiled like any other clause if the minimum was not met.
+ * <p>
+ * Note that if a lexer- or parsing error occurs, the bytecode for the
+ * clauses preceding it will already have been written.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class StreamingProgramCompiler extends AbstractCompiler {
+
+    private final int minRows; // 0 if facts are not stored in tables
+
+    // Runs of facts of constants that did not yet end, keyed by predicate
+    private final Map<SymbolKey<PredicateSymbol>,FactRun> runs =
+            new LinkedHashMap<>();
+
+    /**
+     * @param code the target for writing the generated bytecode to; not allowed
+     * to be null
+     * @param scope the ground scope to use when resolving symbols; not allowed
+     * to be null
+     * @throws NullPointerException if {@code code == null || scope == null}
+     */
+    public StreamingProgramCompiler(final PrologBytecode<?> code,
+            final Scope scope) {
+        this(code, scope, 0);
+    }
+
+    /**
+     * @param code the target for writing the generated bytecode to; not allowed
+     * to be null
+     * @param scope the ground scope to use when resolving symbols; not allowed
+     * to be null
+     * @param minRows the minimum number of consecutive facts of constants for
+     * storing them in a {@link FactTable}, or {@code 0} if they are all to be
+     * compiled; must be {@code >= 0}
+     * @throws NullPointerException if {@code code == null || scope == null}
+     * @throws IllegalArgumentException if {@code minRows < 0}
+     */
+    public StreamingProgramCompiler(final PrologBytecode<?> code,
+            final Scope scope, final int minRows) {
+        super(code, scope);
+        Validate.argument(minRows >= 0);
+        this.minRows = minRows;
+    }
+
+    /**
+     * Compiles the specified {@code source} one clause at a time. Unlike for
+     * other {@link AbstractCompiler}s, {@link #root} is left without children
+     * afterwards, and {@link #symbols} is left null.
+     */
+    @Override
+    public void compile(final Reader source) throws IOException,
+            RecognitionException {
+        final SourcePass visitor = createSourcePassVisitor();
+        parseSource(PrologParser.newInstance(requireNonNull(source), visitor));
+        while (!this.runs.isEmpty()) {
+            endRun(this.runs.keySet().iterator().next());
+        }
+        this.root = visitor.getAst();
+        verifySymbols();
+    }
+
+    @Override
+    protected SourcePass createSourcePassVisitor() {
+        return new SourcePass(new SourcePass.ClauseListener() {
+            @Override
+            public void clauseParsed(final Ast clause) {
+                addClause(clause);
+            }
+        });
+    }
+
+    @Override
+    protected void parseSource(final PrologParser parser) throws IOException,
+            RecognitionException {
+        parser.parseProgram();
+    }
+
+    @Override
+    protected void walkAst(final Ast root, final PrologVisitor<Ast> visitor) {
+        AstWalker.INSTANCE.walkProgram(root, visitor);
+    }
+
+    // Compiles the specified clause, or adds it to a run of facts
+    private void addClause(final Ast clause) {
+        if (this.minRows == 0) {
+            compileClause(clause);
+            return;
+        }
+        final Ast head = clause.iterator().next();
+        final SymbolKey<PredicateSymbol> key = SymbolKeys.ofPredicate(
+                head.getText(), head.getArity());
+        if (!isFactOfConstants(clause)) {
+            endRun(key);
+            compileClause(clause);
+            return;
+        }
+        FactRun run = this.runs.get(key);
+        if (run == null) {
+            run = new FactRun();
+            this.runs.put(key, run);
+        }
+        if (run.table != null) {
+            run.table.addRow(getRow(head));
+            return;
+        }
+        run.facts.add(clause);
+        if (run.facts.size() == this.minRows) {
+            run.table = newTable(head);
+            for (final Ast fact : run.facts) {
+                run.table.addRow(getRow(fact.iterator().next()));
+            }
+            run.facts.clear();
+        }
+    }
+
+    // Ends the run of facts of the specified predicate, if any
+    private void endRun(final SymbolKey<PredicateSymbol> key) {
+        final FactRun run = this.runs.remove(key);
+        if (run == null) {
+            return;
+        }
+        if (run.table == null) {
+            for (final Ast fact : run.facts) {
+                compileClause(fact);
+            }
+        } else {
+            run.table.trimToSize();
+        }
+    }
+
+    /*
+     * Returns an empty table for the predicate of the specified head literal,
+     * added to its clause alternatives in the manner of SymbolResolver by way
+     * of a clause consisting of a single FACTS instruction.
+     */
+    private FactTable newTable(final Ast head) {
+        final String name = head.getText();
+        final int arity = head.getArity();
+        final Scope scope = getScope();
+        final SymbolKey<PredicateSymbol> predicateKey = SymbolKeys
+                .ofPredicate(name, arity);
+        PredicateSymbol predicate = scope.resolveGlobal(predicateKey);
+        if (predicate == null) {
+            predicate = new PredicateSymbol(name, arity);
+            scope.defineGlobal(predicateKey, predicate);
+        }
+        final FactTable table = new FactTable(arity);
+        final ClauseSymbol clause = new ClauseSymbol();
+        clause.setParams(arity);
+        clause.setHeapptr(getCode().getCodeSize());
+        clause.setFacts(table);
+        getCode().writeIns(FACTS, arity);
+        final SymbolKey<ClauseSymbol> clauseKey = SymbolKeys.ofClause(name,
+                arity);
+        final ClauseSymbol previous = scope.resolveGlobal(clauseKey);
+        if (previous != null) {
+            previous.setNext(clause);
+        } else {
+            predicate.setFirst(clause);
+        }
+        scope.defineGlobal(clauseKey, clause);
+        return table;
+    }
+
+    // Returns the constant pool indices of the arguments of a fact
+    private int[] getRow(final Ast head) {
+        final int[] row = new int[head.getArity()];
+        final Iterator<Ast> it = head.iterator();
+        for (int i = 0; i < row.length; i++) {
+            row[i] = getCode().getConstantPoolIndex(
+                    FunctorSymbol.valueOf(it.next().getText()));
+        }
+        return row;
+    }
+
+    // Second and third compiler passes, restricted to a single clause
+    private void compileClause(final Ast clause) {
+        final SymbolResolver resolver = new SymbolResolver(getScope());
+        AstWalker.INSTANCE.walkClause(clause, resolver);
+        AstWalker.INSTANCE.walkClause(clause, new BytecodeGenerator(
+                resolver.getSymbols(), getCode()));
+    }
+
+    private static boolean isFactOfConstants(final Ast clause) {
+        if (clause.getArity() != 1) {
+            return false;
+        }
+        final Ast head = clause.iterator().next();
+        if (head.getArity() == 0) {
+            return false;
+        }
+        for (final Ast arg : head) {
+            if (arg.getArity() != 0 || (arg.getNodeType() != TokenType.ATOM
+                    && arg.getNodeType() != TokenType.NIL)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The facts of a run, until as many as the minimum number of rows
+    private static final class FactRun {
+        private final List<Ast> facts = new ArrayList<>();
+        private FactTable table; // null while below the minimum
+    }
+}
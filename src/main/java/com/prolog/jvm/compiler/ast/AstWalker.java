@@ -61,6 +61,28 @@ public enum AstWalker {
         }
     }
 
+    /**
+     * Walks the supplied AST for a single program clause, delegating the
+     * actions to be applied on nodes between their discovery and finishing to
+     * the specified {@code visitor}.
+     *
+     * @param clause the AST to be walked; not allowed to be null and must have
+     * type {@link TokenType#IMPL}
+     * @param visitor the visitor containing the actions to be applied to the
+     * discovered nodes; not allowed to be null.
+     * @throws NullPointerException if {@code clause == null || visitor ==
+     * null}
+     * @throws IllegalArgumentException if clause is not of type
+     * {@link TokenType#IMPL}
+     */
+    public void walkClause(final Ast clause,
+            final PrologVisitor<Ast> visitor) {
+        requireNonNull(clause);
+        requireNonNull(visitor);
+        Validate.argument(clause.getNodeType() == TokenType.IMPL);
+        clause(clause, visitor);
+    }
+
     /**
      * Walks the supplied AST for a query, delegating the actions to be applied
      * on nodes between their discovery and finishing to the specified
@@ -4,6 +4,7 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
 
 import com.prolog.jvm.exceptions.RecognitionException;
 
@@ -15,14 +16,25 @@ import com.prolog.jvm.exceptions.RecognitionException;
  */
 public abstract class AbstractLexer implements Lexer {
 
+    // Initial capacity of the input buffer
+    private static final int BLOCK_SIZE = 8192;
+
     // Private state
     private final Reader input;     // reader for the input text
     private char lookahead = ' ';   // lookahead character, initialized with
                                     // whitespace
     private int line = 1;           // current line number
 
+    // Input buffer, holding the lookahead character at buffer[pos] once
+    // reading has commenced, and valid up to (but excluding) limit
+    private char[] buffer = new char[BLOCK_SIZE];
+    private int pos = -1;
+    private int limit = 0;
+    private int mark = -1;          // start of the current token, if marked
+
     /**
-     * Constructs a {@link Lexer} instance reading from a {@link Reader}.
+     * Constructs a {@link Lexer} instance reading from a {@link Reader}. Input
+     * is read in blocks, so the supplied {@code input} need not be buffered.
      *
      * @param input a reader for a Prolog source program or query; not allowed
      * to be null
@@ -55,7 +67,7 @@ public abstract class AbstractLexer implements Lexer {
         if (this.lookahead == '\n') {
             this.line++;
         }
-        this.lookahead = (char) this.input.read();
+        advance();
     }
 
     /**
@@ -65,7 +77,71 @@ public abstract class AbstractLexer implements Lexer {
      * @throws IOException
      */
     protected final void consumeNonLinefeed() throws IOException {
-        this.lookahead = (char) this.input.read();
+        advance();
+    }
+
+    // Moves the lookahead to the next character, refilling the buffer if
+    // needed
+    private void advance() throws IOException {
+        if (++this.pos >= this.limit && !fill()) {
+            this.lookahead = EOF;
+            return;
+        }
+        this.lookahead = this.buffer[this.pos];
+    }
+
+    /*
+     * Reads the next block of input, first moving the unconsumed characters
+     * (i.e., those starting from the mark, if set) to the front of the buffer,
+     * and growing the latter if a token does not fit therein. Returns false
+     * iff the end of the input was reached, in which case pos equals limit.
+     */
+    private boolean fill() throws IOException {
+        final int keep = this.mark >= 0 ? this.mark : this.limit;
+        final int remaining = this.limit - keep;
+        if (keep > 0) {
+            System.arraycopy(this.buffer, keep, this.buffer, 0, remaining);
+        } else if (remaining == this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, 2 * this.buffer.length);
+        }
+        this.pos = this.limit = remaining;
+        if (this.mark >= 0) {
+            this.mark = 0;
+        }
+        int n;
+        do {
+            n = this.input.read(this.buffer, this.limit, this.buffer.length
+                    - this.limit);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        this.limit += n;
+        return true;
+    }
+
+    /**
+     * Marks the lookahead character as the start of a token, the text of
+     * which is to be obtained through {@link #getMarkedText()}.
+     */
+    protected final void mark() {
+        this.mark = this.pos;
+    }
+
+    /**
+     * Returns the text from the most recently marked character up to (but
+     * excluding) the lookahead character, and clears the mark.
+     *
+     * @throws IllegalStateException if no character was marked
+     */
+    protected final String getMarkedText() {
+        if (this.mark < 0) {
+            throw new IllegalStateException();
+        }
+        final String result = new String(this.buffer, this.mark, this.pos
+                - this.mark);
+        this.mark = -1;
+        return result;
     }
 
     /**
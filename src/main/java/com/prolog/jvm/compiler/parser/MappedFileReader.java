@@ -0,0 +1,146 @@
+package com.prolog.jvm.compiler.parser;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link Reader} for files, decoding characters directly from a memory-mapped
+ * view of the file's contents into the buffers supplied by its clients. Meant
+ * for large Prolog source files, avoiding both a system call and an
+ * intermediate copy for each block of input read by a {@link Lexer}.
+ * <p>
+ * Files are mapped in regions of at most {@link #REGION_SIZE} bytes at a time,
+ * so that their size is not limited by that of a single mapping.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class MappedFileReader extends Reader {
+
+    /**
+     * The maximum number of bytes mapped at once.
+     */
+    public static final int REGION_SIZE = 1 << 26;
+
+    private final FileChannel channel;
+    private final CharsetDecoder decoder;
+    private final long size;
+
+    private ByteBuffer region;  // currently mapped region
+    private long regionStart;   // file offset of the current region
+    private boolean flushed;    // whether the end of the file was reached
+
+    /**
+     * Static factory method for obtaining a reader for the specified
+     * {@code file}, decoding its contents using the platform's default
+     * charset (as does {@link java.io.FileReader}).
+     *
+     * @param file the file to be read; not allowed to be null
+     * @throws IOException if the file could not be opened or mapped
+     * @throws NullPointerException if {@code file == null}
+     */
+    public static MappedFileReader newInstance(final Path file)
+            throws IOException {
+        return newInstance(file, Charset.defaultCharset());
+    }
+
+    /**
+     * Static factory method for obtaining a reader for the specified
+     * {@code file}, decoding its contents using the given {@code charset}.
+     * Malformed input and unmappable characters are replaced by the latter's
+     * default replacement string.
+     *
+     * @param file the file to be read; not allowed to be null
+     * @param charset the charset for decoding the file; not allowed to be null
+     * @throws IOException if the file could not be opened or mapped
+     * @throws NullPointerException if {@code file == null || charset == null}
+     */
+    public static MappedFileReader newInstance(final Path file,
+            final Charset charset) throws IOException {
+        final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final FileChannel channel = FileChannel.open(requireNonNull(file),
+                StandardOpenOption.READ);
+        try {
+            return new MappedFileReader(channel, decoder);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Private constructor to force instantiation through static factories
+    private MappedFileReader(final FileChannel channel,
+            final CharsetDecoder decoder) throws IOException {
+        this.channel = channel;
+        this.decoder = decoder;
+        this.size = channel.size();
+        map(0L);
+    }
+
+    // Maps the region starting at the given file offset
+    private void map(final long start) throws IOException {
+        final long length = Math.min(REGION_SIZE, this.size - start);
+        this.region = this.channel.map(FileChannel.MapMode.READ_ONLY, start,
+                length);
+        this.regionStart = start;
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len)
+            throws IOException {
+        if (!this.channel.isOpen()) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (this.flushed) {
+            return -1;
+        }
+        final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (out.position() == off) {
+            final boolean last = this.regionStart + this.region.limit()
+                    == this.size;
+            final CoderResult result = this.decoder.decode(this.region, out,
+                    last);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                break;
+            }
+            if (!last) {
+                // Any bytes left belong to a character split by the region's
+                // end, and are hence mapped anew as part of the next region
+                map(this.regionStart + this.region.position());
+                continue;
+            }
+            if (this.decoder.flush(out).isOverflow()) {
+                break;
+            }
+            this.flushed = true;
+            if (out.position() == off) {
+                return -1;
+            }
+        }
+        return out.position() - off;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -170,24 +170,22 @@ public final class PrologLexer extends AbstractLexer {
      */
     private Token id() throws IOException {
         boolean smallLetter = isSmallLetter();
-        final StringBuilder buffer = new StringBuilder();
+        mark();
         do {
-            buffer.append(getLookahead());
             consumeNonLinefeed();
         } while (isDigit() || isCapitalLetter() || isSmallLetter()
                 || getLookahead() == '_');
-        return smallLetter ? Tokens.getAtom(buffer.toString()) : Tokens
-                .getVar(buffer.toString());
+        final String text = getMarkedText();
+        return smallLetter ? Tokens.getAtom(text) : Tokens.getVar(text);
     }
 
     // Graphic tokens
     private Token graphic() throws IOException {
-        final StringBuilder buffer = new StringBuilder();
+        mark();
         do {
-            buffer.append(getLookahead());
             consumeNonLinefeed();
         } while (isGraphic());
-        return Tokens.getAtom(buffer.toString());
+        return Tokens.getAtom(getMarkedText());
     }
 
     // nil = "[]" ;
@@ -6,27 +6,47 @@ import static com.prolog.jvm.zip.util.Instructions.ENTER;
 import static com.prolog.jvm.zip.util.Instructions.EXIT;
 import static com.prolog.jvm.zip.util.Instructions.FIRSTVAR;
 import static com.prolog.jvm.zip.util.Instructions.FUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.GROUND;
+import static com.prolog.jvm.zip.util.Instructions.LASTFUNCTOR;
 import static com.prolog.jvm.zip.util.Instructions.POP;
 import static com.prolog.jvm.zip.util.Instructions.RETURN;
 import static com.prolog.jvm.zip.util.Instructions.VAR;
+import static com.prolog.jvm.zip.util.Instructions.VOID;
+import static com.prolog.jvm.zip.util.Instructions.VOIDFUNCTOR;
+import static com.prolog.jvm.zip.util.PlWords.CONS;
+import static com.prolog.jvm.zip.util.PlWords.FUNC;
+import static com.prolog.jvm.zip.util.PlWords.STR;
 import static java.util.Objects.requireNonNull;
 
 import java.util.Map;
 
+import com.prolog.jvm.compiler.PeepholeOptimizer;
 import com.prolog.jvm.compiler.ast.Ast;
+import com.prolog.jvm.compiler.parser.TokenType;
+import com.prolog.jvm.main.Factory;
 import com.prolog.jvm.symbol.ClauseSymbol;
 import com.prolog.jvm.symbol.FunctorSymbol;
 import com.prolog.jvm.symbol.PredicateSymbol;
 import com.prolog.jvm.symbol.Symbol;
 import com.prolog.jvm.symbol.VariableSymbol;
 import com.prolog.jvm.zip.api.PrologBytecode;
+import com.prolog.jvm.zip.util.Instructions;
+import com.prolog.jvm.zip.util.PlWords;
 
 /**
  * Visitor specifying the semantic actions for the final compiler pass,
  * generating bytecode (along with a constant table) for the ZIP machine.
  * <p>
  * Note that the bytecode generated through use of this class targets only a
- * reduced (unoptimized) instruction set, described in detail in [1].
+ * reduced (unoptimized) instruction set, described in detail in [1], save for
+ * consecutive variables occurring only once in their clause being compiled to
+ * a single {@link Instructions#VOID}, and for ground compound terms being
+ * {@link PrologBytecode#internTerm(int[]) stored} in the static area and
+ * compiled to a single {@link Instructions#GROUND}, if so requested and if
+ * there is a static area. Calls passing such terms then need not copy them to
+ * the global stack each time. The code for each clause is passed on to
+ * the {@link PeepholeOptimizer} as soon as it was generated, after which the
+ * clause is {@link ClauseSymbol#setKey(int) indexed} on its first argument.
  * <p>
  * [1] Bowen, David L., Lawrence Byrd, and William F. Clocksin. A portable
  * Prolog compiler. Department of Artificial Intelligence, University of
@@ -38,8 +58,16 @@ import com.prolog.jvm.zip.api.PrologBytecode;
 public final class BytecodeGenerator extends AbstractSymbolVisitor {
 
     private final PrologBytecode<?> code;
+    private final boolean interning;
+
+    // The number of void variables not yet written
+    private int voids;
+
+    // The nesting depth within a ground term written by a GROUND instruction
+    private int ground;
 
     /**
+     * Creates a generator storing ground terms in the static area, if any.
      *
      * @param symbols a mapping of {@link Ast} nodes to the {@link Symbol}s to
      * which they have been resolved; not allowed to be null
@@ -48,56 +76,102 @@ public final class BytecodeGenerator extends AbstractSymbolVisitor {
      */
     public BytecodeGenerator(final Map<Ast,Symbol> symbols,
             final PrologBytecode<?> code) {
+        this(symbols, code, true);
+    }
+
+    /**
+     *
+     * @param symbols a mapping of {@link Ast} nodes to the {@link Symbol}s to
+     * which they have been resolved; not allowed to be null
+     * @param code the target for writing the bytecode instructions
+     * @param interning whether to store ground terms in the static area of
+     * {@code code}, if it has one
+     * @throws NullPointerException if {@code symbols == null}
+     */
+    public BytecodeGenerator(final Map<Ast,Symbol> symbols,
+            final PrologBytecode<?> code, final boolean interning) {
         super(symbols);
         this.code = requireNonNull(code);
+        this.interning = interning && code.hasStaticArea();
     }
 
     @Override
     public void preVisitClause(Ast clause) {
         final ClauseSymbol symbol = getSymbol(clause, ClauseSymbol.class);
         symbol.setHeapptr(this.code.getCodeSize());
+        this.voids = 0;
     }
 
     @Override
     public void inVisitClause(Ast clause) {
         final ClauseSymbol symbol = getSymbol(clause, ClauseSymbol.class);
+        this.voids = 0; // trailing voids in the head need not be skipped
         this.code.writeIns(ENTER, symbol.getParams() + symbol.getLocals());
     }
 
     @Override
-    public void postVisitClause(Ast param) {
+    public void postVisitClause(Ast clause) {
         this.code.writeIns(EXIT);
+        optimize(clause);
     }
 
     @Override
     public void postVisitUnitClause(Ast clause) {
         final ClauseSymbol symbol = getSymbol(clause, ClauseSymbol.class);
+        this.voids = 0;
         this.code.writeIns(RETURN, symbol.getParams() + symbol.getLocals());
+        optimize(clause);
     }
 
     @Override
     public void postVisitGoal(Ast goal) {
+        // Trailing voids are still needed for initializing the arguments
+        writeVoids();
         writeGroundIns(PredicateSymbol.class, goal, CALL);
     }
 
     @Override
     public void preVisitCompound(Ast term) {
-        writeGroundIns(FunctorSymbol.class, term, FUNCTOR);
+        if (this.ground > 0) {
+            this.ground++;
+        } else if (this.interning && isGround(term)) {
+            writeVoids();
+            final int[] words = new int[1 + getSize(term)];
+            words[0] = PlWords.getWord(STR, 1);
+            writeTerm(term, words, 1);
+            this.code.writeIns(GROUND, this.code.internTerm(words));
+            this.ground = 1;
+        } else {
+            writeGroundIns(FunctorSymbol.class, term, FUNCTOR);
+        }
     }
 
     @Override
     public void postVisitCompound(Ast param) {
+        if (this.ground > 0) {
+            this.ground--;
+            return;
+        }
+        // Trailing voids need not be skipped, POP restoring the address
+        this.voids = 0;
         this.code.writeIns(POP);
     }
 
     @Override
     public void visitConstant(Ast constant) {
-        writeGroundIns(FunctorSymbol.class, constant, CONSTANT);
+        if (this.ground == 0) {
+            writeGroundIns(FunctorSymbol.class, constant, CONSTANT);
+        }
     }
 
     @Override
     public void visitVariable(Ast var) {
         final VariableSymbol symbol = getSymbol(var, VariableSymbol.class);
+        if (symbol.isVoid()) {
+            this.voids++;
+            return;
+        }
+        writeVoids();
         int opcode = VAR;
         if (!symbol.hasBeenSeenBefore()) {
             opcode = FIRSTVAR;
@@ -106,9 +180,89 @@ public final class BytecodeGenerator extends AbstractSymbolVisitor {
         this.code.writeIns(opcode, symbol.getOffset());
     }
 
+    private void optimize(final Ast clause) {
+        final ClauseSymbol symbol = getSymbol(clause, ClauseSymbol.class);
+        final FunctorSymbol head = getSymbol(clause.iterator().next(),
+                FunctorSymbol.class);
+        Factory.getPeepholeOptimizer().optimize(this.code,
+                symbol.getHeapptr(), head);
+        index(symbol);
+    }
+
+    // Keys the clause by its first instruction, if matching a functor
+    private void index(final ClauseSymbol symbol) {
+        final int opcode = this.code.read(symbol.getHeapptr());
+        final int operand = this.code.read(symbol.getHeapptr() + 1);
+        if (opcode == FUNCTOR || opcode == LASTFUNCTOR
+                || opcode == VOIDFUNCTOR || opcode == CONSTANT) {
+            symbol.setKey(operand);
+        } else if (opcode == GROUND) {
+            final int functor = PlWords.getValue(this.code.readStatic(operand));
+            symbol.setKey(PlWords.getValue(this.code.readStatic(functor)));
+        }
+    }
+
+    private static boolean isGround(final Ast term) {
+        if (term.getNodeType() == TokenType.VAR) {
+            return false;
+        }
+        for (final Ast child : term) {
+            if (!isGround(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns the number of words taken up by a compound term on the stack
+    private static int getSize(final Ast term) {
+        int size = 1 + term.getArity();
+        for (final Ast child : term) {
+            if (child.getArity() > 0) {
+                size += getSize(child);
+            }
+        }
+        return size;
+    }
+
+    /*
+     * Lays out a ground compound term as pushed on the global stack, starting
+     * at the given index, and followed by its compound subterms. Returns the
+     * index following the latter.
+     */
+    private int writeTerm(final Ast term, final int[] words, final int index) {
+        words[index] = PlWords.getWord(FUNC, getConstantPoolIndex(term));
+        int arg = index + 1;
+        int next = arg + term.getArity();
+        for (final Ast child : term) {
+            if (child.getArity() > 0) {
+                words[arg++] = PlWords.getWord(STR, next);
+                next = writeTerm(child, words, next);
+            } else {
+                words[arg++] = PlWords.getWord(CONS,
+                        getConstantPoolIndex(child));
+            }
+        }
+        return next;
+    }
+
+    private int getConstantPoolIndex(final Ast node) {
+        return this.code.getConstantPoolIndex(getSymbol(node,
+                FunctorSymbol.class));
+    }
+
+    // Writes a single instruction for any consecutive voids not yet written
+    private void writeVoids() {
+        if (this.voids > 0) {
+            this.code.writeIns(VOID, this.voids);
+            this.voids = 0;
+        }
+    }
+
     // Writes an instruction taking a constant pool entry as its parameter
     private <T extends Symbol> void writeGroundIns(Class<T> clazz, Ast node,
             int opcode) {
+        writeVoids();
         final T symbol = getSymbol(node, clazz);
         int index = this.code.getConstantPoolIndex(symbol);
         this.code.writeIns(opcode, index);
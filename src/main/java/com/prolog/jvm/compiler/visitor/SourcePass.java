@@ -1,5 +1,7 @@
 package com.prolog.jvm.compiler.visitor;
 
+import static java.util.Objects.requireNonNull;
+
 import java.util.ArrayDeque;
 import java.util.Deque;
 
@@ -21,6 +23,9 @@ public final class SourcePass extends BasicPrologVisitor<Token> {
     // Stack of AST builders to construct the AST
     private final Deque<ASTBuilder> builders = new ArrayDeque<>();
 
+    // If non-null, receives program clauses instead of the root node
+    private final ClauseListener listener;
+
     /**
      * @param token expected to be {@link Tokens#PROGRAM} for compiling programs
      * or {@link Tokens#IMPL} for queries.
@@ -29,9 +34,25 @@ public final class SourcePass extends BasicPrologVisitor<Token> {
      */
     public SourcePass(final Token token) {
         Validate.argument(token == Tokens.PROGRAM || token == Tokens.IMPL);
+        this.listener = null;
         push(token); // Create the AST root node
     }
 
+    /**
+     * Constructor for streaming through a Prolog program one clause at a time.
+     * Each clause is handed to the specified {@code listener} as soon as its
+     * terminating period has been parsed, rather than being added to the root
+     * node. Consequently, {@link #getAst()} returns a root without children.
+     *
+     * @param listener the receiver of the program's clauses; not allowed to be
+     * null
+     * @throws NullPointerException if {@code listener == null}
+     */
+    public SourcePass(final ClauseListener listener) {
+        this.listener = requireNonNull(listener);
+        push(Tokens.PROGRAM); // Create the AST root node
+    }
+
     /**
      * Retrieves the {@link Ast} built by this visitor.
      *
@@ -49,7 +70,11 @@ public final class SourcePass extends BasicPrologVisitor<Token> {
 
     @Override
     public void postVisitClause(Token param) {
-        pop();
+        if (this.listener == null) {
+            pop();
+        } else {
+            this.listener.clauseParsed(this.builders.pop().build());
+        }
     }
 
     @Override
@@ -85,4 +110,22 @@ public final class SourcePass extends BasicPrologVisitor<Token> {
         // Build, and add as a child to the new top
         this.builders.getFirst().addChild(builder.build());
     }
+
+    /**
+     * Callback interface for receiving program clauses from a
+     * {@link SourcePass} as soon as they have been parsed.
+     *
+     * @author Arno Bastenhof
+     *
+     */
+    public interface ClauseListener {
+
+        /**
+         * Called after the specified {@code clause} has been parsed.
+         *
+         * @param clause the parsed clause, of type {@link TokenType#IMPL}
+         */
+        void clauseParsed(Ast clause);
+
+    }
 }
@@ -3,11 +3,13 @@ package com.prolog.jvm.compiler.visitor;
 import static java.util.Objects.requireNonNull;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 
 import com.prolog.jvm.compiler.ast.Ast;
+import com.prolog.jvm.compiler.parser.TokenType;
 import com.prolog.jvm.main.Factory;
 import com.prolog.jvm.symbol.ClauseSymbol;
 import com.prolog.jvm.symbol.FunctorSymbol;
@@ -30,6 +32,16 @@ public final class SymbolResolver extends BasicPrologVisitor<Ast> {
     // A mapping of AST nodes to the symbols to which they have been resolved
     private final Map<Ast,Symbol> symbols = new IdentityHashMap<>();
 
+    /*
+     * For each variable in the current clause, the number of its occurrences
+     * and whether any of them are in a goal literal
+     */
+    private final Map<String,int[]> occurrences = new HashMap<>();
+    private int permanents; // number of variables occurring in goals
+    private int temporaries; // number of variables occurring in the head only
+
+    private final boolean allocateSingletons;
+
     private ClauseSymbol currentClause;
 
     private Scope currentScope;
@@ -52,7 +64,25 @@ public final class SymbolResolver extends BasicPrologVisitor<Ast> {
      * @throws NullPointerException if {@code scope == null}
      */
     public SymbolResolver(final Scope scope) {
+        this(scope, false);
+    }
+
+    /**
+     * Constructor allowing to specify whether variables occurring only once
+     * in a clause are to be allocated a slot in its activation record all the
+     * same, as needed for queries so that their answers can be retrieved.
+     * Otherwise, such variables are resolved to a fresh void symbol for each
+     * clause, obtained through {@link VariableSymbol#newVoidInstance()}.
+     *
+     * @param scope the 'global' root scope; not allowed to be null
+     * @param allocateSingletons whether to allocate slots for variables
+     * occurring only once in a clause
+     * @throws NullPointerException if {@code scope == null}
+     */
+    public SymbolResolver(final Scope scope,
+            final boolean allocateSingletons) {
         this.currentScope = requireNonNull(scope);
+        this.allocateSingletons = allocateSingletons;
     }
 
     private void pushScope() {
@@ -87,12 +117,49 @@ public final class SymbolResolver extends BasicPrologVisitor<Ast> {
         // TODO Assembly generation not yet implemented
         this.symbols.put(literal, getFunctorSymbol(literal));
 
+        // Count the occurrences of each variable, identifying singletons and
+        // those occurring in goal literals
+        this.occurrences.clear();
+        final Iterator<Ast> it = clause.iterator();
+        countVariables(it.next(), 0);
+        while (it.hasNext()) {
+            countVariables(it.next(), 1);
+        }
+        this.permanents = 0;
+        for (final int[] occurrence : this.occurrences.values()) {
+            if (occurrence[1] == 1 && !isVoid(occurrence)) {
+                this.permanents++;
+            }
+        }
+        this.temporaries = 0;
+
         // Push the clause scope
         pushScope();
 
         // TODO Push a scope for the head literal
     }
 
+    private void countVariables(final Ast node, final int inGoal) {
+        if (node.getNodeType() == TokenType.VAR) {
+            final int[] occurrence = this.occurrences.get(node.getText());
+            if (occurrence == null) {
+                this.occurrences.put(node.getText(), new int[] { 1, inGoal });
+            } else {
+                occurrence[0]++;
+                occurrence[1] |= inGoal;
+            }
+            return;
+        }
+        for (final Ast child : node) {
+            countVariables(child, inGoal);
+        }
+    }
+
+    // Variables occurring only once are not allocated a slot
+    private boolean isVoid(final int[] occurrence) {
+        return !this.allocateSingletons && occurrence[0] == 1;
+    }
+
     private Ast getHeadLiteral(Ast clause) {
         final Iterator<Ast> it = clause.iterator();
         Validate.argument(it.hasNext());
@@ -108,10 +175,9 @@ public final class SymbolResolver extends BasicPrologVisitor<Ast> {
 
     @Override
     public void postVisitClause(Ast clause) {
-        // Update the stack frame size
-        // (Note this assumes only variable symbols are stored in the clause
-        // scope)
-        this.currentClause.setLocals(this.currentScope.getSize());
+        // Update the stack frame size, excluding the variables occurring in
+        // the head only
+        this.currentClause.setLocals(this.permanents);
 
         // Save the clause symbol for future reference
         this.symbols.put(clause, this.currentClause);
@@ -203,14 +269,25 @@ public final class SymbolResolver extends BasicPrologVisitor<Ast> {
     private VariableSymbol getVariableSymbol(Ast variable) {
         assert variable != null;
 
+        final int[] occurrence = this.occurrences.get(variable.getText());
+        if (isVoid(occurrence)) {
+            return VariableSymbol.newVoidInstance();
+        }
+
         // Was this variable already encountered before in this clause?
         final SymbolKey<VariableSymbol> key = SymbolKeys.ofVariable(variable
                 .getText());
         VariableSymbol symbol = this.currentScope.resolveLocal(key);
-        // If not, create a new one and store it in the clause scope.
+        // If not, create a new one and store it in the clause scope. Variables
+        // occurring in the head only are allocated slots past the end of the
+        // activation record, being no longer needed once the head matched.
         if (symbol == null) {
-            final int offset = this.currentClause.getParams()
-                    + this.currentScope.getSize();
+            int offset = this.currentClause.getParams();
+            if (occurrence[1] == 1) {
+                offset += this.currentScope.getSize() - this.temporaries;
+            } else {
+                offset += this.permanents + this.temporaries++;
+            }
             symbol = new VariableSymbol(offset);
             this.currentScope.defineLocal(key, symbol);
         }
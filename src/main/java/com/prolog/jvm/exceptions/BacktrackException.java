@@ -3,6 +3,11 @@ package com.prolog.jvm.exceptions;
 /**
  * Thrown by the ZIP machine's head unification instructions in case
  * backtracking fails due to there being no choice point to backtrack to.
+ * <p>
+ * Being used for control flow rather than for reporting errors, and thrown
+ * for every query that fails, this exception is preallocated as
+ * {@link #INSTANCE}, carrying neither a stack trace nor suppressed
+ * exceptions.
  *
  * @author Arno Bastenhof
  *
@@ -11,4 +16,19 @@ public final class BacktrackException extends Exception {
 
     private static final long serialVersionUID = 8791880327296548364L;
 
+    /**
+     * The sole instance.
+     */
+    public static final BacktrackException INSTANCE =
+            new BacktrackException();
+
+    // Private constructor to enforce the use of INSTANCE
+    private BacktrackException() {
+        super(null, null, false, false);
+    }
+
+    private Object readResolve() {
+        return INSTANCE;
+    }
+
 }
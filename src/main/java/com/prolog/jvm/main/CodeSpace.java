@@ -0,0 +1,109 @@
+package com.prolog.jvm.main;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.prolog.jvm.zip.api.PrologBytecode;
+
+/**
+ * Manager for the blocks of code memory released by the {@link Database},
+ * reusing them for the code of clauses added later. Released blocks are kept
+ * in a free list ordered by address, wherein adjacent blocks are coalesced.
+ * Blocks reaching up to the end of the written bytecode are instead returned
+ * to the latter by lowering its size, so that the code memory in use stays
+ * bounded as long as clauses are removed at the rate they are added.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+final class CodeSpace {
+
+    private final PrologBytecode<?> code;
+
+    // Free blocks, mapping their start addresses to their lengths
+    private final TreeMap<Integer,Integer> free = new TreeMap<>();
+
+    private int freeWords; // Total length of the free blocks
+
+    CodeSpace(final PrologBytecode<?> code) {
+        assert code != null;
+        this.code = code;
+    }
+
+    /**
+     * Moves the code written from address {@code from} up to the end of the
+     * written bytecode into the first free block large enough to hold it,
+     * returning the address it was moved to. If no such block exists, the code
+     * is left in place and {@code from} is returned instead.
+     */
+    int allocate(final int from) {
+        final int length = this.code.getCodeSize() - from;
+        final Iterator<Map.Entry<Integer,Integer>> it = this.free.entrySet()
+                .iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Integer,Integer> block = it.next();
+            final int start = block.getKey().intValue();
+            final int size = block.getValue().intValue();
+            if (size < length) {
+                continue;
+            }
+            it.remove();
+            if (size > length) {
+                this.free.put(Integer.valueOf(start + length),
+                        Integer.valueOf(size - length));
+            }
+            this.freeWords -= length;
+            this.code.copyCode(from, start, length);
+            this.code.setCodeSize(from);
+            return start;
+        }
+        return from;
+    }
+
+    /**
+     * Releases the block of {@code length} words starting at {@code address},
+     * which must no longer be referenced by any code that might still be
+     * executed.
+     */
+    void release(final int address, final int length) {
+        assert length >= 0;
+        int start = address;
+        int size = length;
+        final Map.Entry<Integer,Integer> before = this.free.lowerEntry(
+                Integer.valueOf(start));
+        if (before != null
+                && before.getKey().intValue() + before.getValue().intValue()
+                == start) {
+            this.free.remove(before.getKey());
+            start = before.getKey().intValue();
+            size += before.getValue().intValue();
+        }
+        final Integer after = this.free.remove(Integer.valueOf(start + size));
+        if (after != null) {
+            size += after.intValue();
+        }
+        this.freeWords += length;
+        if (start + size == this.code.getCodeSize()) {
+            this.code.setCodeSize(start);
+            this.freeWords -= size;
+        } else {
+            this.free.put(Integer.valueOf(start), Integer.valueOf(size));
+        }
+    }
+
+    /**
+     * Returns the total number of words in free blocks.
+     */
+    int getFreeWords() {
+        return this.freeWords;
+    }
+
+    /**
+     * Forgets all free blocks, as when the code memory is reset.
+     */
+    void clear() {
+        this.free.clear();
+        this.freeWords = 0;
+    }
+}
@@ -0,0 +1,497 @@
+package com.prolog.jvm.main;
+
+import static com.prolog.jvm.zip.util.Instructions.CONSTANT;
+import static com.prolog.jvm.zip.util.Instructions.FACTS;
+import static com.prolog.jvm.zip.util.Instructions.RETURN;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.prolog.jvm.compiler.IncrementalCompiler;
+import com.prolog.jvm.compiler.parser.MappedFileReader;
+import com.prolog.jvm.exceptions.InternalCompilerException;
+import com.prolog.jvm.exceptions.RecognitionException;
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.FactTable;
+import com.prolog.jvm.symbol.PredicateSymbol;
+import com.prolog.jvm.symbol.Scope;
+import com.prolog.jvm.symbol.SymbolKey;
+import com.prolog.jvm.symbol.SymbolKeys;
+import com.prolog.jvm.zip.api.PrologBytecode;
+import com.prolog.jvm.zip.api.StepListener;
+import com.prolog.jvm.zip.api.ZipInterpreter;
+import com.prolog.jvm.zip.util.Validate;
+
+/**
+ * The dynamic database, allowing clauses to be added to and removed from the
+ * compiled program without recompiling the latter, as well as for reloading
+ * the predicates defined in a single source file. Added clauses are compiled
+ * by an {@link IncrementalCompiler} and spliced into the clause alternatives of
+ * their predicate, while removed clauses are at first merely marked as such.
+ * <p>
+ * Each change starts a new <i>generation</i>. A call to a predicate only
+ * considers the clauses visible in the generation in which it was made, so
+ * that, as per the logical update view of ISO Prolog, calls in progress are
+ * not affected by changes made after they started (say, by a
+ * {@link StepListener}, or in between the answers to a query).
+ * <p>
+ * Removed clauses are only unlinked from their predicates, and their code
+ * handed back to a {@link CodeSpace} for reuse, once no execution of the
+ * {@link ZipInterpreter} that started in an earlier generation is still in
+ * progress. To this end, the interpreter {@link #pin() pins} the generation in
+ * which it starts executing a query for the duration thereof, in the manner
+ * of epoch-based reclamation.
+ * <p>
+ * Like the remainder of the ZIP machine, this class is not thread-safe. The
+ * instance managed by {@link Factory#getDatabase()} operates on the program
+ * compiled most recently, and is emptied whenever a new program is compiled.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class Database {
+
+    private final PrologBytecode<?> code;
+    private final CodeSpace codeSpace;
+    private Scope scope;
+    private long generation;
+
+    // Added clauses, keyed on their normalized token sequences
+    private final Map<String,Deque<DynamicClause>> clauses = new HashMap<>();
+
+    // Removed clauses not yet reclaimed, in the order of their removal
+    private final Deque<DynamicClause> retired = new ArrayDeque<>();
+
+    // Pinned generations, mapped to the number of executions pinning them
+    private final TreeMap<Long,Integer> pinned = new TreeMap<>();
+
+    // Package-private constructor used by Factory
+    Database(final PrologBytecode<?> code) {
+        assert code != null;
+        this.code = code;
+        this.codeSpace = new CodeSpace(code);
+    }
+
+    // Operates on the program resolved in scope from here on
+    void reset(final Scope scope) {
+        assert scope != null;
+        this.scope = scope;
+        this.clauses.clear();
+        this.retired.clear();
+        this.codeSpace.clear();
+    }
+
+    // Releases code no longer executed that was not written by this instance
+    void release(final int address, final int length) {
+        this.codeSpace.release(address, length);
+    }
+
+    /**
+     * Returns the current generation, being incremented upon each change made
+     * to the database.
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Pins the current generation, preventing the clauses visible therein from
+     * being reclaimed until {@link #unpin(long)} is called. Invoked by the
+     * {@link ZipInterpreter} upon starting to execute a query.
+     *
+     * @return the pinned generation
+     */
+    public long pin() {
+        final Long key = Long.valueOf(this.generation);
+        final Integer count = this.pinned.get(key);
+        this.pinned.put(key, Integer.valueOf(count == null ? 1
+                : count.intValue() + 1));
+        return this.generation;
+    }
+
+    /**
+     * Unpins the specified generation, reclaiming the removed clauses no
+     * longer visible to any execution still in progress.
+     *
+     * @param generation a generation returned by {@link #pin()}
+     * @throws IllegalArgumentException if {@code generation} is not pinned
+     */
+    public void unpin(final long generation) {
+        final Long key = Long.valueOf(generation);
+        final Integer count = this.pinned.remove(key);
+        if (count == null) {
+            throw new IllegalArgumentException(Long.toString(generation));
+        }
+        if (count.intValue() > 1) {
+            this.pinned.put(key, Integer.valueOf(count.intValue() - 1));
+        }
+        reclaim();
+    }
+
+    /**
+     * Returns the number of words of code memory released by removed clauses
+     * and not yet reused.
+     */
+    public int getFreeCodeSize() {
+        return this.codeSpace.getFreeWords();
+    }
+
+    /**
+     * Adds the specified {@code clause} as the first alternative for its
+     * predicate.
+     *
+     * @param clause the source text of a single clause; not allowed to be null
+     * @throws IllegalArgumentException if {@code clause} does not consist of
+     * exactly one clause
+     * @throws IllegalStateException if no program was compiled yet
+     * @throws InternalCompilerException if the clause calls an undefined
+     * predicate
+     * @throws IOException
+     * @throws NullPointerException if {@code clause == null}
+     * @throws RecognitionException if a lexer- or parsing error occurred
+     */
+    public void asserta(final String clause) throws IOException,
+            RecognitionException {
+        add(clause, true);
+    }
+
+    /**
+     * Adds the specified {@code clause} as the last alternative for its
+     * predicate.
+     *
+     * @see #asserta(String)
+     */
+    public void assertz(final String clause) throws IOException,
+            RecognitionException {
+        add(clause, false);
+    }
+
+    /**
+     * Removes the first alternative among the clauses previously added through
+     * this instance that is identical to the specified {@code clause}, up to
+     * the names of variables and layout. Clauses that were part of the
+     * compiled program cannot be removed.
+     * <p>
+     * Note that, unlike {@code retract/1} in ISO Prolog, the specified clause
+     * is not unified with the clauses of its predicate, but compared to them
+     * textually. For example, after {@code assertz("p(a).")}, calling
+     * {@code retract("p(X).")} removes nothing.
+     *
+     * @param clause the source text of a single clause; not allowed to be null
+     * @return whether a clause was removed
+     * @throws IllegalArgumentException if {@code clause} does not consist of
+     * exactly one clause
+     * @throws IOException
+     * @throws NullPointerException if {@code clause == null}
+     * @throws RecognitionException if a lexer error occurred
+     */
+    public boolean retract(final String clause) throws IOException,
+            RecognitionException {
+        final String key = Normalizer.normalizeClause(requireNonNull(clause));
+        final Deque<DynamicClause> matches = this.clauses.get(key);
+        if (matches == null) {
+            return false;
+        }
+        DynamicClause removed;
+        do {
+            removed = matches.pollFirst();
+        } while (removed != null
+                && removed.symbol.getDied() != Long.MAX_VALUE); // reloaded
+        if (matches.isEmpty()) {
+            this.clauses.remove(key);
+        }
+        if (removed == null) {
+            return false;
+        }
+        removed.symbol.setDied(++this.generation);
+        this.retired.addLast(removed);
+        reclaim();
+        return true;
+    }
+
+    /**
+     * Replaces the clauses of each predicate defined in the specified source
+     * {@code file} by those found therein, leaving all other predicates
+     * intact. See {@link #reload(Reader)}.
+     *
+     * @param file the source file to reload; not allowed to be null
+     * @throws IOException
+     * @throws NullPointerException if {@code file == null}
+     * @throws RecognitionException if a lexer- or parsing error occurred
+     */
+    public void reload(final Path file) throws IOException,
+            RecognitionException {
+        try (final Reader source = MappedFileReader.newInstance(file)) {
+            reload(source);
+        }
+    }
+
+    /**
+     * Replaces the clauses of each predicate defined in the specified
+     * {@code source} by those found therein, including both clauses of the
+     * compiled program and those added through this instance, while leaving
+     * all other predicates intact. Only the clauses in {@code source} are
+     * compiled, after which all replacements are made within a single
+     * generation: calls made before see only the old clauses, and calls made
+     * afterwards only the new ones. The code of the old clauses is reclaimed
+     * as for {@link #retract(String)}.
+     * <p>
+     * Note predicates no longer defined in {@code source} keep their clauses.
+     * Reloaded clauses cannot be removed through {@link #retract(String)}.
+     *
+     * @param source the source text for the reloaded predicates; not allowed
+     * to be null
+     * @throws IllegalStateException if no program was compiled yet
+     * @throws InternalCompilerException if {@code source} calls an undefined
+     * predicate
+     * @throws IOException
+     * @throws NullPointerException if {@code source == null}
+     * @throws RecognitionException if a lexer- or parsing error occurred
+     */
+    public void reload(final Reader source) throws IOException,
+            RecognitionException {
+        requireNonNull(source);
+        if (this.scope == null) {
+            throw new IllegalStateException("No program compiled");
+        }
+        final IncrementalCompiler compiler = new IncrementalCompiler(this.code,
+                this.scope);
+        compiler.compile(source);
+        final long next = this.generation + 1;
+        for (final Map.Entry<PredicateSymbol,ClauseSymbol> entry : compiler
+                .getClauses().entrySet()) {
+            retire(entry.getKey(), next);
+            append(entry.getKey(), entry.getValue(), next);
+        }
+        this.generation = next;
+        reclaim();
+    }
+
+    /**
+     * Stores the clauses of each predicate consisting solely of at least
+     * {@code minRows} ground facts in a {@link FactTable}, taking up a single
+     * int per argument in place of the code and {@link ClauseSymbol} of each
+     * fact. Only facts whose arguments are all constants qualify. As for
+     * {@link #reload(Reader)}, the clauses of all such predicates are replaced
+     * within a single generation, each by a single clause standing for its
+     * table, and their code is reclaimed likewise. Tabulated clauses cannot be
+     * removed through {@link #retract(String)}.
+     *
+     * @param minRows the minimum number of facts for a predicate to be stored
+     * in a table; must be {@code > 0}
+     * @return the number of predicates stored in tables
+     * @throws IllegalArgumentException if {@code minRows <= 0}
+     * @throws IllegalStateException if no program was compiled yet
+     */
+    public int tabulate(final int minRows) {
+        Validate.argument(minRows > 0);
+        if (this.scope == null) {
+            throw new IllegalStateException("No program compiled");
+        }
+        final List<PredicateSymbol> predicates = new ArrayList<>();
+        for (final SymbolKey<?> key : this.scope.getKeys()) {
+            if (key.getSymbolClass().equals(PredicateSymbol.class)) {
+                predicates.add((PredicateSymbol) this.scope.resolveLocal(key));
+            }
+        }
+        final long next = this.generation + 1;
+        int count = 0;
+        for (final PredicateSymbol predicate : predicates) {
+            final FactTable table = toFactTable(predicate, minRows);
+            if (table == null) {
+                continue;
+            }
+            final int codeStart = this.code.getCodeSize();
+            this.code.writeIns(FACTS, predicate.getArity());
+            final ClauseSymbol clause = new ClauseSymbol();
+            clause.setParams(predicate.getArity());
+            clause.setHeapptr(this.codeSpace.allocate(codeStart));
+            clause.setFacts(table);
+            retire(predicate, next);
+            append(predicate, clause, next);
+            count++;
+        }
+        if (count > 0) {
+            this.generation = next;
+            reclaim();
+        }
+        return count;
+    }
+
+    /*
+     * Returns a table holding the facts visible for the specified predicate,
+     * or null if there are less than minRows of them, or if there are any
+     * other clauses.
+     */
+    private FactTable toFactTable(final PredicateSymbol predicate,
+            final int minRows) {
+        final int arity = predicate.getArity();
+        if (arity == 0) {
+            return null;
+        }
+        final FactTable table = new FactTable(arity);
+        final int[] row = new int[arity];
+        for (ClauseSymbol clause = ClauseSymbol.firstVisible(
+                predicate.getFirst(), this.generation); clause != null;
+                clause = ClauseSymbol.firstVisible(clause.getNext(),
+                        this.generation)) {
+            if (clause.getFacts() != null || clause.getLocals() != 0) {
+                return null;
+            }
+            // A fact of constants compiles to CONSTANT c1 ... CONSTANT cn
+            // followed by RETURN n
+            final int start = clause.getHeapptr();
+            for (int i = 0; i < arity; i++) {
+                if (this.code.read(start + 2 * i) != CONSTANT) {
+                    return null;
+                }
+                row[i] = this.code.read(start + 2 * i + 1);
+            }
+            if (this.code.read(start + 2 * arity) != RETURN) {
+                return null;
+            }
+            table.addRow(row);
+        }
+        if (table.getRows() < minRows) {
+            return null;
+        }
+        table.trimToSize();
+        return table;
+    }
+
+    // Retires the clauses of the specified predicate visible so far
+    private void retire(final PredicateSymbol predicate, final long died) {
+        for (ClauseSymbol clause = ClauseSymbol.firstVisible(
+                predicate.getFirst(), this.generation); clause != null;
+                clause = ClauseSymbol.firstVisible(clause.getNext(),
+                        this.generation)) {
+            clause.setDied(died);
+            this.retired.addLast(new DynamicClause(predicate, clause,
+                    this.code.getClauseLength(clause.getHeapptr())));
+        }
+    }
+
+    // Appends the specified chain of clause alternatives to the predicate
+    private void append(final PredicateSymbol predicate,
+            final ClauseSymbol first, final long born) {
+        ClauseSymbol last = first;
+        last.setBorn(born);
+        while (last.getNext() != null) {
+            last = last.getNext();
+            last.setBorn(born);
+        }
+        final SymbolKey<ClauseSymbol> lastKey = SymbolKeys.ofClause(
+                predicate.getName(), predicate.getArity());
+        final ClauseSymbol previous = this.scope.resolveLocal(lastKey);
+        if (previous == null) {
+            predicate.addFirst(first);
+        } else {
+            previous.setNext(first);
+        }
+        this.scope.defineLocal(lastKey, last);
+    }
+
+    /*
+     * Unlinks the removed clauses no longer visible to any execution in
+     * progress from their predicates, and releases their code.
+     */
+    private void reclaim() {
+        final long safe = this.pinned.isEmpty() ? this.generation
+                : this.pinned.firstKey().longValue();
+        final Map<PredicateSymbol,Boolean> purged = new IdentityHashMap<>();
+        // Clauses were retired in the order of the generations they died in
+        while (!this.retired.isEmpty()
+                && this.retired.peekFirst().symbol.getDied() <= safe) {
+            final DynamicClause removed = this.retired.removeFirst();
+            if (purged.put(removed.predicate, Boolean.TRUE) == null) {
+                purge(removed.predicate, safe);
+            }
+            this.codeSpace.release(removed.symbol.getHeapptr(),
+                    removed.length);
+        }
+    }
+
+    private void purge(final PredicateSymbol predicate, final long safe) {
+        final SymbolKey<ClauseSymbol> lastKey = SymbolKeys.ofClause(
+                predicate.getName(), predicate.getArity());
+        final ClauseSymbol last = predicate.purge(safe);
+        if (last == null) {
+            this.scope.removeLocal(lastKey);
+        } else {
+            this.scope.defineLocal(lastKey, last);
+        }
+    }
+
+    private void add(final String clause, final boolean first)
+            throws IOException, RecognitionException {
+        final String key = Normalizer.normalizeClause(requireNonNull(clause));
+        if (this.scope == null) {
+            throw new IllegalStateException("No program compiled");
+        }
+        final int codeStart = this.code.getCodeSize();
+        final IncrementalCompiler compiler = new IncrementalCompiler(this.code,
+                this.scope);
+        try (final StringReader sr = new StringReader(clause)) {
+            compiler.compile(sr);
+        }
+        final Map.Entry<PredicateSymbol,ClauseSymbol> entry = compiler
+                .getClauses().entrySet().iterator().next();
+        final PredicateSymbol predicate = entry.getKey();
+        final ClauseSymbol symbol = entry.getValue();
+        final int length = this.code.getCodeSize() - codeStart;
+        symbol.setHeapptr(this.codeSpace.allocate(codeStart));
+        symbol.setBorn(++this.generation);
+
+        // The clause key tracks the last alternative, as for the compiler
+        final SymbolKey<ClauseSymbol> lastKey = SymbolKeys.ofClause(
+                predicate.getName(), predicate.getArity());
+        final ClauseSymbol last = this.scope.resolveLocal(lastKey);
+        if (last == null) {
+            predicate.addFirst(symbol);
+            this.scope.defineLocal(lastKey, symbol);
+        } else if (first) {
+            predicate.addFirst(symbol);
+        } else {
+            last.setNext(symbol);
+            this.scope.defineLocal(lastKey, symbol);
+        }
+
+        Deque<DynamicClause> matches = this.clauses.get(key);
+        if (matches == null) {
+            matches = new ArrayDeque<>();
+            this.clauses.put(key, matches);
+        }
+        final DynamicClause added = new DynamicClause(predicate, symbol,
+                length);
+        if (first) {
+            matches.addFirst(added);
+        } else {
+            matches.addLast(added);
+        }
+    }
+
+    // A clause added or replaced through this instance, with its code length
+    private static final class DynamicClause {
+        private final PredicateSymbol predicate;
+        private final ClauseSymbol symbol;
+        private final int length;
+
+        private DynamicClause(final PredicateSymbol predicate,
+                final ClauseSymbol symbol, final int length) {
+            this.predicate = predicate;
+            this.symbol = symbol;
+            this.length = length;
+        }
+    }
+}
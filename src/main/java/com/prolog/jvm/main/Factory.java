@@ -5,6 +5,7 @@ import static com.prolog.jvm.zip.util.MemoryConstants.MAX_HEAP_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MAX_LOCAL_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MAX_PDL_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MAX_SCRATCHPAD_INDEX;
+import static com.prolog.jvm.zip.util.MemoryConstants.MAX_STATIC_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MAX_TRAIL_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MEMORY_SIZE;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_GLOBAL_INDEX;
@@ -12,27 +13,47 @@ import static com.prolog.jvm.zip.util.MemoryConstants.MIN_HEAP_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_LOCAL_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_PDL_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_SCRATCHPAD_INDEX;
+import static com.prolog.jvm.zip.util.MemoryConstants.MIN_STATIC_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_TRAIL_INDEX;
+import static java.util.Objects.requireNonNull;
 
+import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import com.prolog.jvm.compiler.AbstractCompiler;
+import com.prolog.jvm.compiler.ParallelProgramCompiler;
+import com.prolog.jvm.compiler.PeepholeOptimizer;
 import com.prolog.jvm.compiler.ProgramCompiler;
 import com.prolog.jvm.compiler.QueryCompiler;
+import com.prolog.jvm.compiler.StreamingProgramCompiler;
+import com.prolog.jvm.exceptions.RecognitionException;
+import com.prolog.jvm.symbol.FactTable;
 import com.prolog.jvm.symbol.Scope;
 import com.prolog.jvm.zip.PrologBytecodeImpl;
 import com.prolog.jvm.zip.PrologBytecodeImpl.MementoImpl;
+import com.prolog.jvm.zip.SamplingProfiler;
 import com.prolog.jvm.zip.ZipFacadeImpl;
 import com.prolog.jvm.zip.ZipInterpreterImpl;
 import com.prolog.jvm.zip.api.MemoryArea;
 import com.prolog.jvm.zip.api.PrologBytecode;
 import com.prolog.jvm.zip.api.ZipFacade;
 import com.prolog.jvm.zip.api.ZipInterpreter;
+import com.prolog.jvm.zip.util.MemoryConstants;
+import com.prolog.jvm.zip.util.Validate;
 
 /**
  * Utility class containing static factory methods for obtaining references to
@@ -48,6 +69,18 @@ public final class Factory {
     private static final MementoImpl BYTECODE_MEMENTO;
     private static final ZipFacade ZIP_FACADE;
     private static final ZipInterpreter ZIP_INTERPRETER;
+    private static final QueryCache QUERY_CACHE;
+    private static final Database DATABASE;
+    private static final ForkJoinPool CONSULT_POOL = new ForkJoinPool();
+    private static final PeepholeOptimizer PEEPHOLE_OPTIMIZER =
+            new PeepholeOptimizer();
+
+    // Maximum number of compiled queries retained by QUERY_CACHE
+    private static final int QUERY_CACHE_CAPACITY = 512;
+
+    // Name under which the interpreter's metrics are registered with JMX
+    private static final String MBEAN_NAME =
+            "com.prolog.jvm:type=ZipInterpreter";
 
     /*
      * During compilation, clause-, functor- and predicate symbols are resolved
@@ -68,7 +101,7 @@ public final class Factory {
         CONSTANT_POOL.add(null);
 
         PROLOG_BYTECODE = new PrologBytecodeImpl(CONSTANT_POOL,
-                MemoryAreas.HEAP);
+                MemoryAreas.HEAP, MemoryAreas.STATIC_AREA);
 
         // Keep a memento of PROLOG_BYTECODE in still pristine condition
         BYTECODE_MEMENTO = PROLOG_BYTECODE.createMemento();
@@ -83,6 +116,11 @@ public final class Factory {
                 .setScratchpad(MemoryAreas.SCRATCHPAD).build();
 
         ZIP_INTERPRETER = new ZipInterpreterImpl(ZIP_FACADE);
+
+        QUERY_CACHE = new QueryCache(QUERY_CACHE_CAPACITY, PROLOG_BYTECODE,
+                CONSTANT_POOL, queryVars);
+
+        DATABASE = new Database(PROLOG_BYTECODE);
     }
 
     // Private constructor to prevent instantiation.
@@ -94,7 +132,10 @@ public final class Factory {
      * Returns a representation of the compiled bytecode instructions for a
      * program and query, using addresses {@link ProcessorModes#MIN_HEAP_INDEX}
      * up to and including {@link ProcessorModes#MAX_HEAP_INDEX} for its code
-     * memory.
+     * memory, and {@link MemoryConstants#MIN_STATIC_INDEX} up to and including
+     * {@link MemoryConstants#MAX_STATIC_INDEX} for the ground terms occurring
+     * in the program. The latter follow the local stack, and are thus
+     * addressable by the words on either stack.
      * <p>
      * This method is guaranteed to return the same instance upon each of its
      * invocations.
@@ -133,13 +174,162 @@ public final class Factory {
         return ZIP_INTERPRETER;
     }
 
+    /**
+     * Returns a {@link QueryCache} writing to {@link #getBytecode()} and
+     * filling {@link #getQueryVars()}, guaranteed to be the same upon each
+     * invocation.
+     */
+    public static final QueryCache getQueryCache() {
+        return QUERY_CACHE;
+    }
+
+    /**
+     * Returns the {@link Database} for adding clauses to and removing clauses
+     * from the program compiled most recently, guaranteed to be the same upon
+     * each invocation.
+     */
+    public static final Database getDatabase() {
+        return DATABASE;
+    }
+
+    /**
+     * Returns the {@link PeepholeOptimizer} applied to each clause and query
+     * right after its bytecode was generated, guaranteed to be the same upon
+     * each invocation.
+     */
+    public static final PeepholeOptimizer getPeepholeOptimizer() {
+        return PEEPHOLE_OPTIMIZER;
+    }
+
+    /**
+     * Registers the metrics of {@link #getInterpreter()} with the platform
+     * MBean server under the name {@value #MBEAN_NAME}, unless registered
+     * already.
+     *
+     * @throws JMException if the registration failed
+     */
+    public static final synchronized void registerMBean()
+            throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(MBEAN_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(ZIP_INTERPRETER.getMetrics(), name);
+        }
+    }
+
+    /**
+     * Returns a new {@link SamplingProfiler} for the clauses compiled to
+     * {@link #getBytecode()}, yet to be set on the interpreter and started.
+     *
+     * @param period the sampling period; must be {@code > 0}
+     * @param unit the unit of {@code period}; not allowed to be null
+     * @param maxDepth the maximum number of frames per sampled stack; must be
+     * {@code > 0}
+     * @throws NullPointerException if {@code unit == null}
+     * @throws IllegalArgumentException if {@code period <= 0 || maxDepth <= 0}
+     */
+    public static final SamplingProfiler newSamplingProfiler(
+            final long period, final TimeUnit unit, final int maxDepth) {
+        return new SamplingProfiler(CONSTANT_POOL, PROLOG_BYTECODE, period,
+                unit, maxDepth);
+    }
+
     /**
      * Returns a new {@link AbstractCompiler} instance for Prolog programs.
+     * Since any previously compiled program is thereby discarded, the
+     * {@link QueryCache} is invalidated as well.
      */
     public static final AbstractCompiler newProgramCompiler() {
+        resetProgram();
+        return new ProgramCompiler(PROLOG_BYTECODE, rootScope);
+    }
+
+    /**
+     * Returns a new {@link AbstractCompiler} instance for Prolog programs that
+     * compiles each clause as soon as it has been parsed, keeping memory use
+     * bounded for very large programs. Like {@link #newProgramCompiler()}, any
+     * previously compiled program is thereby discarded.
+     */
+    public static final AbstractCompiler newStreamingProgramCompiler() {
+        resetProgram();
+        return new StreamingProgramCompiler(PROLOG_BYTECODE, rootScope);
+    }
+
+    /**
+     * Returns a new {@link StreamingProgramCompiler} instance for Prolog
+     * programs like {@link #newStreamingProgramCompiler()}, storing each run
+     * of at least {@code minRows} consecutive facts of constants of the same
+     * predicate in a {@link FactTable} while it is parsed.
+     *
+     * @param minRows the minimum number of facts for storing them in a table;
+     * must be {@code > 0}
+     * @throws IllegalArgumentException if {@code minRows <= 0}
+     */
+    public static final AbstractCompiler newStreamingProgramCompiler(
+            final int minRows) {
+        Validate.argument(minRows > 0);
+        resetProgram();
+        return new StreamingProgramCompiler(PROLOG_BYTECODE, rootScope,
+                minRows);
+    }
+
+    /**
+     * Returns a new {@link ParallelProgramCompiler} instance for Prolog
+     * programs spread over multiple source files, compiling the latter in
+     * parallel on a pool sized after the number of available processors. Like
+     * {@link #newProgramCompiler()}, any previously compiled program is
+     * thereby discarded.
+     */
+    public static final ParallelProgramCompiler newParallelProgramCompiler() {
+        resetProgram();
+        return new ParallelProgramCompiler(PROLOG_BYTECODE, rootScope,
+                CONSULT_POOL);
+    }
+
+    /**
+     * Saves the currently compiled program to the specified image
+     * {@code file}, from which it can later be restored through
+     * {@link #loadImage(Path)}. Meant for invocation immediately after the
+     * program was compiled, just prior to compiling the first query.
+     *
+     * @param file the image file to write, replacing any existing one; not
+     * allowed to be null
+     * @throws IOException if an I/O error occurred
+     * @throws NullPointerException if {@code file == null}
+     */
+    public static final void saveImage(final Path file) throws IOException {
+        ProgramImage.write(requireNonNull(file), PROLOG_BYTECODE,
+                CONSTANT_POOL, rootScope);
+    }
+
+    /**
+     * Loads the program saved to the specified image {@code file} by
+     * {@link #saveImage(Path)}, mapping the latter into memory. Like
+     * {@link #newProgramCompiler()}, any previously compiled program is
+     * thereby discarded.
+     *
+     * @param file the image file to read; not allowed to be null
+     * @throws IOException if an I/O error occurred, or if {@code file} is not a
+     * valid image
+     * @throws NullPointerException if {@code file == null}
+     */
+    public static final void loadImage(final Path file) throws IOException {
+        requireNonNull(file);
+        resetProgram();
+        try {
+            ProgramImage.read(file, PROLOG_BYTECODE, rootScope);
+        } catch (IOException | RuntimeException e) {
+            resetProgram(); // Don't leave a partially loaded program behind
+            throw e;
+        }
+    }
+
+    // Discards the previously compiled program, if any
+    private static void resetProgram() {
+        QUERY_CACHE.invalidate();
         rootScope = Scope.newRootInstance();
+        DATABASE.reset(rootScope);
         PROLOG_BYTECODE.setMemento(BYTECODE_MEMENTO);
-        return new ProgramCompiler(PROLOG_BYTECODE, rootScope);
     }
 
     /**
@@ -147,8 +337,31 @@ public final class Factory {
      */
     public static final AbstractCompiler newQueryCompiler() {
         queryVars.clear();
-        return new QueryCompiler(PROLOG_BYTECODE, Scope.copyOf(rootScope),
-                queryVars);
+        return new QueryCompiler(PROLOG_BYTECODE,
+                Scope.newOverlayInstance(rootScope), queryVars);
+    }
+
+    /**
+     * Compiles the specified {@code query} as a {@link PreparedQuery}, treating
+     * its variables as parameters. The compiled code is kept at the current end
+     * of the code memory.
+     *
+     * @param query the query source text; not allowed to be null
+     * @throws IOException
+     * @throws NullPointerException if {@code query == null}
+     * @throws RecognitionException if a lexer- or parsing error occurred
+     */
+    public static final PreparedQuery prepareQuery(final String query)
+            throws IOException, RecognitionException {
+        queryVars.clear();
+        final int queryAddr = PROLOG_BYTECODE.getCodeSize();
+        try (final StringReader sr = new StringReader(requireNonNull(query))) {
+            new QueryCompiler(PROLOG_BYTECODE,
+                    Scope.newOverlayInstance(rootScope), queryVars, true)
+                    .compile(sr);
+        }
+        return new PreparedQuery(queryAddr, PROLOG_BYTECODE,
+                new HashMap<>(queryVars), queryVars);
     }
 
     /**
@@ -168,9 +381,11 @@ public final class Factory {
 
         GLOBAL_STACK(MIN_GLOBAL_INDEX, MAX_GLOBAL_INDEX),
 
+        STATIC_AREA(MIN_STATIC_INDEX, MAX_STATIC_INDEX),
+
         LOCAL_STACK(MIN_LOCAL_INDEX, MAX_LOCAL_INDEX),
 
-        WORD_STORE(MIN_GLOBAL_INDEX, MAX_LOCAL_INDEX),
+        WORD_STORE(MIN_GLOBAL_INDEX, MAX_STATIC_INDEX),
 
         TRAIL_STACK(MIN_TRAIL_INDEX, MAX_TRAIL_INDEX),
 
@@ -0,0 +1,89 @@
+package com.prolog.jvm.main;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.prolog.jvm.compiler.parser.Lexer;
+import com.prolog.jvm.compiler.parser.PrologLexer;
+import com.prolog.jvm.compiler.parser.Token;
+import com.prolog.jvm.compiler.parser.TokenType;
+import com.prolog.jvm.exceptions.RecognitionException;
+
+/**
+ * Utility class for keying source text on its token sequence with each
+ * variable renamed after the position of its first occurrence, so that texts
+ * differing only in layout and the names of their variables share the same
+ * key. Used by {@link QueryCache} for queries and by {@link Database} for
+ * clauses.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+final class Normalizer {
+
+    // Private to prevent instantiation.
+    private Normalizer() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the normalized token sequence for the specified {@code source},
+     * recording the names of its variables in {@code names} in the order of
+     * their first occurrence.
+     *
+     * @throws IOException
+     * @throws RecognitionException if a lexer error occurred
+     */
+    static String normalize(final String source, final List<String> names)
+            throws IOException, RecognitionException {
+        return normalize(source, names, false);
+    }
+
+    /**
+     * Returns the normalized token sequence for the specified {@code clause}.
+     *
+     * @throws IllegalArgumentException if {@code clause} does not consist of
+     * exactly one clause
+     * @throws IOException
+     * @throws RecognitionException if a lexer error occurred
+     */
+    static String normalizeClause(final String clause) throws IOException,
+            RecognitionException {
+        return normalize(clause, new ArrayList<String>(), true);
+    }
+
+    private static String normalize(final String source,
+            final List<String> names, final boolean singleClause)
+            throws IOException, RecognitionException {
+        final Lexer lexer = PrologLexer.newInstance(new StringReader(source));
+        final StringBuilder key = new StringBuilder();
+        int periods = 0;
+        Token token;
+        while ((token = lexer.nextToken()).getType() != TokenType.EOF) {
+            if (periods > 0) {
+                periods++; // Tokens following the end of the clause
+            } else if (token.getType() == TokenType.PERIOD) {
+                periods = 1;
+            }
+            if (token.getType() == TokenType.VAR) {
+                int index = names.indexOf(token.getText());
+                if (index == -1) {
+                    index = names.size();
+                    names.add(token.getText());
+                }
+                key.append('_').append(index);
+            } else {
+                key.append(token.getText());
+            }
+            key.append(' ');
+        }
+        if (singleClause && periods != 1) {
+            throw new IllegalArgumentException(
+                    "Expected a single clause: " + source);
+        }
+        return key.toString();
+    }
+
+}
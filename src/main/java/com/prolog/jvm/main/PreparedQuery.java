@@ -0,0 +1,161 @@
+package com.prolog.jvm.main;
+
+import static com.prolog.jvm.zip.util.PlWords.REF;
+import static com.prolog.jvm.zip.util.PlWords.getWord;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedReader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.zip.api.PrologBytecode;
+import com.prolog.jvm.zip.api.QueryArguments;
+import com.prolog.jvm.zip.api.ZipFacade;
+import com.prolog.jvm.zip.util.PlWords;
+
+/**
+ * A query compiled once, with its variables treated as parameters that may be
+ * bound to {@link Term}s from Java prior to each execution. Parameters left
+ * unbound act as ordinary query variables, and are reported as such in the
+ * answers written out.
+ * <p>
+ * The compiled code remains valid until a new program is compiled, and
+ * provided the code memory it occupies is not reclaimed by restoring a
+ * {@link PrologBytecode.Memento} taken before it was prepared. Instances are
+ * obtained through {@link Factory#prepareQuery(String)}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class PreparedQuery implements QueryArguments {
+
+    private final int queryAddr;
+    private final PrologBytecode<?> code;
+    private final Map<Integer,String> queryVars;
+
+    // parameter names and their local stack addresses
+    private final Map<String,Integer> slots;
+
+    // parameter names and their bound values
+    private final Map<String,Term> bindings = new HashMap<>();
+
+    // Package-private constructor used by Factory
+    PreparedQuery(final int queryAddr, final PrologBytecode<?> code,
+            final Map<Integer,String> params,
+            final Map<Integer,String> queryVars) {
+        assert code != null;
+        assert params != null;
+        assert queryVars != null;
+        this.queryAddr = queryAddr;
+        this.code = code;
+        this.queryVars = queryVars;
+        this.slots = new HashMap<>();
+        for (final Map.Entry<Integer,String> e : params.entrySet()) {
+            this.slots.put(e.getValue(), e.getKey());
+        }
+    }
+
+    /**
+     * Returns the names of this query's parameters.
+     */
+    public Set<String> getParameters() {
+        return Collections.unmodifiableSet(this.slots.keySet());
+    }
+
+    /**
+     * Binds the specified parameter to the given {@code value}, replacing any
+     * previous binding.
+     *
+     * @param name the name of a parameter
+     * @param value the value to bind to; not allowed to be null
+     * @return this instance, for chaining
+     * @throws IllegalArgumentException if {@code name} is not among
+     * {@link #getParameters()}
+     * @throws NullPointerException if {@code value == null}
+     */
+    public PreparedQuery bind(final String name, final Term value) {
+        if (!this.slots.containsKey(name)) {
+            throw new IllegalArgumentException(name);
+        }
+        registerFunctors(requireNonNull(value));
+        this.bindings.put(name, value);
+        return this;
+    }
+
+    /**
+     * Binds the specified parameter to the atom with the given {@code name},
+     * replacing any previous binding.
+     *
+     * @see #bind(String, Term)
+     */
+    public PreparedQuery bind(final String name, final String atom) {
+        return bind(name, Term.atom(atom));
+    }
+
+    /**
+     * Removes all parameter bindings.
+     */
+    public void clearBindings() {
+        this.bindings.clear();
+    }
+
+    /**
+     * Executes this query for the current parameter bindings, writing out an
+     * answer for each of the unbound parameters.
+     *
+     * @param in the source for reading in user commands
+     * @param out the target for writing the answer to
+     * @throws Exception
+     */
+    public void execute(final BufferedReader in, final Writer out)
+            throws Exception {
+        this.queryVars.clear();
+        for (final Map.Entry<String,Integer> e : this.slots.entrySet()) {
+            if (!this.bindings.containsKey(e.getKey())) {
+                this.queryVars.put(e.getValue(), e.getKey());
+            }
+        }
+        Factory.getInterpreter().execute(this.queryAddr, this, in, out);
+    }
+
+    @Override
+    public void writeTo(final ZipFacade facade) {
+        for (final Map.Entry<String,Integer> e : this.slots.entrySet()) {
+            final int address = e.getValue().intValue();
+            final Term value = this.bindings.get(e.getKey());
+            if (value == null) {
+                facade.setWord(address, getWord(REF, address));
+            } else {
+                writeTerm(facade, address, value);
+            }
+        }
+    }
+
+    // Writes term at address, pushing its substructures on the global stack
+    private static void writeTerm(final ZipFacade facade, final int address,
+            final Term term) {
+        final FunctorSymbol functor = term.getFunctor();
+        if (functor.getArity() == 0) {
+            facade.setWord(address, functor);
+            return;
+        }
+        final int word = facade.pushFunctor(functor);
+        facade.setWord(address, word);
+        final int globalAddr = PlWords.getValue(word);
+        for (int i = 0; i < functor.getArity(); i++) {
+            writeTerm(facade, globalAddr + i + 1, term.getArg(i));
+        }
+    }
+
+    // The ZIP facade only accepts functors present in the constant pool
+    private void registerFunctors(final Term term) {
+        this.code.getConstantPoolIndex(term.getFunctor());
+        for (int i = 0; i < term.getFunctor().getArity(); i++) {
+            registerFunctors(term.getArg(i));
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.prolog.jvm.main;
+
+import static com.prolog.jvm.zip.util.MemoryConstants.MIN_HEAP_INDEX;
+import static com.prolog.jvm.zip.util.MemoryConstants.MIN_STATIC_INDEX;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.FactTable;
+import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.symbol.PredicateSymbol;
+import com.prolog.jvm.symbol.Scope;
+import com.prolog.jvm.symbol.Symbol;
+import com.prolog.jvm.symbol.SymbolKey;
+import com.prolog.jvm.symbol.SymbolKeys;
+import com.prolog.jvm.zip.api.PrologBytecode;
+
+/**
+ * Utility class for saving a compiled program to a binary image, and for
+ * loading it back in without recompiling its source. An image consists of the
+ * following sections, all integers being stored in big-endian order:
+ * <ol>
+ * <li>A header, comprising {@link #MAGIC}, {@link #VERSION}, the address of
+ * the first code word and the number of code words.
+ * <li>The code words, as read from the code memory.
+ * <li>The predicate table, listing for each predicate its name, arity and
+ * the index of its first clause alternative (or -1).
+ * <li>The clause table, listing for each clause its number of parameters and
+ * local variables, its heap address, its first argument index key and the
+ * index of its next clause alternative (or -1).
+ * <li>The fact table section, listing the number of clauses standing for a
+ * {@link FactTable}, and for each the index of the clause, the number of rows
+ * and the constant pool indices of the table's columns, one column after the
+ * other.
+ * <li>The functor table, listing the name and arity of each functor.
+ * <li>The constant pool, listing for each entry (save the first, reserved
+ * one) either {@link #FUNCTOR_TAG} followed by the name and arity of a
+ * functor, or {@link #PREDICATE_TAG} followed by an index into the predicate
+ * table.
+ * <li>The static area, comprising the address of its first word, its number
+ * of words and the words themselves.
+ * </ol>
+ * Names are stored as their number of characters, followed by the latter's
+ * UTF-16 code units. Since the code words directly follow the fixed-size
+ * header, the loader can transfer them from a memory-mapped view of the image
+ * into the code memory without decoding them one instruction at a time.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+final class ProgramImage {
+
+    /**
+     * The first word of each image.
+     */
+    static final int MAGIC = 0x504C4A56; // "PLJV"
+
+    /**
+     * The version of the image format written by this class.
+     */
+    static final int VERSION = 4;
+
+    /**
+     * Tag for constant pool entries referring to a functor.
+     */
+    static final byte FUNCTOR_TAG = 0;
+
+    /**
+     * Tag for constant pool entries referring to a predicate.
+     */
+    static final byte PREDICATE_TAG = 1;
+
+    private static final String CORRUPT = "Corrupt program image: %s";
+
+    // Private constructor to prevent instantiation.
+    private ProgramImage() {
+        throw new AssertionError();
+    }
+
+    // === Writing ===
+
+    /**
+     * Writes the program compiled into {@code code}, whose symbols were
+     * defined in {@code scope}, to the specified {@code file}.
+     *
+     * @param file the image file to write, replacing any existing one
+     * @param code the compiled program
+     * @param constants the constant pool of {@code code}
+     * @param scope the root scope of the compiled program
+     * @throws IOException if an I/O error occurred
+     */
+    static void write(final Path file, final PrologBytecode<?> code,
+            final List<Object> constants, final Scope scope)
+            throws IOException {
+        final List<PredicateSymbol> predicates = new ArrayList<>();
+        final List<FunctorSymbol> functors = new ArrayList<>();
+        for (final SymbolKey<?> key : scope.getKeys()) {
+            final Class<?> clazz = key.getSymbolClass();
+            if (clazz.equals(PredicateSymbol.class)) {
+                predicates.add((PredicateSymbol) resolve(scope, key));
+            } else if (clazz.equals(FunctorSymbol.class)) {
+                functors.add((FunctorSymbol) resolve(scope, key));
+            }
+        }
+        final Map<PredicateSymbol,Integer> predicateIndices =
+                new IdentityHashMap<>();
+        final Map<ClauseSymbol,Integer> clauseIndices = new IdentityHashMap<>();
+        final List<ClauseSymbol> clauses = new ArrayList<>();
+        for (final PredicateSymbol predicate : predicates) {
+            predicateIndices.put(predicate,
+                    Integer.valueOf(predicateIndices.size()));
+            for (ClauseSymbol clause = live(predicate.getFirst());
+                    clause != null; clause = live(clause.getNext())) {
+                clauseIndices.put(clause, Integer.valueOf(clauses.size()));
+                clauses.add(clause);
+            }
+        }
+
+        try (final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(MIN_HEAP_INDEX);
+            out.writeInt(code.getCodeSize() - MIN_HEAP_INDEX);
+            for (int i = MIN_HEAP_INDEX; i < code.getCodeSize(); i++) {
+                out.writeInt(code.read(i));
+            }
+
+            out.writeInt(predicates.size());
+            for (final PredicateSymbol predicate : predicates) {
+                writeString(out, predicate.getName());
+                out.writeInt(predicate.getArity());
+                out.writeInt(indexOf(clauseIndices,
+                        live(predicate.getFirst())));
+            }
+
+            out.writeInt(clauses.size());
+            for (final ClauseSymbol clause : clauses) {
+                out.writeInt(clause.getParams());
+                out.writeInt(clause.getLocals());
+                out.writeInt(clause.getHeapptr());
+                out.writeInt(clause.getKey());
+                out.writeInt(indexOf(clauseIndices,
+                        live(clause.getNext())));
+            }
+
+            final List<ClauseSymbol> tabulated = new ArrayList<>();
+            for (final ClauseSymbol clause : clauses) {
+                if (clause.getFacts() != null) {
+                    tabulated.add(clause);
+                }
+            }
+            out.writeInt(tabulated.size());
+            for (final ClauseSymbol clause : tabulated) {
+                final FactTable table = clause.getFacts();
+                out.writeInt(indexOf(clauseIndices, clause));
+                out.writeInt(table.getRows());
+                for (int i = 0; i < table.getArity(); i++) {
+                    for (int row = 0; row < table.getRows(); row++) {
+                        out.writeInt(table.get(row, i));
+                    }
+                }
+            }
+
+            out.writeInt(functors.size());
+            for (final FunctorSymbol functor : functors) {
+                writeString(out, functor.getName());
+                out.writeInt(functor.getArity());
+            }
+
+            out.writeInt(constants.size());
+            for (final Object constant : constants.subList(1,
+                    constants.size())) {
+                if (constant instanceof FunctorSymbol) {
+                    final FunctorSymbol functor = (FunctorSymbol) constant;
+                    out.writeByte(FUNCTOR_TAG);
+                    writeString(out, functor.getName());
+                    out.writeInt(functor.getArity());
+                } else if (constant instanceof PredicateSymbol) {
+                    out.writeByte(PREDICATE_TAG);
+                    out.writeInt(indexOf(predicateIndices, constant));
+                } else {
+                    throw new IllegalStateException(
+                            "Unsupported constant: " + constant);
+                }
+            }
+
+            out.writeInt(MIN_STATIC_INDEX);
+            out.writeInt(code.getStaticSize() - MIN_STATIC_INDEX);
+            for (int i = MIN_STATIC_INDEX; i < code.getStaticSize(); i++) {
+                out.writeInt(code.readStatic(i));
+            }
+        }
+    }
+
+    // Skips the clauses removed from the dynamic database
+    private static ClauseSymbol live(ClauseSymbol clause) {
+        while (clause != null && clause.getDied() != Long.MAX_VALUE) {
+            clause = clause.getNext();
+        }
+        return clause;
+    }
+
+    private static Symbol resolve(final Scope scope, final SymbolKey<?> key) {
+        return scope.resolveLocal(key);
+    }
+
+    // Returns the index of symbol, or -1 if it is null
+    private static int indexOf(final Map<?,Integer> indices,
+            final Object symbol) {
+        if (symbol == null) {
+            return -1;
+        }
+        final Integer index = indices.get(symbol);
+        if (index == null) {
+            throw new IllegalStateException("Undefined symbol: " + symbol);
+        }
+        return index.intValue();
+    }
+
+    private static void writeString(final DataOutputStream out,
+            final String s) throws IOException {
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    // === Loading ===
+
+    /**
+     * Loads the program contained in the specified image {@code file},
+     * appending its code to {@code code} and defining its symbols in
+     * {@code scope}. The former is expected to be still pristine, and the
+     * latter to be empty.
+     *
+     * @param file the image file to read
+     * @param code the target for the loaded code and constant pool
+     * @param scope the root scope for the program's symbols
+     * @throws IOException if an I/O error occurred, or if {@code file} is not a
+     * valid image
+     */
+    static void read(final Path file, final PrologBytecode<?> code,
+            final Scope scope) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format(CORRUPT, "too large"));
+            }
+            final ByteBuffer image = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0L, channel.size());
+            read(image, code, scope);
+        } catch (final BufferUnderflowException e) {
+            throw new IOException(String.format(CORRUPT, "truncated"), e);
+        }
+    }
+
+    private static void read(final ByteBuffer image,
+            final PrologBytecode<?> code, final Scope scope)
+            throws IOException {
+        check(image.getInt() == MAGIC, "bad magic number");
+        check(image.getInt() == VERSION, "unsupported version");
+        check(image.getInt() == code.getCodeSize(), "bad code address");
+        final int codeLength = image.getInt();
+        check(codeLength >= 0 && codeLength <= image.remaining() / 4,
+                "bad code length");
+        final IntBuffer words = image.asIntBuffer();
+        words.limit(codeLength);
+        code.writeCode(words);
+        image.position(image.position() + 4 * codeLength);
+
+        final PredicateSymbol[] predicates =
+                new PredicateSymbol[readCount(image)];
+        final int[] firstClauses = new int[predicates.length];
+        for (int i = 0; i < predicates.length; i++) {
+            final String name = readString(image);
+            predicates[i] = new PredicateSymbol(name, image.getInt());
+            firstClauses[i] = image.getInt();
+        }
+
+        final ClauseSymbol[] clauses = new ClauseSymbol[readCount(image)];
+        final int[] nextClauses = new int[clauses.length];
+        for (int i = 0; i < clauses.length; i++) {
+            clauses[i] = new ClauseSymbol();
+            clauses[i].setParams(image.getInt());
+            clauses[i].setLocals(image.getInt());
+            clauses[i].setHeapptr(image.getInt());
+            clauses[i].setKey(image.getInt());
+            nextClauses[i] = image.getInt();
+        }
+        for (int i = 0; i < clauses.length; i++) {
+            if (nextClauses[i] != -1) {
+                clauses[i].setNext(element(clauses, nextClauses[i]));
+            }
+        }
+        for (int i = 0; i < predicates.length; i++) {
+            final PredicateSymbol predicate = predicates[i];
+            scope.defineLocal(SymbolKeys.ofPredicate(predicate.getName(),
+                    predicate.getArity()), predicate);
+            if (firstClauses[i] == -1) {
+                continue;
+            }
+            ClauseSymbol last = element(clauses, firstClauses[i]);
+            predicate.setFirst(last);
+            while (last.getNext() != null) {
+                last = last.getNext();
+            }
+            // The last clause alternative, as left behind by the compiler
+            scope.defineLocal(SymbolKeys.ofClause(predicate.getName(),
+                    predicate.getArity()), last);
+        }
+
+        final int tableCount = readCount(image);
+        for (int i = 0; i < tableCount; i++) {
+            final ClauseSymbol clause = element(clauses, image.getInt());
+            final int rows = image.getInt();
+            final int[][] columns = new int[clause.getParams()][];
+            check(columns.length > 0 && clause.getFacts() == null,
+                    "bad fact table");
+            check(rows >= 0 && rows <= image.remaining() / 4 / columns.length,
+                    "bad row count");
+            for (int j = 0; j < columns.length; j++) {
+                columns[j] = new int[rows];
+                image.asIntBuffer().get(columns[j]);
+                image.position(image.position() + 4 * rows);
+            }
+            clause.setFacts(new FactTable(columns));
+        }
+
+        final int functorCount = readCount(image);
+        for (int i = 0; i < functorCount; i++) {
+            final String name = readString(image);
+            final int arity = image.getInt();
+            scope.defineLocal(SymbolKeys.ofFunctor(name, arity),
+                    FunctorSymbol.valueOf(name, arity));
+        }
+
+        final int poolSize = readCount(image);
+        for (int i = 1; i < poolSize; i++) {
+            final Object constant;
+            final byte tag = image.get();
+            if (tag == FUNCTOR_TAG) {
+                final String name = readString(image);
+                constant = FunctorSymbol.valueOf(name, image.getInt());
+            } else if (tag == PREDICATE_TAG) {
+                constant = element(predicates, image.getInt());
+            } else {
+                throw new IOException(String.format(CORRUPT, "bad tag"));
+            }
+            check(code.getConstantPoolIndex(constant) == i,
+                    "duplicate constant");
+        }
+
+        check(image.getInt() == code.getStaticSize(), "bad static address");
+        final int staticLength = image.getInt();
+        check(staticLength >= 0 && staticLength <= image.remaining() / 4,
+                "bad static length");
+        final IntBuffer statics = image.asIntBuffer();
+        statics.limit(staticLength);
+        code.writeStatic(statics);
+        image.position(image.position() + 4 * staticLength);
+        check(!image.hasRemaining(), "trailing bytes");
+    }
+
+    private static int readCount(final ByteBuffer image) throws IOException {
+        final int count = image.getInt();
+        check(count >= 0 && count <= image.remaining(), "bad count");
+        return count;
+    }
+
+    private static String readString(final ByteBuffer image)
+            throws IOException {
+        final int length = image.getInt();
+        check(length >= 0 && length <= image.remaining() / 2,
+                "bad string length");
+        final char[] chars = new char[length];
+        image.asCharBuffer().get(chars);
+        image.position(image.position() + 2 * length);
+        return new String(chars);
+    }
+
+    private static <T> T element(final T[] table, final int index)
+            throws IOException {
+        check(index >= 0 && index < table.length, "bad index");
+        return table[index];
+    }
+
+    private static void check(final boolean condition, final String message)
+            throws IOException {
+        if (!condition) {
+            throw new IOException(String.format(CORRUPT, message));
+        }
+    }
+}
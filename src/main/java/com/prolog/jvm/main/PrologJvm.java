@@ -1,12 +1,19 @@
 package com.prolog.jvm.main;
 
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import javax.management.JMException;
+
+import com.prolog.jvm.compiler.parser.MappedFileReader;
 import com.prolog.jvm.exceptions.InternalCompilerException;
 import com.prolog.jvm.exceptions.RecognitionException;
 
@@ -19,26 +26,59 @@ import com.prolog.jvm.exceptions.RecognitionException;
 public final class PrologJvm {
 
     private static final String WELCOME = "Welcome to prolog-jvm.\n";
-    private static final String HELP = "Usage: java PrologJvm <file name>.";
+
+    // File name extension identifying program images
+    private static final String IMAGE_SUFFIX = ".pli";
+
+    // Option for saving the compiled program to an image instead of running it
+    private static final String OUTPUT_OPTION = "-o";
+
+    // Minimum number of ground facts for a predicate to be stored in a table
+    private static final int TABLE_ROWS = 64;
+
+    private static final String HELP =
+            "Usage: java PrologJvm <file name> [<file name> ...].\n"
+            + "       java PrologJvm -o <image name> <file name> "
+            + "[<file name> ...].\n"
+            + "       java PrologJvm <image name>" + IMAGE_SUFFIX + ".";
 
     /**
      * Main method.
      *
-     * @param args command-line parameter for the program to be loaded
+     * @param args command-line parameters for the program to be loaded; if
+     * more than one file is given, they are compiled in parallel. A single
+     * file ending in {@value #IMAGE_SUFFIX} is loaded as a program image,
+     * while if the first parameter is {@value #OUTPUT_OPTION}, the program is
+     * instead saved to the image named by the second
      */
     public static final void main(String[] args) {
-        if (args.length == 0) {
+        final boolean save = args.length > 0 && args[0].equals(OUTPUT_OPTION);
+        if (args.length == 0 || (save && args.length < 3)) {
             System.out.println(HELP); // print help message
             return;
         }
-        try (final Reader program = new FileReader(args[0])) {
-            Factory.newProgramCompiler().compile(program);
+        try {
+            if (save) {
+                consult(Arrays.copyOfRange(args, 2, args.length));
+                Factory.saveImage(Paths.get(args[1]));
+                return;
+            }
+            if (args.length == 1 && args[0].endsWith(IMAGE_SUFFIX)) {
+                Factory.loadImage(Paths.get(args[0]));
+            } else {
+                consult(args);
+            }
         } catch (IOException | RecognitionException e) {
             e.printStackTrace();
             return;
         } catch (Exception e) {
             throw new InternalCompilerException(e);
         }
+        try {
+            Factory.registerMBean();
+        } catch (JMException e) {
+            e.printStackTrace(); // Not fatal; we just can't be monitored
+        }
         System.out.println(WELCOME);
         try (final Reader reader = new InputStreamReader(System.in);
                 Writer writer = new PrintWriter(System.out)) {
@@ -47,4 +87,24 @@ public final class PrologJvm {
             e.printStackTrace();
         }
     }
+
+    // Compiles the program contained in the specified files, storing large
+    // predicates consisting of ground facts in tables
+    private static void consult(final String[] fileNames) throws IOException,
+            RecognitionException {
+        if (fileNames.length == 1) {
+            try (final Reader program = MappedFileReader.newInstance(Paths
+                    .get(fileNames[0]))) {
+                Factory.newStreamingProgramCompiler(TABLE_ROWS)
+                        .compile(program);
+            }
+        } else {
+            final List<Path> files = new ArrayList<>();
+            for (final String fileName : fileNames) {
+                files.add(Paths.get(fileName));
+            }
+            Factory.newParallelProgramCompiler().compile(files);
+            Factory.getDatabase().tabulate(TABLE_ROWS);
+        }
+    }
 }
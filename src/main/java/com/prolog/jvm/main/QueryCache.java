@@ -0,0 +1,220 @@
+package com.prolog.jvm.main;
+
+import static com.prolog.jvm.zip.util.Instructions.CALL;
+import static com.prolog.jvm.zip.util.Instructions.CONSTANT;
+import static com.prolog.jvm.zip.util.Instructions.FUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.LASTFUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.VOIDFUNCTOR;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.prolog.jvm.exceptions.RecognitionException;
+import com.prolog.jvm.zip.api.PrologBytecode;
+import com.prolog.jvm.zip.util.Instructions;
+import com.prolog.jvm.zip.util.Validate;
+
+/**
+ * A bounded cache of compiled queries, evicting its least recently used entry
+ * once full. Entries are keyed on the query's token sequence with each
+ * variable renamed after the position of its first occurrence, so that, e.g.,
+ * {@code append(X,Y,Z).} and {@code append(A, B, C).} share the same compiled
+ * code, while answers are still reported in terms of the variable names of
+ * the query actually entered.
+ * <p>
+ * Cached code refers to constants and predicates by their constant pool
+ * indices, which are looked up anew upon each hit, the pool possibly having
+ * grown in between (say, by binding a {@link PreparedQuery}). Any change to
+ * the program must still be followed by a call to {@link #invalidate()},
+ * which {@link Factory} takes care of when a new program compiler is
+ * requested. Changes made through the {@link Database} are detected by its
+ * generation having moved on since the cached queries were compiled, upon
+ * which the cache is invalidated likewise.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class QueryCache {
+
+    private final PrologBytecode<?> code;
+    private final List<Object> constants;
+    private final Map<Integer,String> queryVars;
+    private final Map<String,CachedQuery> entries;
+    private long generation; // of the database when the entries were cached
+    private long hits; // calls to compile(String) finding a cached query
+
+    /**
+     * Constructor. It is recommended for client code not to instantiate this
+     * class directly, but rather obtain the instance managed by
+     * {@link Factory#getQueryCache()}.
+     *
+     * @param capacity the maximum number of compiled queries to retain; must
+     * be positive
+     * @param code the target for writing (cached) query bytecode to; not
+     * allowed to be null
+     * @param constants the constant pool backing {@code code}; not allowed to
+     * be null
+     * @param queryVars the mapping of local stack addresses to query variable
+     * names, filled by each call to {@link #compile(String)}; not allowed to be
+     * null
+     * @throws IllegalArgumentException if {@code capacity <= 0}
+     * @throws NullPointerException if {@code code == null || constants == null
+     * || queryVars == null}
+     */
+    public QueryCache(final int capacity, final PrologBytecode<?> code,
+            final List<Object> constants,
+            final Map<Integer,String> queryVars) {
+        Validate.argument(capacity > 0);
+        this.code = requireNonNull(code);
+        this.constants = requireNonNull(constants);
+        this.queryVars = requireNonNull(queryVars);
+        this.entries = new LinkedHashMap<String,CachedQuery>(16, 0.75f,
+                true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String,CachedQuery> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Writes the bytecode for the specified {@code query} at the current end
+     * of the code area and fills the query variables, compiling the query only
+     * if no query of the same shape was found in the cache.
+     *
+     * @param query the query source text; not allowed to be null
+     * @throws IOException
+     * @throws NullPointerException if {@code query == null}
+     * @throws RecognitionException if a lexer- or parsing error occurred
+     */
+    public void compile(final String query) throws IOException,
+            RecognitionException {
+        final List<String> names = new ArrayList<>();
+        final String key = Normalizer.normalize(requireNonNull(query), names);
+        final long current = Factory.getDatabase().getGeneration();
+        if (current != this.generation) {
+            invalidate();
+            this.generation = current;
+        }
+        final CachedQuery entry = this.entries.get(key);
+        if (entry == null) {
+            this.entries.put(key, compileAndCapture(query, names));
+        } else {
+            entry.restore(names);
+            this.hits++;
+        }
+    }
+
+    /**
+     * Removes all cached queries.
+     */
+    public void invalidate() {
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the number of queries currently cached.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the number of queries that were found in the cache rather than
+     * compiled, since the creation of this instance.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    // Compiles query, recording the generated code, constants and variables.
+    private CachedQuery compileAndCapture(final String query,
+            final List<String> names) throws IOException,
+            RecognitionException {
+        final int codeStart = this.code.getCodeSize();
+        try (final StringReader sr = new StringReader(query)) {
+            Factory.newQueryCompiler().compile(sr);
+        }
+        final int[] words = new int[this.code.getCodeSize() - codeStart];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = this.code.read(codeStart + i);
+        }
+
+        // Record the constants referred to by the operands, by offset
+        final List<Integer> offsets = new ArrayList<>();
+        final List<Object> constants = new ArrayList<>();
+        int i = 0;
+        while (i < words.length) {
+            final int opcode = words[i++];
+            if (hasConstantOperand(opcode)) {
+                offsets.add(Integer.valueOf(i));
+                constants.add(this.constants.get(words[i]));
+            }
+            i += Instructions.getOperandCount(opcode);
+        }
+        final int[] patches = new int[offsets.size()];
+        for (int j = 0; j < patches.length; j++) {
+            patches[j] = offsets.get(j).intValue();
+        }
+
+        final Map<Integer,Integer> vars = new HashMap<>();
+        for (Map.Entry<Integer,String> e : this.queryVars.entrySet()) {
+            vars.put(e.getKey(), names.indexOf(e.getValue()));
+        }
+        return new CachedQuery(words, patches, constants.toArray(), vars);
+    }
+
+    // Whether the operand of opcode is an index into the constant pool
+    private static boolean hasConstantOperand(final int opcode) {
+        return opcode == FUNCTOR || opcode == VOIDFUNCTOR
+                || opcode == LASTFUNCTOR || opcode == CONSTANT
+                || opcode == CALL;
+    }
+
+    // === Cached queries ===
+
+    private final class CachedQuery {
+        private final int[] words; // the query's bytecode
+        private final int[] patches; // offsets of constant pool operands
+        private final Object[] constants; // the constants at said offsets
+        private final Map<Integer,Integer> vars; // addresses to name indices
+
+        private CachedQuery(final int[] words, final int[] patches,
+                final Object[] constants, final Map<Integer,Integer> vars) {
+            this.words = words;
+            this.patches = patches;
+            this.constants = constants;
+            this.vars = vars;
+        }
+
+        /*
+         * Rewrites the code, restoring query variables under the given names.
+         * The constant pool may have grown since the query was compiled (say,
+         * through a PreparedQuery), so that the indices of the constants it
+         * added must be looked up anew.
+         */
+        private void restore(final List<String> names) {
+            final int[] code = this.words.clone();
+            for (int i = 0; i < this.patches.length; i++) {
+                code[this.patches[i]] = QueryCache.this.code
+                        .getConstantPoolIndex(this.constants[i]);
+            }
+            QueryCache.this.code.writeCode(IntBuffer.wrap(code));
+            QueryCache.this.queryVars.clear();
+            for (Map.Entry<Integer,Integer> e : this.vars.entrySet()) {
+                QueryCache.this.queryVars.put(e.getKey(),
+                        names.get(e.getValue()));
+            }
+        }
+    }
+}
@@ -7,7 +7,6 @@ import static java.util.Objects.requireNonNull;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.Writer;
 
 import com.prolog.jvm.zip.PrologBytecodeImpl.MementoImpl;
@@ -39,25 +38,35 @@ public enum Repl {
         requireNonNull(in);
         requireNonNull(out);
 
-        // the code address where compiled queries will be stored
-        final int queryAddr = Factory.getBytecode().getCodeSize();
-
-        // bytecode state prior to the compilation of any queries
-        final MementoImpl m = Factory.getBytecode().createMemento();
-
         try (final BufferedReader reader = new BufferedReader(in)) {
             String userInput;
             out.append(PROMPT).flush();
             while (!HALT.equals(userInput = reader.readLine())) {
-                try (final StringReader sr = new StringReader(userInput)) {
-                    Factory.newQueryCompiler().compile(sr);
+                // the code address where the compiled query will be stored
+                final int queryAddr = Factory.getBytecode().getCodeSize();
+
+                // bytecode state prior to the compilation of the query
+                final MementoImpl m = Factory.getBytecode().createMemento();
+
+                try {
+                    Factory.getQueryCache().compile(userInput);
                 } catch (Exception e) {
+                    Factory.getBytecode().setMemento(m);
                     out.append(e.getMessage()).append('\n').append(PROMPT)
                             .flush();
                     continue;
                 }
+                final int queryEnd = Factory.getBytecode().getCodeSize();
+                final long generation = Factory.getDatabase().getGeneration();
                 Factory.getInterpreter().execute(queryAddr, reader, out);
-                Factory.getBytecode().setMemento(m);
+                if (Factory.getDatabase().getGeneration() == generation) {
+                    Factory.getBytecode().setMemento(m);
+                } else {
+                    // Clauses may have been added during execution, following
+                    // the query's code, so only the latter can be released
+                    Factory.getDatabase().release(queryAddr,
+                            queryEnd - queryAddr);
+                }
                 out.append(PROMPT).flush();
             }
         }
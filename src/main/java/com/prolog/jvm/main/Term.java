@@ -0,0 +1,109 @@
+package com.prolog.jvm.main;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+
+import com.prolog.jvm.symbol.FunctorSymbol;
+
+/**
+ * An immutable representation of a ground Prolog term, used for passing values
+ * from Java to the parameters of a {@link PreparedQuery}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class Term {
+
+    private final FunctorSymbol functor;
+    private final Term[] args;
+
+    /**
+     * Static factory method for obtaining an atom with the specified
+     * {@code name}.
+     *
+     * @param name the atom's name; not allowed to be null
+     * @throws NullPointerException if {@code name == null}
+     */
+    public static Term atom(final String name) {
+        return new Term(FunctorSymbol.valueOf(name), new Term[0]);
+    }
+
+    /**
+     * Static factory method for obtaining a compound term with the specified
+     * functor {@code name} and arguments. If no arguments are given, the
+     * result is an atom.
+     *
+     * @param name the functor's name; not allowed to be null
+     * @param args the arguments; neither the array nor its elements are
+     * allowed to be null
+     * @throws NullPointerException if {@code name == null || args == null} or
+     * if any of the elements of {@code args} is null
+     */
+    public static Term compound(final String name, final Term... args) {
+        final Term[] copy = args.clone();
+        for (final Term arg : copy) {
+            requireNonNull(arg);
+        }
+        return new Term(FunctorSymbol.valueOf(name, copy.length), copy);
+    }
+
+    // Private to force instantiation through static factory methods
+    private Term(final FunctorSymbol functor, final Term[] args) {
+        assert functor != null;
+        assert args != null;
+        this.functor = functor;
+        this.args = args;
+    }
+
+    /**
+     * Returns this term's principal functor.
+     */
+    public FunctorSymbol getFunctor() {
+        return this.functor;
+    }
+
+    /**
+     * Returns the argument at position {@code i}, counting from zero.
+     *
+     * @throws IndexOutOfBoundsException if {@code i < 0 || i >=
+     * getFunctor().getArity()}
+     */
+    public Term getArg(final int i) {
+        return this.args[i];
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.functor.hashCode() + Arrays.hashCode(this.args);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof Term)) {
+            return false;
+        }
+        final Term other = (Term) obj;
+        return this.functor.equals(other.functor)
+                && Arrays.equals(this.args, other.args);
+    }
+
+    @Override
+    public String toString() {
+        if (this.args.length == 0) {
+            return this.functor.getName();
+        }
+        final StringBuilder buffer = new StringBuilder(this.functor.getName());
+        buffer.append('(');
+        for (int i = 0; i < this.args.length; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(this.args[i]);
+        }
+        return buffer.append(')').toString();
+    }
+}
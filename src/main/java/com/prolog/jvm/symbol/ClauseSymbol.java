@@ -2,6 +2,8 @@ package com.prolog.jvm.symbol;
 
 import static java.util.Objects.requireNonNull;
 
+import com.prolog.jvm.zip.api.CompiledHead;
+import com.prolog.jvm.zip.util.Instructions;
 import com.prolog.jvm.zip.util.Validate;
 
 /**
@@ -22,7 +24,53 @@ public final class ClauseSymbol implements Symbol {
     private int params;         // number of parameters
     private int locals;         // number of local variables
     private int heapptr;        // offset into heap
+    private int key;            // first argument index key, or 0 if none
     private ClauseSymbol next;  // next clause alternative
+    private CompiledHead head;  // compiled head literal, or null if none
+    private FactTable facts;    // facts stood for, or null if none
+
+    // Generations in which the clause was added to and removed from its
+    // predicate, the latter being Long.MAX_VALUE if it was never removed
+    private long born;
+    private long died = Long.MAX_VALUE;
+
+    /**
+     * Returns the first clause alternative among {@code clause} and its
+     * successors that is visible in the specified {@code generation}, or null
+     * if there is none.
+     *
+     * @param clause the clause to start searching from; may be null
+     * @param generation the generation in which the clauses are inspected
+     * @see #isVisible(long)
+     */
+    public static ClauseSymbol firstVisible(ClauseSymbol clause,
+            final long generation) {
+        while (clause != null && !clause.isVisible(generation)) {
+            clause = clause.next;
+        }
+        return clause;
+    }
+
+    /**
+     * Returns the first clause alternative among {@code clause} and its
+     * successors that is visible in the specified {@code generation} and
+     * whose {@link #getKey() key} is compatible with the specified one, or
+     * null if there is none. Two keys are compatible if they are equal, or if
+     * either of them is {@code 0}.
+     *
+     * @param clause the clause to start searching from; may be null
+     * @param generation the generation in which the clauses are inspected
+     * @param key the key of the call's first argument, or {@code 0} if none
+     * @see #firstVisible(ClauseSymbol, long)
+     */
+    public static ClauseSymbol firstMatching(ClauseSymbol clause,
+            final long generation, final int key) {
+        while (clause != null && (!clause.isVisible(generation)
+                || (key != 0 && clause.key != 0 && clause.key != key))) {
+            clause = clause.next;
+        }
+        return clause;
+    }
 
     /**
      * Sets the number of parameters for the clause represented by this symbol,
@@ -62,6 +110,42 @@ public final class ClauseSymbol implements Symbol {
         this.heapptr = heapptr;
     }
 
+    /**
+     * Sets the key by which the clause represented by this symbol is indexed
+     * on its first argument, being the constant pool index of the latter's
+     * functor if it is a constant or compound term.
+     *
+     * @param key a constant pool index, or {@code 0} if the first argument is
+     * a variable or the clause has no parameters; must be {@code >= 0}
+     * @throws IllegalArgumentException if {@code key < 0}
+     */
+    public void setKey(final int key) {
+        Validate.argument(key >= 0);
+        this.key = key;
+    }
+
+    /**
+     * Sets the compiled form of the head literal of the clause represented by
+     * this symbol.
+     *
+     * @param head the compiled head literal; not allowed to be null
+     * @throws NullPointerException if {@code head == null}
+     */
+    public void setCompiledHead(final CompiledHead head) {
+        this.head = requireNonNull(head);
+    }
+
+    /**
+     * Sets the table of facts the clause represented by this symbol stands
+     * for, its code then consisting of a single {@link Instructions#FACTS}.
+     *
+     * @param facts the table of facts; not allowed to be null
+     * @throws NullPointerException if {@code facts == null}
+     */
+    public void setFacts(final FactTable facts) {
+        this.facts = requireNonNull(facts);
+    }
+
     /**
      * Sets the next clause alternative
      *
@@ -73,6 +157,36 @@ public final class ClauseSymbol implements Symbol {
         this.next = requireNonNull(next);
     }
 
+    // Used by PredicateSymbol for unlinking removed clause alternatives
+    void link(final ClauseSymbol next) {
+        this.next = next;
+    }
+
+    /**
+     * Sets the generation in which the clause represented by this symbol was
+     * added to its predicate. Defaults to {@code 0} for clauses that were
+     * part of the compiled program.
+     *
+     * @param born a generation; must be {@code >= 0}
+     * @throws IllegalArgumentException if {@code born < 0}
+     */
+    public void setBorn(final long born) {
+        Validate.argument(born >= 0);
+        this.born = born;
+    }
+
+    /**
+     * Sets the generation in which the clause represented by this symbol was
+     * removed from its predicate.
+     *
+     * @param died a generation; must be {@code > getBorn()}
+     * @throws IllegalArgumentException if {@code died <= getBorn()}
+     */
+    public void setDied(final long died) {
+        Validate.argument(died > this.born);
+        this.died = died;
+    }
+
     /**
      * Returns the number of parameters for the clause represented by this
      * symbol, coinciding with the number of cells in an activation record
@@ -98,6 +212,30 @@ public final class ClauseSymbol implements Symbol {
         return this.heapptr;
     }
 
+    /**
+     * Returns the key by which the clause represented by this symbol is
+     * indexed on its first argument, or {@code 0} if none.
+     */
+    public int getKey() {
+        return this.key;
+    }
+
+    /**
+     * Returns the compiled form of the head literal of the clause represented
+     * by this symbol, or null if it was not compiled.
+     */
+    public CompiledHead getCompiledHead() {
+        return this.head;
+    }
+
+    /**
+     * Returns the table of facts the clause represented by this symbol stands
+     * for, or null if it is an ordinary clause.
+     */
+    public FactTable getFacts() {
+        return this.facts;
+    }
+
     /**
      * Returns the next clause alternative. If there is none (which can only be
      * the case if {@link #setNext(ClauseSymbol)} was never invoked), null is
@@ -107,4 +245,34 @@ public final class ClauseSymbol implements Symbol {
         return this.next;
     }
 
+    /**
+     * Returns the generation in which the clause represented by this symbol
+     * was added to its predicate.
+     */
+    public long getBorn() {
+        return this.born;
+    }
+
+    /**
+     * Returns the generation in which the clause represented by this symbol
+     * was removed from its predicate, or {@link Long#MAX_VALUE} if it still
+     * belongs to the latter.
+     */
+    public long getDied() {
+        return this.died;
+    }
+
+    /**
+     * Returns whether the clause represented by this symbol is visible to a
+     * call made in the specified {@code generation}, being the case if it was
+     * added no later, and removed only after, said generation. This affords
+     * the logical update view on the database, wherein changes made to a
+     * predicate do not affect calls to it already in progress.
+     *
+     * @param generation the generation in which the call was made
+     */
+    public boolean isVisible(final long generation) {
+        return this.born <= generation && generation < this.died;
+    }
+
 }
@@ -0,0 +1,182 @@
+package com.prolog.jvm.symbol;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+
+import com.prolog.jvm.zip.util.Validate;
+
+/**
+ * The clauses of a predicate consisting solely of ground facts whose
+ * arguments are all constants, stored column-wise as the constant pool
+ * indices of said arguments. A table takes the place of the clauses it was
+ * built from by way of a single {@link ClauseSymbol}, its rows being matched
+ * against a call in the order of the clauses they stand for.
+ * <p>
+ * Compared to compiling each fact separately, a table takes up only a single
+ * int per argument of each row, while matching a call amounts to a scan over
+ * primitive arrays.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class FactTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[][] columns; // constant pool indices, per argument
+    private int rows;        // number of rows
+
+    /**
+     * Creates an empty table for a predicate of the specified {@code arity}.
+     *
+     * @param arity the number of columns; must be {@code > 0}
+     * @throws IllegalArgumentException if {@code arity <= 0}
+     */
+    public FactTable(final int arity) {
+        Validate.argument(arity > 0);
+        this.columns = new int[arity][INITIAL_CAPACITY];
+    }
+
+    /**
+     * Creates a table with the specified {@code columns}, which are not
+     * copied.
+     *
+     * @param columns the constant pool indices of the arguments of the facts,
+     * per argument; not allowed to be null, while there must be at least one
+     * column and all columns must be of the same length
+     * @throws IllegalArgumentException if {@code columns.length == 0}, or if
+     * not all columns are of the same length
+     * @throws NullPointerException if {@code columns} or any of its elements
+     * is null
+     */
+    public FactTable(final int[]... columns) {
+        Validate.argument(requireNonNull(columns).length > 0);
+        for (final int[] column : columns) {
+            Validate.argument(requireNonNull(column).length
+                    == columns[0].length);
+        }
+        this.columns = columns;
+        this.rows = columns[0].length;
+    }
+
+    /**
+     * Appends a row to this table.
+     *
+     * @param row the constant pool indices of the arguments of a fact, in
+     * order; not allowed to be null, while its length must equal
+     * {@link #getArity()} and its elements be {@code > 0}
+     * @throws IllegalArgumentException if {@code row.length != getArity()},
+     * or if one of its elements is {@code <= 0}
+     * @throws NullPointerException if {@code row == null}
+     */
+    public void addRow(final int... row) {
+        Validate.argument(requireNonNull(row).length == this.columns.length);
+        if (this.rows == this.columns[0].length) {
+            resize(Math.max(2 * this.rows, INITIAL_CAPACITY));
+        }
+        for (int i = 0; i < row.length; i++) {
+            Validate.argument(row[i] > 0);
+            this.columns[i][this.rows] = row[i];
+        }
+        this.rows++;
+    }
+
+    /**
+     * Releases the capacity reserved for rows not yet added.
+     */
+    public void trimToSize() {
+        if (this.rows < this.columns[0].length) {
+            resize(this.rows);
+        }
+    }
+
+    private void resize(final int capacity) {
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i] = Arrays.copyOf(this.columns[i], capacity);
+        }
+    }
+
+    /**
+     * Returns the number of columns, coinciding with the arity of the
+     * predicate whose facts are stored in this table.
+     */
+    public int getArity() {
+        return this.columns.length;
+    }
+
+    /**
+     * Returns the number of rows.
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the constant pool index stored in the specified {@code row} and
+     * {@code column}.
+     *
+     * @throws IndexOutOfBoundsException if either index is out of range
+     */
+    public int get(final int row, final int column) {
+        if (row < 0 || row >= this.rows) {
+            throw new IndexOutOfBoundsException(Integer.toString(row));
+        }
+        return this.columns[column][row];
+    }
+
+    /**
+     * Returns the first row starting from {@code from} matching the
+     * specified {@code keys}, or {@code -1} if there is none. Each key
+     * specifies a condition on the corresponding column: a positive key
+     * requires the column to hold the same constant pool index, {@code 0}
+     * allows for any index, while a negative key {@code -(j + 1)} requires the
+     * column to equal that of the preceding column {@code j}, as for a
+     * variable occurring more than once among the arguments of a call.
+     *
+     * @param keys the keys to match, of which only the first
+     * {@link #getArity()} are used; must have at least that length
+     * @param from the row to start searching from; must be {@code >= 0}
+     */
+    public int find(final int[] keys, final int from) {
+        // API sacrifices preconditions for performance, so use asserts instead
+        assert keys.length >= this.columns.length;
+        assert from >= 0;
+
+        // Scan on the first bound column, checking the others on a hit
+        final int arity = this.columns.length;
+        int first = 0;
+        while (first < arity && keys[first] <= 0) {
+            first++;
+        }
+        final int[] column = first < arity ? this.columns[first] : null;
+        final int key = first < arity ? keys[first] : 0;
+        for (int row = from; row < this.rows; row++) {
+            if (column != null) {
+                while (row < this.rows && column[row] != key) {
+                    row++;
+                }
+                if (row == this.rows) {
+                    break;
+                }
+            }
+            if (matches(keys, row)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(final int[] keys, final int row) {
+        for (int i = 0; i < this.columns.length; i++) {
+            final int key = keys[i];
+            final int value = this.columns[i][row];
+            if (key > 0 ? value != key
+                    : key < 0 && value != this.columns[-key - 1][row]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
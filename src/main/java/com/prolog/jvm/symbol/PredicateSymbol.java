@@ -18,12 +18,29 @@ import com.prolog.jvm.zip.util.Validate;
  */
 public final class PredicateSymbol implements Symbol {
 
-    private final String name;  // kept for debugging purposes
+    private final String name;
+    private final int arity;
 
     private ClauseSymbol first; // first clause alternative
+    private int calls;          // number of calls made, saturating
 
     public PredicateSymbol(final String text, final int arity) {
-        this.name = requireNonNull(text) + "/" + Integer.toString(arity);
+        this.name = requireNonNull(text);
+        this.arity = arity;
+    }
+
+    /**
+     * Returns the name of the predicate represented by this symbol.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the arity of the predicate represented by this symbol.
+     */
+    public int getArity() {
+        return this.arity;
     }
 
     /**
@@ -40,6 +57,54 @@ public final class PredicateSymbol implements Symbol {
         this.first = requireNonNull(first);
     }
 
+    /**
+     * Makes the specified clause the first alternative for the predicate
+     * represented by this symbol, preceding any alternatives added before.
+     *
+     * @param clause the new first clause alternative; not allowed to be null
+     * @throws NullPointerException if {@code clause == null}
+     */
+    public void addFirst(final ClauseSymbol clause) {
+        requireNonNull(clause);
+        if (this.first != null) {
+            clause.setNext(this.first);
+        }
+        this.first = clause;
+    }
+
+    /**
+     * Unlinks the clause alternatives for the predicate represented by this
+     * symbol that were removed in or before the specified {@code generation},
+     * returning the last alternative remaining afterwards (or null if there
+     * is none). Clients must ensure no call made before said generation is
+     * still in progress, as the unlinked alternatives may otherwise still be
+     * backtracked into.
+     *
+     * @param generation the generation up to which to unlink removed clauses
+     * @see ClauseSymbol#getDied()
+     */
+    public ClauseSymbol purge(final long generation) {
+        ClauseSymbol last = null;
+        for (ClauseSymbol clause = this.first; clause != null;
+                clause = clause.getNext()) {
+            if (clause.getDied() <= generation) {
+                continue;
+            }
+            if (last == null) {
+                this.first = clause;
+            } else {
+                last.link(clause);
+            }
+            last = clause;
+        }
+        if (last == null) {
+            this.first = null;
+        } else {
+            last.link(null);
+        }
+        return last;
+    }
+
     /**
      * Returns the first clause alternative for the predicate represented by
      * this symbol.
@@ -48,8 +113,28 @@ public final class PredicateSymbol implements Symbol {
         return this.first;
     }
 
+    /**
+     * Increments the number of calls made to the predicate represented by
+     * this symbol, returning the result. The count stops increasing once
+     * having reached {@link Integer#MAX_VALUE}.
+     */
+    public int countCall() {
+        if (this.calls < Integer.MAX_VALUE) {
+            this.calls++;
+        }
+        return this.calls;
+    }
+
+    /**
+     * Returns the number of calls made to the predicate represented by this
+     * symbol, as counted through {@link #countCall()}.
+     */
+    public int getCalls() {
+        return this.calls;
+    }
+
     @Override
     public String toString() {
-        return this.name;
+        return this.name + "/" + Integer.toString(this.arity);
     }
 }
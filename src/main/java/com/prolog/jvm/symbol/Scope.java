@@ -28,13 +28,33 @@ import java.util.Set;
 public final class Scope {
 
     private final Scope parent;
+    private final Scope base; // read-only fallback for resolving symbols
     private final Map<SymbolKey<?>,Symbol> symbols = new HashMap<>();
 
     /**
      * Static factory method for obtaining a root scope; i.e., with no parent.
      */
     public static Scope newRootInstance() {
-        return new Scope(null);
+        return new Scope(null, null);
+    }
+
+    /**
+     * Static factory method for obtaining a root scope layered over the
+     * specified {@code base} scope. Symbols not found in the new scope are
+     * resolved against {@code base} instead, whereas new definitions are only
+     * ever stored in the new scope. In particular, the returned scope reports
+     * only the latter through {@link #getKeys()} and {@link #getSize()}.
+     * <p>
+     * Unlike {@link #copyOf(Scope)}, the cost of this method is independent of
+     * the number of symbols stored in {@code base}, making it suited for
+     * compiling queries against a program's symbols. Note, however, that the
+     * symbols resolved against {@code base} are themselves shared, not copied.
+     *
+     * @param base the scope to fall back on; not allowed to be null
+     * @throws NullPointerException if {@code base == null}
+     */
+    public static Scope newOverlayInstance(final Scope base) {
+        return new Scope(null, requireNonNull(base));
     }
 
     /**
@@ -45,7 +65,7 @@ public final class Scope {
      * @throws NullPointerException if {@code parent == null}
      */
     public static Scope newIntermediateInstance(final Scope parent) {
-        return new Scope(requireNonNull(parent));
+        return new Scope(requireNonNull(parent), null);
     }
 
     /**
@@ -62,15 +82,16 @@ public final class Scope {
             parent = Scope.copyOf(original.parent);
         }
         // Create a new instance using the parent copy.
-        final Scope result = new Scope(parent);
+        final Scope result = new Scope(parent, original.base);
         // Copy the symbol entries and return the result.
         result.symbols.putAll(original.symbols);
         return result;
     }
 
     // Package-private to force instantiation through static factory methods.
-    private Scope(final Scope parent) {
+    private Scope(final Scope parent, final Scope base) {
         this.parent = parent;
+        this.base = base;
     }
 
     /**
@@ -145,6 +166,17 @@ public final class Scope {
         this.symbols.put(requireNonNull(key), requireNonNull(symbol));
     }
 
+    /**
+     * Removes the definition for the given {@code key} from the current scope,
+     * if present. Definitions in the base scope are left intact.
+     *
+     * @param key the key; not allowed to be null
+     * @throws NullPointerException if {@code key == null}
+     */
+    public void removeLocal(final SymbolKey<?> key) {
+        this.symbols.remove(requireNonNull(key));
+    }
+
     // Recursively calls itself on the parent scope until found to be null
     private <T extends Symbol> T resolveRecursive(final SymbolKey<T> key) {
         assert key != null;
@@ -154,10 +186,14 @@ public final class Scope {
         return resolve(key);
     }
 
-    // Searches the current scope
+    // Searches the current scope, followed by the base scope if present
     private <T extends Symbol> T resolve(final SymbolKey<T> key) {
         assert key != null;
-        return key.getSymbolClass().cast(this.symbols.get(key));
+        final Symbol symbol = this.symbols.get(key);
+        if (symbol == null && this.base != null) {
+            return this.base.resolve(key);
+        }
+        return key.getSymbolClass().cast(symbol);
     }
 
     // Recursively calls itself on the parent scope until found to be null
@@ -167,6 +203,7 @@ public final class Scope {
         assert symbol != null;
         if (this.parent != null) {
             this.parent.defineRecursive(key, symbol);
+            return;
         }
         this.symbols.put(key, symbol);
     }
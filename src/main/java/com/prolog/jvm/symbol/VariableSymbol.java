@@ -12,6 +12,8 @@ import com.prolog.jvm.zip.util.Validate;
  */
 public final class VariableSymbol implements Symbol {
 
+    private static final int VOID_OFFSET = -1;
+
     private final int offset;
     private boolean seenBefore;
 
@@ -27,6 +29,28 @@ public final class VariableSymbol implements Symbol {
         this.offset = offset;
     }
 
+    // Private constructor for void variables
+    private VariableSymbol() {
+        this.offset = VOID_OFFSET;
+    }
+
+    /**
+     * Static factory method for obtaining a symbol for a void variable; i.e.,
+     * one occurring only once in its clause. Void variables are not allocated
+     * a slot in the activation record, their occurrences instead compiling to
+     * {@link Instructions#VOID}.
+     */
+    public static VariableSymbol newVoidInstance() {
+        return new VariableSymbol();
+    }
+
+    /**
+     * Returns whether this symbol represents a void variable.
+     */
+    public boolean isVoid() {
+        return this.offset == VOID_OFFSET;
+    }
+
     /**
      * Returns whether the variable represented by this symbol was previously
      * encountered during code generation. Used for determining whether to emit
@@ -46,7 +70,7 @@ public final class VariableSymbol implements Symbol {
 
     /**
      * Returns the offset in an activation record, identifying the address where
-     * this variable is stored.
+     * this variable is stored, or {@code -1} if it is void.
      */
     public int getOffset() {
         return this.offset;
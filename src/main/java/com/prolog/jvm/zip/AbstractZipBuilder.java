@@ -55,8 +55,8 @@ public abstract class AbstractZipBuilder<T extends AbstractZipBuilder<T>> {
     protected MemoryArea localStack;
 
     /**
-     * The combined memory areas for the global and local stacks. Defaults to
-     * null.
+     * The combined memory areas for the global and local stacks, as well as
+     * the static area following them. Defaults to null.
      */
     protected MemoryArea wordStore;
 
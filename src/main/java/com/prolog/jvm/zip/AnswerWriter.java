@@ -0,0 +1,273 @@
+package com.prolog.jvm.zip;
+
+import static com.prolog.jvm.zip.util.PlWords.CONS;
+import static com.prolog.jvm.zip.util.PlWords.FUNC;
+import static com.prolog.jvm.zip.util.PlWords.REF;
+import static com.prolog.jvm.zip.util.PlWords.STR;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.zip.api.ZipFacade;
+import com.prolog.jvm.zip.util.PlWords;
+
+/**
+ * Writes the answers to a query, i.e., the values of its variables, as
+ * found in the ZIP machine's memory. Terms are walked iteratively using an
+ * explicit stack, so that chains of arbitrary length can be written, and are
+ * serialized into a buffer that is written out once per answer. Unbound
+ * variables other than those of the query are named {@code ?n}, with
+ * {@code n} counting up from the number of query variables, by way of a
+ * hash table from addresses to numbers. All of these data structures are
+ * reused across answers, only growing when needed.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+final class AnswerWriter {
+
+    // Markers on the stack, distinguished from addresses by being negative
+    private static final int COMMA = -1;
+    private static final int CLOSE = -2;
+
+    private static final String ELISION = "...";
+
+    private final ZipFacade facade;
+    private final StringBuilder buffer = new StringBuilder();
+    private char[] chars = new char[64];
+
+    // Pairs of an address (or marker) and the nesting depth of its term
+    private int[] stack = new int[64];
+    private int stackptr;
+
+    // The query variables' addresses and names
+    private int[] queryAddrs = new int[8];
+    private String[] queryNames = new String[8];
+    private int queryVars;
+
+    /*
+     * Open-addressing hash table from variable addresses to their numbers
+     * plus one, or to minus one minus their indices if query variables.
+     * Entries are valid only if stamped with the current answer's stamp.
+     */
+    private int[] keys = new int[64];
+    private int[] values = new int[64];
+    private int[] stamps = new int[64];
+    private int stamp;
+    private int size;
+
+    private int maxDepth = Integer.MAX_VALUE;
+
+    AnswerWriter(final ZipFacade facade) {
+        this.facade = requireNonNull(facade);
+    }
+
+    /**
+     * Sets the nesting depth from which compound terms are elided, being
+     * written as {@code ...} instead.
+     *
+     * @throws IllegalArgumentException if {@code maxDepth <= 0}
+     */
+    void setMaxDepth(final int maxDepth) {
+        if (maxDepth <= 0) {
+            throw new IllegalArgumentException(Integer.toString(maxDepth));
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Sets the variables of the query whose answers are to be written next,
+     * mapping their local stack addresses to their names.
+     */
+    void setQueryVars(final Map<Integer,String> queryVars) {
+        final int n = queryVars.size();
+        if (n > this.queryAddrs.length) {
+            this.queryAddrs = new int[n];
+            this.queryNames = new String[n];
+        }
+        this.queryVars = 0;
+        for (final Map.Entry<Integer,String> e : queryVars.entrySet()) {
+            this.queryAddrs[this.queryVars] = e.getKey().intValue();
+            this.queryNames[this.queryVars++] = e.getValue();
+        }
+    }
+
+    /**
+     * Returns whether the query has any variables, there otherwise being no
+     * answers to write.
+     */
+    boolean hasQueryVars() {
+        return this.queryVars > 0;
+    }
+
+    /**
+     * Writes the current answer to {@code out}, listing each query variable
+     * together with its value.
+     */
+    void write(final Writer out) throws IOException {
+        this.buffer.setLength(0);
+        newStamp();
+        for (this.size = 0; this.size < this.queryVars; this.size++) {
+            put(this.queryAddrs[this.size], -(this.size + 1));
+        }
+        for (int i = 0; i < this.queryVars; i++) {
+            this.buffer.append(this.queryNames[i]).append(" = ");
+            writeTerm(this.queryAddrs[i]);
+            this.buffer.append(' ');
+        }
+
+        final int length = this.buffer.length();
+        if (length > this.chars.length) {
+            this.chars = new char[Math.max(length, 2 * this.chars.length)];
+        }
+        this.buffer.getChars(0, length, this.chars, 0);
+        out.write(this.chars, 0, length);
+    }
+
+    private void writeTerm(final int address) {
+        this.stackptr = 0;
+        push(address, 0);
+        while (this.stackptr > 0) {
+            final int depth = this.stack[--this.stackptr];
+            final int addr = this.stack[--this.stackptr];
+            if (addr == COMMA) {
+                this.buffer.append(", ");
+                continue;
+            }
+            if (addr == CLOSE) {
+                this.buffer.append(')');
+                continue;
+            }
+            int word = this.facade.getWordAt(addr);
+            int functorAddr = addr;
+            switch (PlWords.getTag(word)) {
+            case REF:
+                writeVar(PlWords.getValue(word));
+                continue;
+            case CONS:
+                this.buffer.append(getFunctor(word).getName());
+                continue;
+            case STR:
+                functorAddr = PlWords.getValue(word);
+                word = this.facade.getWordAt(functorAddr);
+                break;
+            case FUNC:
+                break;
+            default:
+                throw new IllegalArgumentException(PlWords.toString(word));
+            }
+            if (PlWords.getTag(word) != FUNC) {
+                throw new IllegalArgumentException(PlWords.toString(word));
+            }
+            if (depth >= this.maxDepth) {
+                this.buffer.append(ELISION);
+                continue;
+            }
+            final FunctorSymbol symbol = getFunctor(word);
+            assert symbol.getArity() > 0;
+            this.buffer.append(symbol.getName()).append('(');
+            // Push the arguments in reverse, so as to pop them in order
+            push(CLOSE, depth);
+            for (int i = symbol.getArity(); i > 0; i--) {
+                push(functorAddr + i, depth + 1);
+                if (i > 1) {
+                    push(COMMA, depth);
+                }
+            }
+        }
+    }
+
+    private FunctorSymbol getFunctor(final int word) {
+        return this.facade.getConstant(PlWords.getValue(word),
+                FunctorSymbol.class);
+    }
+
+    private void push(final int addr, final int depth) {
+        if (this.stackptr + 2 > this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, 2 * this.stack.length);
+        }
+        this.stack[this.stackptr++] = addr;
+        this.stack[this.stackptr++] = depth;
+    }
+
+    // === Variable naming ===
+
+    private void writeVar(final int address) {
+        int value = get(address);
+        if (value == 0) {
+            value = ++this.size;
+            put(address, value);
+        }
+        if (value < 0) {
+            this.buffer.append(this.queryNames[-value - 1]);
+        } else {
+            this.buffer.append('?').append(value - 1);
+        }
+    }
+
+    // Invalidates all entries, clearing the table only upon overflow
+    private void newStamp() {
+        if (++this.stamp == 0) {
+            Arrays.fill(this.stamps, 0);
+            this.stamp = 1;
+        }
+    }
+
+    // Returns the value for key, or 0 if none
+    private int get(final int key) {
+        final int mask = this.keys.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            if (this.stamps[i] != this.stamp) {
+                return 0;
+            }
+            if (this.keys[i] == key) {
+                return this.values[i];
+            }
+        }
+    }
+
+    // Adds key, assumed not to be present yet, with the specified value
+    private void put(final int key, final int value) {
+        if (2 * (this.size + 1) > this.keys.length) {
+            rehash();
+        }
+        final int mask = this.keys.length - 1;
+        int i = hash(key) & mask;
+        while (this.stamps[i] == this.stamp) {
+            i = (i + 1) & mask;
+        }
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.stamps[i] = this.stamp;
+    }
+
+    private void rehash() {
+        final int[] oldKeys = this.keys;
+        final int[] oldValues = this.values;
+        final int[] oldStamps = this.stamps;
+        this.keys = new int[2 * oldKeys.length];
+        this.values = new int[2 * oldKeys.length];
+        this.stamps = new int[2 * oldKeys.length];
+        final int mask = this.keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldStamps[j] == this.stamp) {
+                int i = hash(oldKeys[j]) & mask;
+                while (this.stamps[i] == this.stamp) {
+                    i = (i + 1) & mask;
+                }
+                this.keys[i] = oldKeys[j];
+                this.values[i] = oldValues[j];
+                this.stamps[i] = this.stamp;
+            }
+        }
+    }
+
+    private static int hash(final int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
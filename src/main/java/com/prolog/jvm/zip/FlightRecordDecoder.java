@@ -0,0 +1,161 @@
+package com.prolog.jvm.zip;
+
+import static com.prolog.jvm.zip.FlightRecorder.BINDINGS;
+import static com.prolog.jvm.zip.FlightRecorder.BINDING_COUNT;
+import static com.prolog.jvm.zip.FlightRecorder.CAPACITY_OFFSET;
+import static com.prolog.jvm.zip.FlightRecorder.CODE_ADDRESS;
+import static com.prolog.jvm.zip.FlightRecorder.COUNT_OFFSET;
+import static com.prolog.jvm.zip.FlightRecorder.HEADER_SIZE;
+import static com.prolog.jvm.zip.FlightRecorder.MAGIC;
+import static com.prolog.jvm.zip.FlightRecorder.MAX_BINDINGS;
+import static com.prolog.jvm.zip.FlightRecorder.OPERAND;
+import static com.prolog.jvm.zip.FlightRecorder.OPERATOR;
+import static com.prolog.jvm.zip.FlightRecorder.RECORD_SIZE;
+import static com.prolog.jvm.zip.FlightRecorder.STACK_ADDRESS;
+import static com.prolog.jvm.zip.FlightRecorder.VERSION;
+import static com.prolog.jvm.zip.util.Instructions.CALL;
+import static com.prolog.jvm.zip.util.Instructions.CONSTANT;
+import static com.prolog.jvm.zip.util.Instructions.FUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.GROUND;
+import static com.prolog.jvm.zip.util.Instructions.LASTFUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.VOIDFUNCTOR;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.prolog.jvm.zip.util.Instructions;
+
+/**
+ * Offline decoder for the records written by a {@link FlightRecorder},
+ * rendering them as text in the order they were written, oldest first. Each
+ * line lists the record's sequence number, followed by the same columns as
+ * written by a {@link StepLogger}, save that operands referring to the
+ * constant pool are given by their index (prefixed by {@code #}) and that
+ * bindings are given by their addresses only.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class FlightRecordDecoder {
+
+    private static final String CORRUPT = "Corrupt flight record: %s";
+    private static final String USAGE =
+            "Usage: java FlightRecordDecoder <file name>";
+
+    // Private constructor to prevent instantiation.
+    private FlightRecordDecoder() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Main method, decoding the file named by the sole command-line parameter
+     * to the standard output.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println(USAGE);
+            return;
+        }
+        final Writer out = new OutputStreamWriter(System.out);
+        decode(Paths.get(args[0]), out);
+        out.flush();
+    }
+
+    /**
+     * Decodes the records contained in the specified {@code file}.
+     *
+     * @param file the file to decode; not allowed to be null
+     * @param out the target for the decoded records; not allowed to be null
+     * @throws IOException if an I/O error occurred, or if {@code file} does
+     * not contain valid records
+     * @throws NullPointerException if {@code file == null || out == null}
+     */
+    public static void decode(final Path file, final Writer out)
+            throws IOException {
+        requireNonNull(out);
+        try (final FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format(CORRUPT, "too large"));
+            }
+            decode(channel.map(FileChannel.MapMode.READ_ONLY, 0L,
+                    channel.size()).asIntBuffer(), out);
+        }
+    }
+
+    private static void decode(final IntBuffer records, final Writer out)
+            throws IOException {
+        check(records.limit() >= HEADER_SIZE, "truncated");
+        check(records.get(0) == MAGIC, "bad magic number");
+        check(records.get(1) == VERSION, "unsupported version");
+        check(records.get(2) == RECORD_SIZE, "bad record size");
+        final int capacity = records.get(CAPACITY_OFFSET);
+        check(capacity > 0, "bad capacity");
+        check(records.limit() >= HEADER_SIZE + (long) capacity * RECORD_SIZE,
+                "truncated");
+        final long count = (long) records.get(COUNT_OFFSET) << Integer.SIZE
+                | records.get(COUNT_OFFSET + 1) & 0xFFFFFFFFL;
+        check(count >= 0L, "bad count");
+
+        for (long n = Math.max(0L, count - capacity); n < count; n++) {
+            final int offset = HEADER_SIZE + (int) (n % capacity)
+                    * RECORD_SIZE;
+            final int operator = records.get(offset + OPERATOR);
+            out.write(String.format("%12d  %07x  %07x %9s %14s  %5s  ", n,
+                    records.get(offset + STACK_ADDRESS),
+                    records.get(offset + CODE_ADDRESS),
+                    Instructions.toOpcodeString(operator),
+                    operandToString(Instructions.getOpcode(operator),
+                            records.get(offset + OPERAND)),
+                    Instructions.toModeString(operator)));
+            final int bindings = records.get(offset + BINDING_COUNT);
+            for (int i = 0; i < Math.min(bindings, MAX_BINDINGS); i++) {
+                out.append('[').append(Integer.toHexString(records.get(
+                        offset + BINDINGS + i))).append(']');
+            }
+            if (bindings > MAX_BINDINGS) {
+                out.append("[+").append(Integer.toString(bindings
+                        - MAX_BINDINGS)).append(']');
+            }
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private static String operandToString(final int opcode,
+            final int operand) {
+        if (operand == -1) {
+            return "";
+        }
+        switch (opcode) {
+        case FUNCTOR:
+            // Fall-through
+        case VOIDFUNCTOR:
+            // Fall-through
+        case LASTFUNCTOR:
+            // Fall-through
+        case CONSTANT:
+            // Fall-through
+        case CALL:
+            return "#" + operand;
+        case GROUND:
+            return Integer.toHexString(operand);
+        default:
+            return Integer.toString(operand);
+        }
+    }
+
+    private static void check(final boolean condition, final String message)
+            throws IOException {
+        if (!condition) {
+            throw new IOException(String.format(CORRUPT, message));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.prolog.jvm.zip;
+
+import static com.prolog.jvm.zip.util.Instructions.EXIT;
+import static com.prolog.jvm.zip.util.Instructions.POP;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+
+import com.prolog.jvm.zip.api.PrologBytecode;
+import com.prolog.jvm.zip.api.StepEvent;
+import com.prolog.jvm.zip.api.StepListener;
+
+/**
+ * Step listener recording the instructions executed as fixed-size binary
+ * records in a preallocated ring buffer, keeping the most recent ones
+ * available for post-mortem analysis at a fraction of the cost of a
+ * {@link StepLogger}. The ring buffer is kept either on the Java heap, to be
+ * saved through {@link #writeTo(OutputStream)}, or in a memory-mapped file,
+ * whose contents survive a crash of the JVM. Either way, the records are
+ * rendered as text by the {@link FlightRecordDecoder}.
+ * <p>
+ * The format starts with a header of {@value #HEADER_SIZE} 32-bit words
+ * (big-endian): the magic number {@value #MAGIC}, the format version, the
+ * record size in words, the capacity in records, and the number of records
+ * written (as a 64-bit word). It is followed by the ring buffer, record
+ * {@code n} being kept at slot {@code n % capacity}. Each record consists of
+ * the code- and stack address reported by the {@link StepEvent}, its mode and
+ * opcode (combined by a bitwise or), the raw operand (or {@code -1} if none),
+ * the number of addresses bound, and the first {@value #MAX_BINDINGS} of the
+ * latter.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class FlightRecorder implements StepListener, Closeable {
+
+    /**
+     * The magic number identifying the format.
+     */
+    public static final int MAGIC = 0x5A495054; // "ZIPT"
+
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 6;
+    static final int MAX_BINDINGS = 3;
+    static final int RECORD_SIZE = 5 + MAX_BINDINGS;
+
+    // Offsets within the header
+    static final int CAPACITY_OFFSET = 3;
+    static final int COUNT_OFFSET = 4;
+
+    // Offsets within a record
+    static final int CODE_ADDRESS = 0;
+    static final int STACK_ADDRESS = 1;
+    static final int OPERATOR = 2;
+    static final int OPERAND = 3;
+    static final int BINDING_COUNT = 4;
+    static final int BINDINGS = 5;
+
+    private final PrologBytecode<?> code;
+    private final IntBuffer buffer;
+    private final MappedByteBuffer mapped; // null if kept on the heap
+    private final int capacity;
+    private long count;
+
+    private FlightRecorder(final PrologBytecode<?> code,
+            final IntBuffer buffer, final MappedByteBuffer mapped,
+            final int capacity) {
+        this.code = requireNonNull(code);
+        this.buffer = buffer;
+        this.mapped = mapped;
+        this.capacity = capacity;
+        buffer.put(0, MAGIC);
+        buffer.put(1, VERSION);
+        buffer.put(2, RECORD_SIZE);
+        buffer.put(CAPACITY_OFFSET, capacity);
+        writeCount();
+    }
+
+    /**
+     * Static factory method for obtaining a recorder keeping the specified
+     * number of records in a ring buffer on the Java heap.
+     *
+     * @param code the bytecode to read operands from; not allowed to be null
+     * @param capacity the number of records to keep; must be {@code > 0}
+     * @throws NullPointerException if {@code code == null}
+     * @throws IllegalArgumentException if {@code capacity} is not positive,
+     * or too large for the ring buffer to be addressed
+     */
+    public static FlightRecorder newInstance(final PrologBytecode<?> code,
+            final int capacity) {
+        return new FlightRecorder(code,
+                IntBuffer.allocate(getSize(capacity)), null, capacity);
+    }
+
+    /**
+     * Static factory method for obtaining a recorder keeping the specified
+     * number of records in a ring buffer mapped to {@code file}, replacing
+     * the latter's contents.
+     *
+     * @param code the bytecode to read operands from; not allowed to be null
+     * @param file the file to map; not allowed to be null
+     * @param capacity the number of records to keep; must be {@code > 0}
+     * @throws IOException if an I/O error occurred
+     * @throws NullPointerException if {@code code == null || file == null}
+     * @throws IllegalArgumentException if {@code capacity} is not positive,
+     * or too large for the ring buffer to be addressed
+     */
+    public static FlightRecorder newInstance(final PrologBytecode<?> code,
+            final Path file, final int capacity) throws IOException {
+        final int size = getSize(capacity);
+        try (final FileChannel channel = FileChannel.open(file, CREATE, READ,
+                WRITE, TRUNCATE_EXISTING)) {
+            final MappedByteBuffer mapped = channel.map(MapMode.READ_WRITE,
+                    0L, (long) size * Integer.SIZE / Byte.SIZE);
+            return new FlightRecorder(code, mapped.asIntBuffer(), mapped,
+                    capacity);
+        }
+    }
+
+    // Returns the size of the format in words
+    private static int getSize(final int capacity) {
+        if (capacity <= 0 || capacity > (Integer.MAX_VALUE / Integer.SIZE
+                * Byte.SIZE - HEADER_SIZE) / RECORD_SIZE) {
+            throw new IllegalArgumentException(Integer.toString(capacity));
+        }
+        return HEADER_SIZE + capacity * RECORD_SIZE;
+    }
+
+    @Override
+    public void handleEvent(final StepEvent event) {
+        final int offset = HEADER_SIZE
+                + (int) (this.count % this.capacity) * RECORD_SIZE;
+        final int opcode = event.getOpcode();
+        this.buffer.put(offset + CODE_ADDRESS, event.getCodeAddress());
+        this.buffer.put(offset + STACK_ADDRESS, event.getStackAddress());
+        this.buffer.put(offset + OPERATOR, event.getMode() | opcode);
+        this.buffer.put(offset + OPERAND, opcode == POP || opcode == EXIT ? -1
+                : this.code.read(event.getCodeAddress()));
+        int bindings = 0;
+        for (final Integer address : event.getBindings()) {
+            if (bindings < MAX_BINDINGS) {
+                this.buffer.put(offset + BINDINGS + bindings,
+                        address.intValue());
+            }
+            bindings++;
+        }
+        this.buffer.put(offset + BINDING_COUNT, bindings);
+        this.count++;
+        writeCount();
+    }
+
+    private void writeCount() {
+        this.buffer.put(COUNT_OFFSET, (int) (this.count >>> Integer.SIZE));
+        this.buffer.put(COUNT_OFFSET + 1, (int) this.count);
+    }
+
+    /**
+     * Returns the number of records written so far, including those that
+     * were since overwritten.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Writes the header and ring buffer to {@code out}, in the format read by
+     * the {@link FlightRecordDecoder}.
+     *
+     * @throws IOException
+     * @throws NullPointerException if {@code out == null}
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(requireNonNull(
+                out));
+        for (int i = 0; i < this.buffer.capacity(); i++) {
+            data.writeInt(this.buffer.get(i));
+        }
+        data.flush();
+    }
+
+    /**
+     * Forces any changes to the ring buffer to be written to the mapped file,
+     * if any. The mapping itself is released once this recorder is garbage
+     * collected.
+     */
+    @Override
+    public void close() {
+        if (this.mapped != null) {
+            this.mapped.force();
+        }
+    }
+}
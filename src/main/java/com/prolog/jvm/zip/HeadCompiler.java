@@ -0,0 +1,350 @@
+package com.prolog.jvm.zip;
+
+import static com.prolog.jvm.zip.util.Instructions.CONSTANT;
+import static com.prolog.jvm.zip.util.Instructions.ENTER;
+import static com.prolog.jvm.zip.util.Instructions.FIRSTVAR;
+import static com.prolog.jvm.zip.util.Instructions.FUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.GROUND;
+import static com.prolog.jvm.zip.util.Instructions.LASTFUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.POP;
+import static com.prolog.jvm.zip.util.Instructions.RETURN;
+import static com.prolog.jvm.zip.util.Instructions.VAR;
+import static com.prolog.jvm.zip.util.Instructions.VOID;
+import static com.prolog.jvm.zip.util.Instructions.VOIDFUNCTOR;
+import static com.prolog.jvm.zip.util.PlWords.CONS;
+import static com.prolog.jvm.zip.util.PlWords.REF;
+import static com.prolog.jvm.zip.util.PlWords.STR;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.zip.api.CompiledHead;
+import com.prolog.jvm.zip.api.PrologBytecode;
+import com.prolog.jvm.zip.api.ZipFacade;
+import com.prolog.jvm.zip.util.Instructions;
+import com.prolog.jvm.zip.util.PlWords;
+
+/**
+ * Translates the bytecode of a clause's head literal into a
+ * {@link CompiledHead}, being a tree of argument nodes mirroring the head's
+ * terms. Whereas the {@link ZipInterpreterImpl} fetches and decodes each
+ * instruction and dispatches on its combination with the processor mode, the
+ * nodes have their operands resolved in advance and know statically whether
+ * they are matching or copying. I.e., each compound term is given both a
+ * matching and a copying implementation for its arguments, the former being
+ * used if it is matched against a structure and the latter if it is bound to
+ * an unbound variable. The JIT compiler of the JVM can then inline these
+ * along the shape of the head.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+final class HeadCompiler {
+
+    private static final Arg[] NO_ARGS = new Arg[0];
+
+    private final PrologBytecode<?> code;
+    private final ZipFacade facade;
+    private int pc;
+
+    private HeadCompiler(final PrologBytecode<?> code, final ZipFacade facade,
+            final int start) {
+        this.code = code;
+        this.facade = facade;
+        this.pc = start;
+    }
+
+    /**
+     * Compiles the head literal of the specified {@code clause}.
+     *
+     * @param code the bytecode containing the clause
+     * @param facade the machine for resolving constant pool entries
+     * @param clause the clause whose head is to be compiled
+     * @throws IllegalStateException if the clause's bytecode was malformed
+     */
+    static CompiledHead compile(final PrologBytecode<?> code,
+            final ZipFacade facade, final ClauseSymbol clause) {
+        assert code != null && facade != null && clause != null;
+        final int start = clause.getHeapptr();
+        final HeadCompiler compiler = new HeadCompiler(code, facade, start);
+        final Arg[] args = compiler.parseArgs(clause.getParams());
+        final int opcode = code.read(compiler.pc);
+        if (opcode != ENTER && opcode != RETURN) {
+            throw new IllegalStateException(Instructions.opcodeToString(
+                    opcode));
+        }
+        return new Head(args, compiler.pc - start);
+    }
+
+    /*
+     * Parses the arguments of a term or head literal, up to the given arity.
+     * Trailing void arguments need not have been written, in which case
+     * parsing stops at the instruction following the term.
+     */
+    private Arg[] parseArgs(final int arity) {
+        final List<Arg> args = new ArrayList<>();
+        int index = 0;
+        loop: while (index < arity) {
+            final int opcode = this.code.read(this.pc);
+            switch (opcode) {
+            case POP:
+                // Fall-through
+            case ENTER:
+                // Fall-through
+            case RETURN:
+                break loop;
+            default:
+                break;
+            }
+            final int operand = this.code.read(this.pc + 1);
+            this.pc += 2;
+            switch (opcode) {
+            case VOID:
+                index += operand;
+                continue;
+            case CONSTANT:
+                args.add(new Constant(index, getFunctor(operand), operand));
+                break;
+            case FIRSTVAR:
+                args.add(new FirstVar(index, operand));
+                break;
+            case VAR:
+                args.add(new Var(index, operand));
+                break;
+            case GROUND:
+                args.add(new Ground(index, operand));
+                break;
+            case VOIDFUNCTOR:
+                args.add(new Structure(index, getFunctor(operand), operand,
+                        NO_ARGS));
+                break;
+            case FUNCTOR: {
+                final FunctorSymbol symbol = getFunctor(operand);
+                final Arg[] sub = parseArgs(symbol.getArity());
+                if (this.code.read(this.pc++) != POP) {
+                    throw new IllegalStateException("Expected POP");
+                }
+                args.add(new Structure(index, symbol, operand, sub));
+                break;
+            }
+            case LASTFUNCTOR: {
+                // Its arguments end where those of the enclosing term do
+                final FunctorSymbol symbol = getFunctor(operand);
+                args.add(new Structure(index, symbol, operand,
+                        parseArgs(symbol.getArity())));
+                break;
+            }
+            default:
+                throw new IllegalStateException(Instructions.opcodeToString(
+                        opcode));
+            }
+            index++;
+        }
+        return args.toArray(NO_ARGS);
+    }
+
+    private FunctorSymbol getFunctor(final int index) {
+        return this.facade.getConstant(index, FunctorSymbol.class);
+    }
+
+    // === Nodes ===
+
+    private static final class Head implements CompiledHead {
+        private final Arg[] args;
+        private final int length;
+
+        private Head(final Arg[] args, final int length) {
+            this.args = args;
+            this.length = length;
+        }
+
+        @Override
+        public int getLength() {
+            return this.length;
+        }
+
+        @Override
+        public boolean unify(final ZipFacade facade, final int frame) {
+            for (final Arg arg : this.args) {
+                if (!arg.match(facade, frame + arg.index, frame)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // An argument, at the given index among those of its term or literal
+    private abstract static class Arg {
+        final int index;
+
+        Arg(final int index) {
+            this.index = index;
+        }
+
+        // Unifies the argument with the term at address, as in MATCH mode
+        abstract boolean match(ZipFacade facade, int address, int frame);
+
+        // Writes the argument to the unbound cell at address, as in COPY mode
+        abstract void copy(ZipFacade facade, int address, int frame);
+    }
+
+    private static final class Constant extends Arg {
+        private final FunctorSymbol symbol;
+        private final int poolIndex;
+
+        Constant(final int index, final FunctorSymbol symbol,
+                final int poolIndex) {
+            super(index);
+            this.symbol = symbol;
+            this.poolIndex = poolIndex;
+        }
+
+        @Override
+        boolean match(final ZipFacade facade, final int address,
+                final int frame) {
+            final int word = facade.getWordAt(address);
+            switch (PlWords.getTag(word)) {
+            case REF: {
+                final int ref = PlWords.getValue(word);
+                facade.setWord(ref, this.symbol);
+                facade.trail(ref);
+                return true;
+            }
+            case CONS:
+                return PlWords.getValue(word) == this.poolIndex;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        void copy(final ZipFacade facade, final int address, final int frame) {
+            facade.setWord(address, this.symbol);
+        }
+    }
+
+    private static final class FirstVar extends Arg {
+        private final int offset;
+
+        FirstVar(final int index, final int offset) {
+            super(index);
+            this.offset = offset;
+        }
+
+        @Override
+        boolean match(final ZipFacade facade, final int address,
+                final int frame) {
+            copy(facade, address, frame);
+            return true;
+        }
+
+        @Override
+        void copy(final ZipFacade facade, final int address, final int frame) {
+            facade.setWord(frame + this.offset, facade.getWordAt(address));
+        }
+    }
+
+    private static final class Var extends Arg {
+        private final int offset;
+
+        Var(final int index, final int offset) {
+            super(index);
+            this.offset = offset;
+        }
+
+        @Override
+        boolean match(final ZipFacade facade, final int address,
+                final int frame) {
+            return facade.unifiable(frame + this.offset, address) != null;
+        }
+
+        @Override
+        void copy(final ZipFacade facade, final int address, final int frame) {
+            facade.bind(address, frame + this.offset);
+        }
+    }
+
+    private static final class Ground extends Arg {
+        private final int address; // in the static area
+
+        Ground(final int index, final int address) {
+            super(index);
+            this.address = address;
+        }
+
+        @Override
+        boolean match(final ZipFacade facade, final int address,
+                final int frame) {
+            return facade.unifiable(this.address, address) != null;
+        }
+
+        @Override
+        void copy(final ZipFacade facade, final int address, final int frame) {
+            facade.setWord(address, facade.getWordAt(this.address));
+        }
+    }
+
+    private static final class Structure extends Arg {
+        private final FunctorSymbol symbol;
+        private final int poolIndex;
+        private final Arg[] args;
+
+        Structure(final int index, final FunctorSymbol symbol,
+                final int poolIndex, final Arg[] args) {
+            super(index);
+            this.symbol = symbol;
+            this.poolIndex = poolIndex;
+            this.args = args;
+        }
+
+        @Override
+        boolean match(final ZipFacade facade, final int address,
+                final int frame) {
+            final int word = facade.getWordAt(address);
+            switch (PlWords.getTag(word)) {
+            case REF: {
+                final int ref = PlWords.getValue(word);
+                facade.trail(ref);
+                final int functor = facade.pushFunctor(this.symbol);
+                facade.setWord(ref, functor);
+                copyArgs(facade, PlWords.getValue(functor) + 1, frame);
+                facade.shareTerm(ref);
+                return true;
+            }
+            case STR: {
+                final int globalAddr = PlWords.getValue(word);
+                if (PlWords.getValue(facade.getWordAt(globalAddr))
+                        != this.poolIndex) {
+                    return false;
+                }
+                for (final Arg arg : this.args) {
+                    if (!arg.match(facade, globalAddr + 1 + arg.index,
+                            frame)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        void copy(final ZipFacade facade, final int address, final int frame) {
+            final int functor = facade.pushFunctor(this.symbol);
+            facade.setWord(address, functor);
+            copyArgs(facade, PlWords.getValue(functor) + 1, frame);
+        }
+
+        private void copyArgs(final ZipFacade facade, final int address,
+                final int frame) {
+            for (final Arg arg : this.args) {
+                arg.copy(facade, address + arg.index, frame);
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.prolog.jvm.zip;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.prolog.jvm.symbol.PredicateSymbol;
+import com.prolog.jvm.zip.api.PortListener;
+import com.prolog.jvm.zip.api.StepEvent;
+import com.prolog.jvm.zip.api.StepListener;
+import com.prolog.jvm.zip.api.ZipInterpreter;
+
+/**
+ * Profiler attributing the work done by the {@link ZipInterpreter} to the
+ * predicates it was done for. Per predicate, it counts the ports of the box
+ * model passed through (see {@link PortListener}), the instructions executed
+ * while a call to it was the innermost one in progress, and the wall time
+ * spent thereby (<i>self</i> time) as well as by the calls it made in turn
+ * (<i>total</i> time, counting recursive calls only once).
+ * <p>
+ * Instances are to be registered with the interpreter both as a
+ * {@link PortListener} and as a {@link StepListener}, the latter being needed
+ * only for counting instructions. Statistics accumulate over all queries
+ * executed until {@link #reset()} is called. Like the interpreter, this class
+ * is not thread-safe.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class PortProfiler implements PortListener, StepListener {
+
+    private static final String HEADER =
+            "%-24s %10s %10s %10s %10s %12s %10s %10s%n";
+    private static final String ROW =
+            "%-24s %10d %10d %10d %10d %12d %10.3f %10.3f%n";
+    private static final String CSV_HEADER =
+            "predicate,calls,exits,redos,fails,instructions,self_ns,"
+            + "total_ns\n";
+
+    private final Map<PredicateSymbol,Statistics> statistics =
+            new IdentityHashMap<>();
+
+    // The calls in progress, innermost first
+    private final Deque<Activation> activations = new ArrayDeque<>();
+
+    private long timestamp = System.nanoTime(); // of the last port
+
+    /**
+     * The columns by which the report can be sorted, in descending order.
+     */
+    public enum SortKey {
+        CALLS, REDOS, FAILS, INSTRUCTIONS, SELF_TIME, TOTAL_TIME;
+    }
+
+    // === Listener callbacks ===
+
+    @Override
+    public void call(final PredicateSymbol predicate) {
+        enter(predicate).calls++;
+    }
+
+    @Override
+    public void exit(final PredicateSymbol predicate) {
+        leave(predicate).exits++;
+    }
+
+    @Override
+    public void redo(final PredicateSymbol predicate) {
+        enter(predicate).redos++;
+    }
+
+    @Override
+    public void fail(final PredicateSymbol predicate) {
+        leave(predicate).fails++;
+    }
+
+    @Override
+    public void handleEvent(final StepEvent event) {
+        final Activation innermost = this.activations.peek();
+        if (innermost != null) {
+            innermost.statistics.instructions++;
+        }
+    }
+
+    private Statistics enter(final PredicateSymbol predicate) {
+        final long now = tick();
+        Statistics result = this.statistics.get(predicate);
+        if (result == null) {
+            result = new Statistics(predicate);
+            this.statistics.put(predicate, result);
+        }
+        result.active++;
+        this.activations.push(new Activation(result, now));
+        return result;
+    }
+
+    private Statistics leave(final PredicateSymbol predicate) {
+        final long now = tick();
+        final Activation activation = this.activations.pop();
+        final Statistics result = activation.statistics;
+        assert result.predicate == predicate;
+        if (--result.active == 0) {
+            result.totalTime += now - activation.start;
+        }
+        return result;
+    }
+
+    // Attributes the time since the last port to the innermost call
+    private long tick() {
+        final long now = System.nanoTime();
+        final Activation innermost = this.activations.peek();
+        if (innermost != null) {
+            innermost.statistics.selfTime += now - this.timestamp;
+        }
+        this.timestamp = now;
+        return now;
+    }
+
+    // === Reporting ===
+
+    /**
+     * Discards all statistics gathered so far.
+     */
+    public void reset() {
+        this.statistics.clear();
+        this.activations.clear();
+        this.timestamp = System.nanoTime();
+    }
+
+    /**
+     * Returns the statistics gathered so far, in descending order of the
+     * specified {@code key}.
+     *
+     * @throws NullPointerException if {@code key == null}
+     */
+    public List<Statistics> getStatistics(final SortKey key) {
+        requireNonNull(key);
+        final List<Statistics> result = new ArrayList<>(
+                this.statistics.values());
+        Collections.sort(result, new Comparator<Statistics>() {
+            @Override
+            public int compare(final Statistics s1, final Statistics s2) {
+                return Long.compare(s2.get(key), s1.get(key));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Writes a human-readable report to {@code out}, listing one predicate per
+     * line in descending order of the specified {@code key}. Times are given
+     * in milliseconds.
+     *
+     * @throws IOException
+     * @throws NullPointerException if {@code out == null || key == null}
+     */
+    public void writeReport(final Writer out, final SortKey key)
+            throws IOException {
+        requireNonNull(out);
+        out.write(String.format(HEADER, "Predicate", "Calls", "Exits",
+                "Redos", "Fails", "Instructions", "Self ms", "Total ms"));
+        for (final Statistics s : getStatistics(key)) {
+            out.write(String.format(ROW, s.predicate, s.calls, s.exits,
+                    s.redos, s.fails, s.instructions, toMillis(s.selfTime),
+                    toMillis(s.totalTime)));
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the statistics gathered so far to {@code out} as comma-separated
+     * values, preceded by a header line naming the columns. Times are given
+     * in nanoseconds.
+     *
+     * @throws IOException
+     * @throws NullPointerException if {@code out == null}
+     */
+    public void writeCsv(final Writer out) throws IOException {
+        out.write(CSV_HEADER);
+        for (final Statistics s : getStatistics(SortKey.TOTAL_TIME)) {
+            out.append(s.predicate.toString()).append(',')
+                    .append(Long.toString(s.calls)).append(',')
+                    .append(Long.toString(s.exits)).append(',')
+                    .append(Long.toString(s.redos)).append(',')
+                    .append(Long.toString(s.fails)).append(',')
+                    .append(Long.toString(s.instructions)).append(',')
+                    .append(Long.toString(s.selfTime)).append(',')
+                    .append(Long.toString(s.totalTime)).append('\n');
+        }
+        out.flush();
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    // === Nested classes ===
+
+    /**
+     * The statistics gathered for a single predicate.
+     */
+    public static final class Statistics {
+
+        private final PredicateSymbol predicate;
+        private long calls;
+        private long exits;
+        private long redos;
+        private long fails;
+        private long instructions;
+        private long selfTime;
+        private long totalTime;
+        private int active; // Number of calls in progress
+
+        private Statistics(final PredicateSymbol predicate) {
+            this.predicate = predicate;
+        }
+
+        public PredicateSymbol getPredicate() {
+            return this.predicate;
+        }
+
+        public long getCalls() {
+            return this.calls;
+        }
+
+        public long getExits() {
+            return this.exits;
+        }
+
+        public long getRedos() {
+            return this.redos;
+        }
+
+        public long getFails() {
+            return this.fails;
+        }
+
+        public long getInstructions() {
+            return this.instructions;
+        }
+
+        /**
+         * Returns the wall time in nanoseconds spent while a call to the
+         * predicate was the innermost one in progress.
+         */
+        public long getSelfTime() {
+            return this.selfTime;
+        }
+
+        /**
+         * Returns the wall time in nanoseconds spent while a call to the
+         * predicate was in progress.
+         */
+        public long getTotalTime() {
+            return this.totalTime;
+        }
+
+        private long get(final SortKey key) {
+            switch (key) {
+            case CALLS:
+                return this.calls;
+            case REDOS:
+                return this.redos;
+            case FAILS:
+                return this.fails;
+            case INSTRUCTIONS:
+                return this.instructions;
+            case SELF_TIME:
+                return this.selfTime;
+            case TOTAL_TIME:
+                return this.totalTime;
+            default:
+                throw new AssertionError(key);
+            }
+        }
+    }
+
+    // A call in progress
+    private static final class Activation {
+        private final Statistics statistics;
+        private final long start;
+
+        private Activation(final Statistics statistics, final long start) {
+            this.statistics = statistics;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.prolog.jvm.zip;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.PredicateSymbol;
+import com.prolog.jvm.zip.api.PortListener;
+
+/**
+ * Keeps track of the boxes of the calls made during the execution of a single
+ * query, deriving from the instructions executed by the
+ * {@link ZipInterpreterImpl} the ports through which said boxes are entered
+ * and left. Since the interpreter's activation records do not record the
+ * predicates they belong to, the boxes are kept in a shadow tree, each box
+ * linking to that of its caller. The choice points pushed by the
+ * {@link ZipFacadeImpl} are mirrored likewise, remembering for each the box
+ * of the call that pushed it.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+final class PortTracker {
+
+    private final PortListener[] listeners;
+
+    private Box current = new Box(null, null); // the query's own box
+    private Choice choicepnt;                  // the last choice point
+
+    PortTracker(final PortListener[] listeners) {
+        assert listeners != null;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Invoked upon a call to {@code predicate}, with {@code next} being the
+     * clause alternative recorded by the choice point pushed thereby, or null
+     * if none was pushed, and {@code key} the first argument index key with
+     * which the alternatives following it are to be matched.
+     */
+    void call(final PredicateSymbol predicate, final ClauseSymbol next,
+            final long generation, final int key) {
+        this.current = new Box(predicate, this.current);
+        for (final PortListener listener : this.listeners) {
+            listener.call(predicate);
+        }
+        if (next != null) {
+            this.choicepnt = new Choice(this.current, next, generation, key,
+                    this.choicepnt);
+        }
+    }
+
+    /**
+     * Invoked upon the successful completion of a clause, i.e., upon
+     * executing {@code RETURN} or {@code EXIT}.
+     */
+    void exit() {
+        if (this.current.predicate == null) {
+            return; // an answer to the query
+        }
+        for (final PortListener listener : this.listeners) {
+            listener.exit(this.current.predicate);
+        }
+        this.current = this.current.parent;
+    }
+
+    /**
+     * Invoked just prior to the {@link ZipFacadeImpl} backtracking, failing the
+     * calls left and redoing those that are re-entered.
+     */
+    void backtrack() {
+        if (this.choicepnt == null) {
+            fail(null); // The query fails as a whole
+            return;
+        }
+        final Box target = this.choicepnt.box;
+        final Box ancestor = Box.commonAncestor(this.current, target);
+        fail(ancestor);
+        redo(target, ancestor);
+        this.current = target;
+
+        // Advance or pop the choice point, as done by the facade, unless left
+        // for matching the next row of a table of facts
+        if (this.choicepnt.clause.getFacts() == null) {
+            advance();
+        }
+    }
+
+    /**
+     * Invoked upon matching a call against the table of facts of the last
+     * choice point's clause, with {@code row} being the row at which to
+     * resume upon backtracking, or a negative number if none is left.
+     */
+    void matchedFacts(final int row) {
+        if (row < 0) {
+            advance();
+        }
+    }
+
+    // Advances or pops the last choice point
+    private void advance() {
+        final ClauseSymbol next = ClauseSymbol.firstMatching(
+                this.choicepnt.clause.getNext(), this.choicepnt.generation,
+                this.choicepnt.key);
+        if (next != null) {
+            this.choicepnt.clause = next;
+        } else {
+            this.choicepnt = this.choicepnt.previous;
+        }
+    }
+
+    // Fails the boxes from the current one up to (excluding) ancestor
+    private void fail(final Box ancestor) {
+        while (this.current != ancestor && this.current.predicate != null) {
+            for (final PortListener listener : this.listeners) {
+                listener.fail(this.current.predicate);
+            }
+            this.current = this.current.parent;
+        }
+    }
+
+    /*
+     * Redoes the boxes from ancestor (excluded) down to box, top-down. Not
+     * being ancestors of the current box, all of these have exited before.
+     */
+    private void redo(final Box box, final Box ancestor) {
+        final Deque<Box> boxes = new ArrayDeque<>();
+        for (Box b = box; b != ancestor; b = b.parent) {
+            boxes.push(b);
+        }
+        for (final Box b : boxes) {
+            for (final PortListener listener : this.listeners) {
+                listener.redo(b.predicate);
+            }
+        }
+    }
+
+    // A box for a call that was made
+    private static final class Box {
+        private final PredicateSymbol predicate; // null for the query
+        private final Box parent;                // the caller's box
+        private final int depth;
+
+        private Box(final PredicateSymbol predicate, final Box parent) {
+            this.predicate = predicate;
+            this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        private static Box commonAncestor(Box a, Box b) {
+            while (a.depth > b.depth) {
+                a = a.parent;
+            }
+            while (b.depth > a.depth) {
+                b = b.parent;
+            }
+            while (a != b) {
+                a = a.parent;
+                b = b.parent;
+            }
+            return a;
+        }
+    }
+
+    // A choice point, recording the box of the call that pushed it
+    private static final class Choice {
+        private final Box box;
+        private ClauseSymbol clause; // the next alternative to try
+        private final long generation;
+        private final int key;
+        private final Choice previous;
+
+        private Choice(final Box box, final ClauseSymbol clause,
+                final long generation, final int key, final Choice previous) {
+            this.box = box;
+            this.clause = clause;
+            this.generation = generation;
+            this.key = key;
+            this.previous = previous;
+        }
+    }
+}
@@ -4,20 +4,31 @@ import static com.prolog.jvm.zip.util.Instructions.CALL;
 import static com.prolog.jvm.zip.util.Instructions.CONSTANT;
 import static com.prolog.jvm.zip.util.Instructions.ENTER;
 import static com.prolog.jvm.zip.util.Instructions.EXIT;
+import static com.prolog.jvm.zip.util.Instructions.FACTS;
 import static com.prolog.jvm.zip.util.Instructions.FIRSTVAR;
 import static com.prolog.jvm.zip.util.Instructions.FUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.GROUND;
+import static com.prolog.jvm.zip.util.Instructions.LASTFUNCTOR;
 import static com.prolog.jvm.zip.util.Instructions.POP;
 import static com.prolog.jvm.zip.util.Instructions.RETURN;
 import static com.prolog.jvm.zip.util.Instructions.VAR;
+import static com.prolog.jvm.zip.util.Instructions.VOID;
+import static com.prolog.jvm.zip.util.Instructions.VOIDFUNCTOR;
+import static com.prolog.jvm.zip.util.PlWords.STR;
 import static java.util.Objects.requireNonNull;
 
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import com.prolog.jvm.zip.PrologBytecodeImpl.MementoImpl;
 import com.prolog.jvm.zip.api.MemoryArea;
 import com.prolog.jvm.zip.api.PrologBytecode;
 import com.prolog.jvm.zip.util.Instructions;
 import com.prolog.jvm.zip.util.MemoryConstants;
+import com.prolog.jvm.zip.util.PlWords;
 
 /**
  * Implementation of {@link PrologBytecode}.
@@ -28,14 +39,50 @@ import com.prolog.jvm.zip.util.MemoryConstants;
 public final class PrologBytecodeImpl implements PrologBytecode<MementoImpl> {
 
     private final MemoryArea code;
+    private final MemoryArea statics; // null if absent
     private final List<Object> constants;
 
+    // The indices of the constant pool entries, keyed by the latter
+    private final Map<Object,Integer> indices = new HashMap<>();
+
+    // The addresses of the terms in the static area, keyed by their words
+    private final Map<IntBuffer,Integer> interned = new HashMap<>();
+
     private int codeptr = MemoryConstants.MIN_HEAP_INDEX;
+    private int staticptr = MemoryConstants.MIN_STATIC_INDEX;
 
+    /**
+     * Creates an instance without a static area, so that ground terms are
+     * compiled like any other.
+     */
     public PrologBytecodeImpl(final List<Object> constants,
             final MemoryArea code) {
         this.constants = requireNonNull(constants);
         this.code = requireNonNull(code);
+        this.statics = null;
+        indexConstants();
+    }
+
+    /**
+     * Creates an instance storing ground terms in the specified static area,
+     * whose addresses start at {@link MemoryConstants#MIN_STATIC_INDEX}.
+     */
+    public PrologBytecodeImpl(final List<Object> constants,
+            final MemoryArea code, final MemoryArea statics) {
+        this.constants = requireNonNull(constants);
+        this.code = requireNonNull(code);
+        this.statics = requireNonNull(statics);
+        indexConstants();
+    }
+
+    // Indexes the entries the constant pool already held, if any
+    private void indexConstants() {
+        for (int i = this.constants.size() - 1; i >= 0; i--) {
+            final Object constant = this.constants.get(i);
+            if (constant != null) {
+                this.indices.put(constant, Integer.valueOf(i));
+            }
+        }
     }
 
     @Override
@@ -45,8 +92,8 @@ public final class PrologBytecodeImpl implements PrologBytecode<MementoImpl> {
 
     @Override
     public void writeIns(final int opcode, final int operand) {
-        writeOpcode(opcode, FUNCTOR, CONSTANT, FIRSTVAR, VAR, CALL,
-                ENTER, RETURN);
+        writeOpcode(opcode, FUNCTOR, VOIDFUNCTOR, LASTFUNCTOR, CONSTANT,
+                FIRSTVAR, VAR, VOID, GROUND, CALL, ENTER, RETURN, FACTS);
         this.code.writeTo(this.codeptr++, operand);
     }
 
@@ -55,6 +102,13 @@ public final class PrologBytecodeImpl implements PrologBytecode<MementoImpl> {
         writeOpcode(opcode, POP, EXIT);
     }
 
+    @Override
+    public void writeCode(final IntBuffer words) {
+        while (words.hasRemaining()) {
+            this.code.writeTo(this.codeptr++, words.get());
+        }
+    }
+
     /*
      * Writes the given opcode if it occurs in expected, while otherwise
      * throwing an exception.
@@ -74,26 +128,138 @@ public final class PrologBytecodeImpl implements PrologBytecode<MementoImpl> {
         return this.codeptr;
     }
 
+    @Override
+    public int getClauseLength(final int address) {
+        int end = address;
+        while (true) {
+            final int opcode = this.code.readFrom(end++);
+            if (opcode == EXIT) {
+                return end - address;
+            }
+            if (opcode != POP) {
+                end++; // Skip the operand
+            }
+            if (opcode == RETURN || opcode == FACTS) {
+                return end - address;
+            }
+        }
+    }
+
+    @Override
+    public void setCodeSize(final int codeSize) {
+        if (codeSize < MemoryConstants.MIN_HEAP_INDEX
+                || codeSize > this.codeptr) {
+            throw new IllegalArgumentException(Integer.toString(codeSize));
+        }
+        this.codeptr = codeSize;
+    }
+
+    @Override
+    public void copyCode(final int from, final int to, final int length) {
+        if (length < 0 || from < MemoryConstants.MIN_HEAP_INDEX
+                || to < MemoryConstants.MIN_HEAP_INDEX
+                || Math.max(from, to) + length > this.codeptr) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (to < from) {
+            for (int i = 0; i < length; i++) {
+                this.code.writeTo(to + i, this.code.readFrom(from + i));
+            }
+        } else {
+            for (int i = length - 1; i >= 0; i--) {
+                this.code.writeTo(to + i, this.code.readFrom(from + i));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasStaticArea() {
+        return this.statics != null;
+    }
+
+    @Override
+    public int internTerm(final int[] words) {
+        final IntBuffer key = IntBuffer.wrap(words.clone());
+        final Integer address = this.interned.get(key);
+        if (address != null) {
+            return address.intValue();
+        }
+        checkStaticArea();
+        final int start = this.staticptr;
+        for (final int word : words) {
+            // Relocate the pointers to subterms
+            this.statics.writeTo(this.staticptr++, PlWords.hasTag(word, STR)
+                    ? PlWords.getWord(STR, start + PlWords.getValue(word))
+                    : word);
+        }
+        this.interned.put(key, Integer.valueOf(start));
+        return start;
+    }
+
+    @Override
+    public void writeStatic(final IntBuffer words) {
+        if (words.hasRemaining()) {
+            checkStaticArea();
+        }
+        while (words.hasRemaining()) {
+            this.statics.writeTo(this.staticptr++, words.get());
+        }
+    }
+
+    @Override
+    public int readStatic(final int address) {
+        checkStaticArea();
+        if (address < MemoryConstants.MIN_STATIC_INDEX
+                || address >= this.staticptr) {
+            throw new IndexOutOfBoundsException(Integer.toString(address));
+        }
+        return this.statics.readFrom(address);
+    }
+
+    @Override
+    public int getStaticSize() {
+        return this.staticptr;
+    }
+
+    private void checkStaticArea() {
+        if (this.statics == null) {
+            throw new IllegalStateException("No static area");
+        }
+    }
+
     @Override
     public int getConstantPoolIndex(final Object obj) {
-        requireNonNull(obj);
-        int index = this.constants.indexOf(obj);
-        if (index != -1) {
-            return index;
+        final Integer index = this.indices.get(requireNonNull(obj));
+        if (index != null) {
+            return index.intValue();
         }
         this.constants.add(obj);
+        this.indices.put(obj, Integer.valueOf(this.constants.size() - 1));
         return this.constants.size() - 1;
     }
 
     @Override
     public MementoImpl createMemento() {
-        return new MementoImpl(this.codeptr, this.constants.size());
+        return new MementoImpl(this.codeptr, this.staticptr,
+                this.constants.size());
     }
 
     @Override
     public void setMemento(final MementoImpl memento) {
         this.codeptr = memento.codeptr;
-        this.constants.subList(memento.poolSize, this.constants.size()).clear();
+        this.staticptr = memento.staticptr;
+        final List<Object> added = this.constants.subList(memento.poolSize,
+                this.constants.size());
+        for (final Object constant : added) {
+            this.indices.remove(constant);
+        }
+        added.clear();
+        final Iterator<Integer> it = this.interned.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().intValue() >= this.staticptr) {
+                it.remove();
+            }
+        }
     }
 
     /**
@@ -105,11 +271,14 @@ public final class PrologBytecodeImpl implements PrologBytecode<MementoImpl> {
      */
     public static class MementoImpl implements PrologBytecode.Memento {
         private final int codeptr; // allocated heap top
+        private final int staticptr; // allocated static area top
         private final int poolSize; // constant pool size
 
         // Private constructor so only the surrounding class can invoke it
-        private MementoImpl(final int codeptr, final int poolSize) {
+        private MementoImpl(final int codeptr, final int staticptr,
+                final int poolSize) {
             this.codeptr = codeptr;
+            this.staticptr = staticptr;
             this.poolSize = poolSize;
         }
     }
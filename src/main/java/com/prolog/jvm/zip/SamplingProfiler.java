@@ -0,0 +1,276 @@
+package com.prolog.jvm.zip;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.prolog.jvm.main.Factory;
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.PredicateSymbol;
+import com.prolog.jvm.zip.api.PrologBytecode;
+import com.prolog.jvm.zip.api.Sampler;
+import com.prolog.jvm.zip.api.ZipFacade;
+import com.prolog.jvm.zip.api.ZipInterpreter;
+import com.prolog.jvm.zip.util.Instructions;
+
+/**
+ * Statistical profiler for the {@link ZipInterpreter}, periodically sampling
+ * the program counter, the processor mode and the continuation program
+ * counters of the calls in progress. Unlike the {@link PortProfiler}, whose
+ * bookkeeping is done for every port and instruction, the interpreter pays
+ * for little more than reading a volatile flag in between samples, making it
+ * cheap enough to be left enabled on a live server.
+ * <p>
+ * Once {@link #start()}ed, a daemon thread raises the flag at the configured
+ * period, the sample itself being taken by the interpreter's thread in
+ * between instructions. The sampled addresses are mapped to the clauses whose
+ * code contains them, as found from their {@link ClauseSymbol#getHeapptr()}
+ * and code length. Stacks are accumulated in the collapsed format read by
+ * flame graph tools, written by {@link #writeCollapsed(Writer)}: one line per
+ * distinct stack, listing its frames outermost first separated by
+ * semicolons, followed by a space and the number of samples. Each clause is
+ * named by its predicate and 1-based position therein, as in
+ * {@code append/3:2}; code outside any clause, as for the query, is named
+ * {@code <query>}. The innermost frame names the processor mode, separating
+ * the time spent matching clause heads from that spent copying arguments.
+ * Stacks deeper than the configured maximum have their outermost frames
+ * replaced by a single {@code ...}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class SamplingProfiler implements Sampler {
+
+    private static final String QUERY = "<query>";
+    private static final String TRUNCATED = "...";
+
+    private final List<Object> constants;
+    private final PrologBytecode<?> code;
+    private final long period; // in nanoseconds
+    private final int maxDepth;
+
+    // Guarded by itself; counts per collapsed stack
+    private final Map<String,long[]> stacks = new HashMap<>();
+
+    // Confined to the interpreter's thread
+    private final int[] addresses;
+    private final StringBuilder builder = new StringBuilder();
+    private final TreeMap<Integer,Range> ranges = new TreeMap<>();
+    private int indexedPoolSize = -1;
+    private int indexedCodeSize = -1;
+    private long indexedGeneration = -1L;
+
+    private volatile boolean due;
+    private ScheduledExecutorService timer; // null unless started
+
+    /**
+     *
+     * @param constants the constant pool, referring to the predicates whose
+     * clauses are to be profiled; not allowed to be null
+     * @param code the bytecode containing said clauses; not allowed to be null
+     * @param period the sampling period; must be {@code > 0}
+     * @param unit the unit of {@code period}; not allowed to be null
+     * @param maxDepth the maximum number of frames per stack; must be
+     * {@code > 0}
+     * @throws NullPointerException if {@code constants == null || code ==
+     * null || unit == null}
+     * @throws IllegalArgumentException if {@code period <= 0 || maxDepth <= 0}
+     */
+    public SamplingProfiler(final List<Object> constants,
+            final PrologBytecode<?> code, final long period,
+            final TimeUnit unit, final int maxDepth) {
+        if (period <= 0) {
+            throw new IllegalArgumentException(Long.toString(period));
+        }
+        if (maxDepth <= 0) {
+            throw new IllegalArgumentException(Integer.toString(maxDepth));
+        }
+        this.constants = requireNonNull(constants);
+        this.code = requireNonNull(code);
+        this.period = unit.toNanos(period);
+        this.maxDepth = maxDepth;
+        // One address more than needed, for detecting truncation
+        this.addresses = new int[maxDepth + 1];
+    }
+
+    // === Sampling ===
+
+    /**
+     * Starts taking samples, if not started already.
+     */
+    public synchronized void start() {
+        if (this.timer != null) {
+            return;
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread result = new Thread(r,
+                                "prolog-sampler");
+                        result.setDaemon(true);
+                        return result;
+                    }
+                });
+        this.timer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                SamplingProfiler.this.due = true;
+            }
+        }, this.period, this.period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops taking samples, keeping those taken so far.
+     */
+    public synchronized void stop() {
+        if (this.timer != null) {
+            this.timer.shutdownNow();
+            this.timer = null;
+        }
+        this.due = false;
+    }
+
+    @Override
+    public boolean isDue() {
+        return this.due;
+    }
+
+    @Override
+    public void sample(final ZipFacade facade) {
+        this.due = false;
+        final int n = facade.getContinuations(this.addresses);
+        final int depth = Math.min(n, this.maxDepth);
+        updateIndex();
+
+        this.builder.setLength(0);
+        if (n > this.maxDepth) {
+            this.builder.append(TRUNCATED).append(';');
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            this.builder.append(getFrameName(this.addresses[i])).append(';');
+        }
+        this.builder.append(Instructions.modeToString(facade.getMode()));
+
+        final String stack = this.builder.toString();
+        synchronized (this.stacks) {
+            final long[] count = this.stacks.get(stack);
+            if (count == null) {
+                this.stacks.put(stack, new long[] { 1L });
+            } else {
+                count[0]++;
+            }
+        }
+    }
+
+    private String getFrameName(final int address) {
+        final Map.Entry<Integer,Range> entry = this.ranges.floorEntry(
+                Integer.valueOf(address));
+        if (entry == null || address >= entry.getValue().end) {
+            return QUERY;
+        }
+        return entry.getValue().name;
+    }
+
+    /*
+     * Rebuilds the clause code ranges if clauses may have been added or
+     * removed since they were last built.
+     */
+    private void updateIndex() {
+        final int poolSize = this.constants.size();
+        final int codeSize = this.code.getCodeSize();
+        final long generation = Factory.getDatabase().getGeneration();
+        if (poolSize == this.indexedPoolSize
+                && codeSize == this.indexedCodeSize
+                && generation == this.indexedGeneration) {
+            return;
+        }
+        this.ranges.clear();
+        for (final Object constant : this.constants) {
+            if (!(constant instanceof PredicateSymbol)) {
+                continue;
+            }
+            int index = 1;
+            for (ClauseSymbol clause = ((PredicateSymbol) constant)
+                    .getFirst(); clause != null; clause = clause.getNext()) {
+                final int start = clause.getHeapptr();
+                this.ranges.put(Integer.valueOf(start), new Range(
+                        constant + ":" + index++,
+                        start + this.code.getClauseLength(start)));
+            }
+        }
+        this.indexedPoolSize = poolSize;
+        this.indexedCodeSize = codeSize;
+        this.indexedGeneration = generation;
+    }
+
+    // === Reporting ===
+
+    /**
+     * Returns the number of samples taken so far.
+     */
+    public long getSampleCount() {
+        long result = 0L;
+        synchronized (this.stacks) {
+            for (final long[] count : this.stacks.values()) {
+                result += count[0];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Discards the samples taken so far.
+     */
+    public void reset() {
+        synchronized (this.stacks) {
+            this.stacks.clear();
+        }
+    }
+
+    /**
+     * Writes the samples taken so far to {@code out} in collapsed stack
+     * format, one stack per line in lexicographical order.
+     *
+     * @throws IOException
+     * @throws NullPointerException if {@code out == null}
+     */
+    public void writeCollapsed(final Writer out) throws IOException {
+        requireNonNull(out);
+        final Map<String,Long> snapshot = new TreeMap<>();
+        synchronized (this.stacks) {
+            for (final Map.Entry<String,long[]> entry : this.stacks
+                    .entrySet()) {
+                snapshot.put(entry.getKey(),
+                        Long.valueOf(entry.getValue()[0]));
+            }
+        }
+        for (final Map.Entry<String,Long> entry : snapshot.entrySet()) {
+            out.append(entry.getKey()).append(' ')
+                    .append(entry.getValue().toString()).append('\n');
+        }
+        out.flush();
+    }
+
+    // === Nested classes ===
+
+    // The code of a clause, ranging from its heapptr up to (excluding) end
+    private static final class Range {
+        private final String name;
+        private final int end;
+
+        private Range(final String name, final int end) {
+            this.name = name;
+            this.end = end;
+        }
+    }
+}
@@ -5,11 +5,13 @@ import static com.prolog.jvm.zip.util.Instructions.COPY;
 import static com.prolog.jvm.zip.util.Instructions.MATCH;
 import static com.prolog.jvm.zip.util.MemoryConstants.MAX_HEAP_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MAX_LOCAL_INDEX;
+import static com.prolog.jvm.zip.util.MemoryConstants.MAX_STATIC_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_GLOBAL_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_HEAP_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_LOCAL_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_PDL_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_SCRATCHPAD_INDEX;
+import static com.prolog.jvm.zip.util.MemoryConstants.MIN_STATIC_INDEX;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_TRAIL_INDEX;
 import static com.prolog.jvm.zip.util.PlWords.CONS;
 import static com.prolog.jvm.zip.util.PlWords.FUNC;
@@ -19,12 +21,17 @@ import static com.prolog.jvm.zip.util.PlWords.STR;
 import static com.prolog.jvm.zip.util.PlWords.getWord;
 import static java.util.Objects.requireNonNull;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.prolog.jvm.exceptions.BacktrackException;
 import com.prolog.jvm.symbol.ClauseSymbol;
 import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.zip.api.Gauge;
 import com.prolog.jvm.zip.api.MemoryArea;
 import com.prolog.jvm.zip.api.ZipFacade;
 import com.prolog.jvm.zip.util.Instructions;
@@ -70,6 +77,22 @@ public class ZipFacadeImpl implements ZipFacade {
     private int pdlptr;                     // Push-Down List top
     private int scratchpadptr;              // Scratchpad top
 
+    // Hash-consing
+    private boolean hashConsing;            // As of the next reset
+    private boolean consing;
+    private final Map<IntBuffer,Integer> consed = new HashMap<>();
+    private final List<IntBuffer> conslog = new ArrayList<>(); // In order
+    private final BitSet shared = new BitSet(); // Addresses of consed terms
+
+    // Monitoring
+    private int choicepnts;                 // Number of choice points
+    private int globalmax;                  // High-water marks
+    private int localmax;
+    private int trailmax;
+    private int pdlmax;
+    private int scratchpadmax;
+    private int choicepntmax;
+
     /**
      * Constructor. Note no null checks are done on any of the supplied
      * parameters. Instead, the state of the constructed object is validated by
@@ -82,7 +105,7 @@ public class ZipFacadeImpl implements ZipFacade {
      * @param globalStack the memory area used for the global stack
      * @param localStack the memory area used for the local stack
      * @param wordStore the combined memory areas for the global and local
-     * stacks
+     * stacks, as well as the static area following them
      * @param trailStack the memory area used for the trail stack
      * @param pdl the memory area used for the Push-Down List
      * @param scratchpad the memory area used for the scratchpad
@@ -153,6 +176,7 @@ public class ZipFacadeImpl implements ZipFacade {
         if (queryAddr < MIN_HEAP_INDEX || queryAddr > MAX_HEAP_INDEX) {
             throw new IndexOutOfBoundsException();
         }
+        markStacks(); // before they are emptied
         this.mode = MATCH;
         this.programctr = queryAddr;
         this.targetfrm = null;
@@ -162,10 +186,20 @@ public class ZipFacadeImpl implements ZipFacade {
         this.choicepnt = null;
         this.pdlptr = MIN_PDL_INDEX;
         this.scratchpadptr = MIN_SCRATCHPAD_INDEX;
+        this.choicepnts = 0;
+        this.consing = this.hashConsing;
+        this.consed.clear();
+        this.conslog.clear();
+        this.shared.clear();
 
         pushTargetFrame();
     }
 
+    @Override
+    public final void setHashConsing(final boolean enabled) {
+        this.hashConsing = enabled;
+    }
+
     // === Machine mode ===
 
     @Override
@@ -176,6 +210,11 @@ public class ZipFacadeImpl implements ZipFacade {
         this.mode = mode;
     }
 
+    @Override
+    public final int getMode() {
+        return this.mode;
+    }
+
     // === Constant pool ===
 
     @Override
@@ -213,27 +252,28 @@ public class ZipFacadeImpl implements ZipFacade {
         if (!isVariable) {
             return result;
         }
-        int m = this.mode;
-        while (true) {
-            switch (m) {
-            case MATCH: {
-                return result + this.targetfrm.localptr;
-            }
-            case ARG: {
-                return result + this.sourcefrm.localptr;
-            }
-            case COPY: {
-                m = this.scratchpad.readFrom(MIN_SCRATCHPAD_INDEX + 1);
-                if (m != COPY) {
-                    continue;
-                } // Else, fall-through
-            }
-            default:
-                throw new IllegalStateException(Instructions.modeToString(m));
-            }
+        final int m = this.mode == COPY ? getCopiedMode() : this.mode;
+        switch (m) {
+        case MATCH:
+            return result + this.targetfrm.localptr;
+        case ARG:
+            return result + this.sourcefrm.localptr;
+        default:
+            throw new IllegalStateException(Instructions.modeToString(m));
         }
     }
 
+    /*
+     * Returns the mode from which COPY mode was entered. Since a LASTFUNCTOR
+     * need not leave an entry on the scratchpad, this is instead determined
+     * from the target frame: while matching a clause head, it was jumped to
+     * (setting its continuation program counter), whereas while processing a
+     * goal, it was freshly pushed.
+     */
+    private int getCopiedMode() {
+        return this.targetfrm.programctr != 0 ? MATCH : ARG;
+    }
+
     @Override
     public final int jump(final int address) {
         // API sacrifices preconditions for performance, so use asserts instead
@@ -250,6 +290,26 @@ public class ZipFacadeImpl implements ZipFacade {
         return this.programctr;
     }
 
+    @Override
+    public final int getContinuations(final int[] addresses) {
+        int n = 0;
+        if (n < addresses.length) {
+            addresses[n++] = this.programctr;
+        }
+        final int m = this.mode == COPY ? getCopiedMode() : this.mode;
+        // Whilst matching a clause head, the target frame holds the return
+        // address into the caller's body
+        if (m == MATCH && this.sourcefrm != null && n < addresses.length) {
+            addresses[n++] = this.targetfrm.programctr;
+        }
+        for (ActivationRecord frame = this.sourcefrm; frame != null
+                && frame.sourcefrm != null && n < addresses.length;
+                frame = frame.sourcefrm) {
+            addresses[n++] = frame.programctr;
+        }
+        return n;
+    }
+
     // === Global stack ===
 
     @Override
@@ -282,6 +342,92 @@ public class ZipFacadeImpl implements ZipFacade {
         this.wordStore.writeTo(address, word);
     }
 
+    @Override
+    public final void shareTerm(final int address) {
+        // API sacrifices preconditions for performance, so use asserts instead
+        assert address >= MIN_GLOBAL_INDEX && address <= MAX_STATIC_INDEX;
+
+        if (!this.consing) {
+            return;
+        }
+        final int cell = deref(address);
+        final int word = this.wordStore.readFrom(cell);
+        assert PlWords.getTag(word) == STR;
+        final int start = PlWords.getValue(word);
+        final int result = share(start, start);
+        if (result != start) {
+            // The structures pushed since start are referred to by none other
+            this.wordStore.writeTo(cell, getWord(STR, result));
+            markStacks(); // before it is cut back
+            this.globalptr = start;
+        }
+    }
+
+    /*
+     * Shares the structure at the specified address after doing so for its
+     * arguments pushed since fresh, returning the address of the structurally
+     * identical one consed before, if any, or of the structure itself if it
+     * was consed in turn or was not ground. Arguments count as ground only if
+     * they are constants or consed (or static) structures, such that their
+     * words can be compared as is.
+     */
+    private int share(final int address, final int fresh) {
+        final int functor = this.wordStore.readFrom(address);
+        final int arity = getConstant(PlWords.getValue(functor),
+                FunctorSymbol.class).getArity();
+        final int[] words = new int[1 + arity];
+        words[0] = functor;
+        boolean ground = true;
+        for (int i = 1; i <= arity; i++) {
+            int arg = this.wordStore.readFrom(address + i);
+            switch (PlWords.getTag(arg)) {
+            case CONS:
+                break;
+            case STR: {
+                int sub = PlWords.getValue(arg);
+                if (sub >= fresh && sub < this.globalptr) {
+                    final int result = share(sub, fresh);
+                    if (result != sub) {
+                        sub = result;
+                        arg = getWord(STR, sub);
+                        this.wordStore.writeTo(address + i, arg);
+                    }
+                }
+                ground &= isShared(sub);
+                break;
+            }
+            default:
+                ground = false;
+            }
+            words[i] = arg;
+        }
+        if (!ground) {
+            return address;
+        }
+        final IntBuffer key = IntBuffer.wrap(words);
+        final Integer previous = this.consed.get(key);
+        if (previous != null) {
+            return previous.intValue();
+        }
+        this.consed.put(key, Integer.valueOf(address));
+        this.conslog.add(key);
+        this.shared.set(address - MIN_GLOBAL_INDEX);
+        return address;
+    }
+
+    private boolean isShared(final int address) {
+        return (address >= MIN_STATIC_INDEX && address <= MAX_STATIC_INDEX)
+                || this.shared.get(address - MIN_GLOBAL_INDEX);
+    }
+
+    // Forgets the structures consed since the log was at the specified size
+    private void unwindConsLog(final int size) {
+        for (int i = this.conslog.size() - 1; i >= size; i--) {
+            final Integer address = this.consed.remove(this.conslog.remove(i));
+            this.shared.clear(address.intValue() - MIN_GLOBAL_INDEX);
+        }
+    }
+
     // === Local stack ===
 
     @Override
@@ -297,9 +443,17 @@ public class ZipFacadeImpl implements ZipFacade {
             }
         }
         this.targetfrm = new ActivationRecord(address);
+        if (address > this.localmax) {
+            this.localmax = address;
+        }
         return address;
     }
 
+    @Override
+    public final int getTargetFrame() {
+        return this.targetfrm.localptr;
+    }
+
     @Override
     public final void popTargetFrame(final int size) {
         // API sacrifices preconditions for performance, so use asserts instead
@@ -308,6 +462,7 @@ public class ZipFacadeImpl implements ZipFacade {
         // Note this target frame might be a choice point
         this.targetfrm.size = size;
         this.targetfrm.sourcefrm = this.sourcefrm;
+        markFrame(this.targetfrm);
 
         // Set the program counter
         this.programctr = this.targetfrm.programctr;
@@ -317,15 +472,49 @@ public class ZipFacadeImpl implements ZipFacade {
     }
 
     @Override
-    public final void pushChoicePoint(final ClauseSymbol clause) {
+    public final void pushChoicePoint(final ClauseSymbol clause,
+            final long generation, final int key) {
         // API sacrifices preconditions for performance, so use asserts instead
         assert clause != null;
 
         this.targetfrm.clause = clause;
+        this.targetfrm.generation = generation;
+        this.targetfrm.key = key;
+        this.targetfrm.row = 0;
         this.targetfrm.globalptr = this.globalptr;
         this.targetfrm.trailptr = this.trailptr;
+        this.targetfrm.consptr = this.conslog.size();
         this.targetfrm.backtrackfrm = this.choicepnt;
         this.choicepnt = this.targetfrm;
+        if (++this.choicepnts > this.choicepntmax) {
+            this.choicepntmax = this.choicepnts;
+        }
+    }
+
+    @Override
+    public final ClauseSymbol getChoicePointClause() {
+        return this.choicepnt == null ? null : this.choicepnt.clause;
+    }
+
+    @Override
+    public final int getChoicePointRow() {
+        // API sacrifices preconditions for performance, so use asserts instead
+        assert this.choicepnt != null;
+
+        return this.choicepnt.row;
+    }
+
+    @Override
+    public final void setChoicePointRow(final int row) {
+        // API sacrifices preconditions for performance, so use asserts instead
+        assert this.choicepnt != null;
+        assert this.choicepnt.clause.getFacts() != null;
+
+        if (row >= 0) {
+            this.choicepnt.row = row;
+        } else {
+            advanceChoicePoint();
+        }
     }
 
     @Override
@@ -336,6 +525,7 @@ public class ZipFacadeImpl implements ZipFacade {
         this.targetfrm.size = size;
         this.targetfrm.sourcefrm = this.sourcefrm; // Can be null!
         this.sourcefrm = this.targetfrm;
+        markFrame(this.targetfrm);
     }
 
     @Override
@@ -355,10 +545,13 @@ public class ZipFacadeImpl implements ZipFacade {
     public final void pushOnScratchpad(final int address) {
         // API sacrifices preconditions for performance, so use asserts instead
         assert address >= MIN_GLOBAL_INDEX;
-        assert address <= MAX_LOCAL_INDEX;
+        assert address <= MAX_STATIC_INDEX;
 
         this.scratchpad.writeTo(this.scratchpadptr++, address); // push
         this.scratchpad.writeTo(this.scratchpadptr++, this.mode); // push
+        if (this.scratchpadptr > this.scratchpadmax) {
+            this.scratchpadmax = this.scratchpadptr;
+        }
     }
 
     @Override
@@ -400,7 +593,7 @@ public class ZipFacadeImpl implements ZipFacade {
     // === Dereferencing, binding and unification ===
 
     private int deref(final int address) {
-        assert address >= MIN_GLOBAL_INDEX && address <= MAX_LOCAL_INDEX;
+        assert address >= MIN_GLOBAL_INDEX && address <= MAX_STATIC_INDEX;
         final int word = this.wordStore.readFrom(address);
         final int tag = PlWords.getTag(word);
         final int value = PlWords.getValue(word);
@@ -410,7 +603,7 @@ public class ZipFacadeImpl implements ZipFacade {
     @Override
     public final int getWordAt(final int address) {
         // API sacrifices preconditions for performance, so use asserts instead
-        assert address >= MIN_GLOBAL_INDEX && address <= MAX_LOCAL_INDEX;
+        assert address >= MIN_GLOBAL_INDEX && address <= MAX_STATIC_INDEX;
 
         return this.wordStore.readFrom(deref(address));
     }
@@ -427,8 +620,8 @@ public class ZipFacadeImpl implements ZipFacade {
     @Override
     public final int bind(int address1, int address2) {
         // API sacrifices preconditions for performance, so use asserts instead
-        assert address1 >= MIN_GLOBAL_INDEX && address1 <= MAX_LOCAL_INDEX;
-        assert address2 >= MIN_GLOBAL_INDEX && address2 <= MAX_LOCAL_INDEX;
+        assert address1 >= MIN_GLOBAL_INDEX && address1 <= MAX_STATIC_INDEX;
+        assert address2 >= MIN_GLOBAL_INDEX && address2 <= MAX_STATIC_INDEX;
 
         address1 = deref(address1);
         address2 = deref(address2);
@@ -452,12 +645,13 @@ public class ZipFacadeImpl implements ZipFacade {
     @Override
     public final List<Integer> unifiable(final int a1, final int a2) {
         // API sacrifices preconditions for performance, so use asserts instead
-        assert a1 >= MIN_GLOBAL_INDEX && a1 <= MAX_LOCAL_INDEX;
-        assert a2 >= MIN_GLOBAL_INDEX && a2 <= MAX_LOCAL_INDEX;
+        assert a1 >= MIN_GLOBAL_INDEX && a1 <= MAX_STATIC_INDEX;
+        assert a2 >= MIN_GLOBAL_INDEX && a2 <= MAX_STATIC_INDEX;
 
         final List<Integer> bindings = new ArrayList<>();
         this.pdl.writeTo(this.pdlptr++, a1); // push
         this.pdl.writeTo(this.pdlptr++, a2); // push
+        markPdl();
         while (this.pdlptr != getMinPdlIndex()) {
             final int d1 = deref(this.pdl.readFrom(--this.pdlptr)); // pop
             final int d2 = deref(this.pdl.readFrom(--this.pdlptr)); // pop
@@ -478,28 +672,32 @@ public class ZipFacadeImpl implements ZipFacade {
             }
             case CONS: {
                 if (t1 != CONS || v1 != v2) {
-                    return null;
+                    return clearPdl();
                 }
                 continue;
             }
             case LIS: {
                 if (t1 != LIS) {
-                    return null;
+                    return clearPdl();
                 }
                 this.pdl.writeTo(this.pdlptr++, v1); // push
                 this.pdl.writeTo(this.pdlptr++, v2); // push
                 this.pdl.writeTo(this.pdlptr++, v1 + 1); // push
                 this.pdl.writeTo(this.pdlptr++, v2 + 1); // push
+                markPdl();
                 continue;
             }
             case STR: {
                 if (t1 != STR) {
-                    return null;
+                    return clearPdl();
+                }
+                if (v1 == v2) {
+                    continue; // Shared, as by hash-consing
                 }
                 final int f1 = PlWords.getValue(this.wordStore.readFrom(v1));
                 final int f2 = PlWords.getValue(this.wordStore.readFrom(v2));
                 if (f1 != f2) {
-                    return null;
+                    return clearPdl();
                 }
                 final int arity = getConstant(f1, FunctorSymbol.class)
                         .getArity();
@@ -507,6 +705,7 @@ public class ZipFacadeImpl implements ZipFacade {
                     this.pdl.writeTo(this.pdlptr++, v1 + i); // push
                     this.pdl.writeTo(this.pdlptr++, v2 + i); // push
                 }
+                markPdl();
                 continue;
             }
             default:
@@ -516,6 +715,12 @@ public class ZipFacadeImpl implements ZipFacade {
         return bindings;
     }
 
+    // Discards the pairs a failed unification left on the Push-Down List
+    private List<Integer> clearPdl() {
+        this.pdlptr = getMinPdlIndex();
+        return null;
+    }
+
     // === Backtracking ===
 
     @Override
@@ -527,33 +732,142 @@ public class ZipFacadeImpl implements ZipFacade {
 
         // No choice point means nowhere to backtrack to
         if (this.choicepnt == null) {
-            throw new BacktrackException();
+            throw BacktrackException.INSTANCE;
         }
 
-        // Restore machine state and unwind the trail
+        // Restore machine state and unwind the trail, discarding the
+        // scratchpad entries left by a failure in the midst of a structure
         this.mode = MATCH;
+        this.scratchpadptr = MIN_SCRATCHPAD_INDEX;
         this.programctr = this.choicepnt.clause.getHeapptr();
         if (this.choicepnt.sourcefrm != null) { // choicepnt != targetfrm
             this.sourcefrm = this.choicepnt.sourcefrm;
             this.targetfrm = this.choicepnt;
         }
+        markStacks(); // before they are cut back
         unwindTrail(this.choicepnt.trailptr, this.trailptr, vars);
+        unwindConsLog(this.choicepnt.consptr);
         this.globalptr = this.choicepnt.globalptr;
         this.trailptr = this.choicepnt.trailptr;
 
-        // See if there's a next clause alternative
-        final ClauseSymbol next = this.choicepnt.clause.getNext();
+        // A table of facts may have rows left to match, so is only advanced
+        // upon the interpreter finding out it does not
+        if (this.choicepnt.clause.getFacts() == null) {
+            advanceChoicePoint();
+        }
+
+        // Return the local stack frame address for the target frame
+        return this.targetfrm.localptr;
+    }
+
+    // Advances the current choice point to the next clause alternative
+    private void advanceChoicePoint() {
+        // See if there's a next clause alternative matching the call
+        final ClauseSymbol next = ClauseSymbol.firstMatching(
+                this.choicepnt.clause.getNext(), this.choicepnt.generation,
+                this.choicepnt.key);
         // If so, record it in the current choice point
         if (next != null) {
             this.choicepnt.clause = next;
+            this.choicepnt.row = 0;
         }
         // Otherwise, pop the current choice point
         else {
             this.choicepnt = this.choicepnt.backtrackfrm; // Can be null!
+            this.choicepnts--;
         }
+    }
 
-        // Return the local stack frame address for the target frame
-        return this.targetfrm.localptr;
+    // === Monitoring ===
+
+    @Override
+    public final int getGauge(final Gauge gauge) {
+        switch (gauge) {
+        case GLOBAL_STACK:
+            return this.globalptr;
+        case LOCAL_STACK:
+            return getLocalTop();
+        case TRAIL:
+            return this.trailptr;
+        case PDL:
+            return this.pdlptr;
+        case SCRATCHPAD:
+            return this.scratchpadptr;
+        case CHOICE_POINTS:
+            return this.choicepnts;
+        default:
+            throw new AssertionError(gauge);
+        }
+    }
+
+    @Override
+    public final int getHighWaterMark(final Gauge gauge) {
+        final int current = getGauge(gauge);
+        switch (gauge) {
+        case GLOBAL_STACK:
+            return Math.max(this.globalmax, current);
+        case LOCAL_STACK:
+            return Math.max(this.localmax, current);
+        case TRAIL:
+            return Math.max(this.trailmax, current);
+        case PDL:
+            return Math.max(this.pdlmax, current);
+        case SCRATCHPAD:
+            return Math.max(this.scratchpadmax, current);
+        case CHOICE_POINTS:
+            return Math.max(this.choicepntmax, current);
+        default:
+            throw new AssertionError(gauge);
+        }
+    }
+
+    @Override
+    public final void resetHighWaterMarks() {
+        this.globalmax = this.globalptr;
+        this.localmax = getLocalTop();
+        this.trailmax = this.trailptr;
+        this.pdlmax = this.pdlptr;
+        this.scratchpadmax = this.scratchpadptr;
+        this.choicepntmax = this.choicepnts;
+    }
+
+    /*
+     * Since the global stack and the trail only ever shrink upon backtracking
+     * or a reset, their high-water marks are updated only then, keeping the
+     * cost out of pushFunctor and trail.
+     */
+    private void markStacks() {
+        if (this.globalptr > this.globalmax) {
+            this.globalmax = this.globalptr;
+        }
+        if (this.trailptr > this.trailmax) {
+            this.trailmax = this.trailptr;
+        }
+    }
+
+    private void markFrame(final ActivationRecord frame) {
+        if (frame.localptr + frame.size > this.localmax) {
+            this.localmax = frame.localptr + frame.size;
+        }
+    }
+
+    private void markPdl() {
+        if (this.pdlptr > this.pdlmax) {
+            this.pdlmax = this.pdlptr;
+        }
+    }
+
+    // Returns the address just past the topmost frame on the local stack
+    private int getLocalTop() {
+        // Read each register once, as they may be updated concurrently
+        int result = MIN_LOCAL_INDEX;
+        for (final ActivationRecord frame : new ActivationRecord[] {
+                this.targetfrm, this.sourcefrm, this.choicepnt }) {
+            if (frame != null) {
+                result = Math.max(result, frame.localptr + frame.size);
+            }
+        }
+        return result;
     }
 
     // Activation records are like stack frames, additionally holding machine
@@ -566,9 +880,13 @@ public class ZipFacadeImpl implements ZipFacade {
         private int programctr;             // Continuation program counter (CP)
         private ActivationRecord sourcefrm;     // Continuation local frame (CL)
         private ClauseSymbol clause;            // Backtrack clause pointer (BP)
+        private long generation;             // Generation of the call made
+        private int key;               // First argument index key of the call
+        private int row;               // Row of BP's table of facts to resume
         private int globalptr;                // Backtrack global stack top (BG)
         private ActivationRecord backtrackfrm;     // Backtrack local frame (BL)
         private int trailptr;                        // Backtrack trail top (BT)
+        private int consptr;                      // Backtrack cons log top
         private final int localptr;               // Memory offset for var slots
 
         // Creates and initializes a target frame
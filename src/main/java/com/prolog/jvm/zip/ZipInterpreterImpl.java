@@ -6,15 +6,19 @@ import static com.prolog.jvm.zip.util.Instructions.CONSTANT;
 import static com.prolog.jvm.zip.util.Instructions.COPY;
 import static com.prolog.jvm.zip.util.Instructions.ENTER;
 import static com.prolog.jvm.zip.util.Instructions.EXIT;
+import static com.prolog.jvm.zip.util.Instructions.FACTS;
 import static com.prolog.jvm.zip.util.Instructions.FIRSTVAR;
 import static com.prolog.jvm.zip.util.Instructions.FUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.GROUND;
+import static com.prolog.jvm.zip.util.Instructions.LASTFUNCTOR;
 import static com.prolog.jvm.zip.util.Instructions.MATCH;
 import static com.prolog.jvm.zip.util.Instructions.POP;
 import static com.prolog.jvm.zip.util.Instructions.RETURN;
 import static com.prolog.jvm.zip.util.Instructions.VAR;
+import static com.prolog.jvm.zip.util.Instructions.VOID;
+import static com.prolog.jvm.zip.util.Instructions.VOIDFUNCTOR;
 import static com.prolog.jvm.zip.util.MemoryConstants.MIN_LOCAL_INDEX;
 import static com.prolog.jvm.zip.util.PlWords.CONS;
-import static com.prolog.jvm.zip.util.PlWords.FUNC;
 import static com.prolog.jvm.zip.util.PlWords.REF;
 import static com.prolog.jvm.zip.util.PlWords.STR;
 import static com.prolog.jvm.zip.util.PlWords.getWord;
@@ -27,22 +31,26 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import com.prolog.jvm.exceptions.BacktrackException;
 import com.prolog.jvm.main.Factory;
 import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.FactTable;
 import com.prolog.jvm.symbol.FunctorSymbol;
 import com.prolog.jvm.symbol.PredicateSymbol;
 import com.prolog.jvm.symbol.Symbol;
+import com.prolog.jvm.zip.api.CompiledHead;
+import com.prolog.jvm.zip.api.PortListener;
+import com.prolog.jvm.zip.api.QueryArguments;
+import com.prolog.jvm.zip.api.Sampler;
 import com.prolog.jvm.zip.api.StepEvent;
 import com.prolog.jvm.zip.api.StepListener;
 import com.prolog.jvm.zip.api.ZipFacade;
 import com.prolog.jvm.zip.api.ZipInterpreter;
+import com.prolog.jvm.zip.api.ZipMetricsMXBean;
 import com.prolog.jvm.zip.util.Instructions;
 import com.prolog.jvm.zip.util.PlWords;
 
@@ -71,18 +79,53 @@ import com.prolog.jvm.zip.util.PlWords;
  */
 public final class ZipInterpreterImpl implements ZipInterpreter {
 
+    // Default number of calls after which a predicate's heads are compiled
+    private static final int COMPILE_THRESHOLD = 100;
+
     private final ZipFacade facade;
     private StepEventImpl event;
     private final Set<StepListener> listeners;
+    private final Set<PortListener> portListeners;
+    private PortTracker tracker; // null unless port listeners are registered
+    private volatile Sampler sampler;
+    private final ZipMetrics metrics;
+    private final AnswerWriter answers;
+    private final boolean indexing;
+    private volatile int compileThreshold = COMPILE_THRESHOLD;
+
+    // The cell bound to the outermost term being copied in COPY mode
+    private int copied;
+
+    // Buffer for the keys of a call matched against a table of facts
+    private int[] keys = new int[0];
 
     /**
+     * Creates an interpreter that indexes clauses on their first argument.
      *
      * @param facade a facade for the ZIP's internals; not allowed to be null
      */
     public ZipInterpreterImpl(final ZipFacade facade) {
+        this(facade, true);
+    }
+
+    /**
+     *
+     * @param facade a facade for the ZIP's internals; not allowed to be null
+     * @param indexing whether to index clauses on their first argument. If
+     * so, a call only tries the clause alternatives whose
+     * {@link ClauseSymbol#getKey() key} matches the principal functor of its
+     * first argument, pushing a choice point only if more than one of them
+     * does. Otherwise, all alternatives are tried in turn, as for comparing
+     * the performance of both.
+     */
+    public ZipInterpreterImpl(final ZipFacade facade, final boolean indexing) {
         this.facade = requireNonNull(facade);
+        this.indexing = indexing;
         this.event = new StepEventImpl();
         this.listeners = new HashSet<>();
+        this.portListeners = new HashSet<>();
+        this.metrics = new ZipMetrics(facade);
+        this.answers = new AnswerWriter(facade);
     }
 
     // === Listener registration API ===
@@ -97,30 +140,99 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
         this.listeners.remove(requireNonNull(listener));
     }
 
+    @Override
+    public void register(final PortListener listener) {
+        this.portListeners.add(requireNonNull(listener));
+    }
+
+    @Override
+    public void unregister(final PortListener listener) {
+        this.portListeners.remove(requireNonNull(listener));
+    }
+
+    @Override
+    public void setSampler(final Sampler sampler) {
+        this.sampler = sampler;
+    }
+
+    @Override
+    public void setMaxAnswerDepth(final int maxDepth) {
+        this.answers.setMaxDepth(maxDepth);
+    }
+
+    @Override
+    public void setCompileThreshold(final int calls) {
+        if (calls < 0) {
+            throw new IllegalArgumentException(Integer.toString(calls));
+        }
+        this.compileThreshold = calls;
+    }
+
+    @Override
+    public void setHashConsing(final boolean enabled) {
+        this.facade.setHashConsing(enabled);
+    }
+
+    // === Monitoring ===
+
+    @Override
+    public ZipMetricsMXBean getMetrics() {
+        return this.metrics;
+    }
+
     // === Fetch/Decode/Execute ===
 
     @Override
     public void execute(final int queryAddr, final BufferedReader in,
             final Writer out) throws Exception {
         this.facade.reset(queryAddr); // initialize the ZIP machine
+        run(in, out);
+    }
+
+    @Override
+    public void execute(final int queryAddr, final QueryArguments arguments,
+            final BufferedReader in, final Writer out) throws Exception {
+        requireNonNull(arguments);
+        this.facade.reset(queryAddr); // initialize the ZIP machine
+        arguments.writeTo(this.facade); // initialize the query variables
+        run(in, out);
+    }
+
+    private void run(final BufferedReader in, final Writer out)
+            throws Exception {
+        final long start = System.nanoTime();
         int stackAddr = MIN_LOCAL_INDEX;
+        final Sampler sampler = this.sampler; // read once per query
+        // Keep the clauses visible to the query from being reclaimed
+        final long generation = Factory.getDatabase().pin();
+        this.answers.setQueryVars(Factory.getQueryVars());
+        this.tracker = this.portListeners.isEmpty() ? null : new PortTracker(
+                this.portListeners.toArray(new PortListener[0]));
         try {
             while ((stackAddr = step(stackAddr, in, out)) >= 0) {
                 // Notify listeners
                 for (final StepListener listener : this.listeners) {
                     listener.handleEvent(this.event);
                 }
+                if (sampler != null && sampler.isDue()) {
+                    sampler.sample(this.facade);
+                }
                 // Reset event
                 this.event = new StepEventImpl();
             }
         } catch (final BacktrackException e) {
             out.write(FAILURE);
+        } finally {
+            this.tracker = null;
+            Factory.getDatabase().unpin(generation);
+            this.metrics.queryCompleted(System.nanoTime() - start);
         }
     }
 
     private int step(final int stackAddr, final BufferedReader in,
             final Writer out) throws IOException, BacktrackException {
         final int operator = this.facade.fetchOperator();
+        this.metrics.instructionExecuted();
 
         this.event.stackAddress = stackAddr;
         this.event.codeAddress = this.facade.getProgramCounter();
@@ -129,29 +241,63 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
 
         switch (operator) {
         case MATCH | FUNCTOR:
-            return matchFunctor(stackAddr, fetchFunctorOperand());
+            return matchFunctor(true, stackAddr, fetchFunctorOperand());
+        case MATCH | LASTFUNCTOR:
+            return matchFunctor(false, stackAddr, fetchFunctorOperand());
+        case MATCH | VOIDFUNCTOR:
+            return matchVoidFunctor(stackAddr, fetchFunctorOperand());
         case MATCH | CONSTANT:
             return matchConstant(stackAddr, fetchFunctorOperand());
         case MATCH | FIRSTVAR:
             return matchVariable(true, stackAddr, fetchVarOperand());
         case MATCH | VAR:
             return matchVariable(false, stackAddr, fetchVarOperand());
+        case MATCH | GROUND:
+            // Matched like a variable bound to the static term
+            return matchVariable(false, stackAddr, fetchStaticOperand());
+        case MATCH | VOID:
+            // Fall-through
+        case COPY | VOID:
+            // Arguments pushed in COPY mode are unbound already
+            return stackAddr + fetchSizeOperand();
+        case ARG | VOID:
+            return argVoid(stackAddr, fetchSizeOperand());
+        case COPY | ENTER: // after a LASTFUNCTOR
+            this.facade.shareTerm(this.copied);
+            return enterClause(fetchSizeOperand());
         case MATCH | ENTER:
             return enterClause(fetchSizeOperand());
+        case COPY | RETURN: // after a LASTFUNCTOR
+            this.facade.shareTerm(this.copied);
+            return exitUnitClause(fetchSizeOperand());
         case MATCH | RETURN:
             return exitUnitClause(fetchSizeOperand());
+        case MATCH | FACTS:
+            return matchFacts(stackAddr, fetchSizeOperand());
         case MATCH | POP:
-            // Fall-through
-        case COPY | POP:
             return this.facade.popFromScratchpad();
+        case COPY | POP:
+            return popCopied();
         case COPY | FUNCTOR:
             // Fall-through
         case ARG | FUNCTOR:
-            return argFunctor(stackAddr, fetchFunctorOperand());
+            return argFunctor(true, stackAddr, fetchFunctorOperand());
+        case COPY | LASTFUNCTOR:
+            // Fall-through
+        case ARG | LASTFUNCTOR:
+            return argFunctor(false, stackAddr, fetchFunctorOperand());
+        case COPY | VOIDFUNCTOR:
+            // Fall-through
+        case ARG | VOIDFUNCTOR:
+            return argVoidFunctor(stackAddr, fetchFunctorOperand());
         case COPY | CONSTANT:
             // Fall-through
         case ARG | CONSTANT:
             return copyConstant(stackAddr, fetchFunctorOperand());
+        case COPY | GROUND:
+            // Fall-through
+        case ARG | GROUND:
+            return copyGround(stackAddr, fetchStaticOperand());
         case COPY | FIRSTVAR:
             return copyVariable(true, stackAddr, fetchVarOperand());
         case COPY | VAR:
@@ -160,6 +306,9 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
             return argVariable(true, stackAddr, fetchVarOperand());
         case ARG | VAR:
             return argVariable(false, stackAddr, fetchVarOperand());
+        case COPY | CALL: // after a LASTFUNCTOR
+            this.facade.shareTerm(this.copied);
+            return callPredicate(fetchPredicateOperand());
         case ARG | CALL:
             return callPredicate(fetchPredicateOperand());
         case ARG | EXIT: {
@@ -172,14 +321,14 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
 
     // === Convenience methods for reading operands from code memory ===
 
-    // operand for FUNCTOR and CONSTANT
+    // operand for FUNCTOR, VOIDFUNCTOR, LASTFUNCTOR and CONSTANT
     private FunctorSymbol fetchFunctorOperand() {
         return fetchSymbolOperand(FunctorSymbol.class);
     }
 
     // operand for CALL
-    private ClauseSymbol fetchPredicateOperand() {
-        return fetchSymbolOperand(PredicateSymbol.class).getFirst();
+    private PredicateSymbol fetchPredicateOperand() {
+        return fetchSymbolOperand(PredicateSymbol.class);
     }
 
     // operand for FIRSTVAR and VAR
@@ -187,11 +336,18 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
         return fetchIntOperand(true);
     }
 
-    // operand for ENTER
+    // operand for ENTER, RETURN and VOID
     private int fetchSizeOperand() {
         return fetchIntOperand(false);
     }
 
+    // operand for GROUND
+    private int fetchStaticOperand() {
+        final int address = this.facade.fetchOperand(false);
+        this.event.operand = Integer.toHexString(address);
+        return address;
+    }
+
     private <T extends Symbol> T fetchSymbolOperand(final Class<T> clazz) {
         final int index = this.facade.fetchOperand(false);
         final T symbol = this.facade.getConstant(index, clazz);
@@ -208,8 +364,9 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
 
     // === Instruction implementations ===
 
-    private int matchFunctor(final int stackAddr, final FunctorSymbol symbol)
-            throws BacktrackException {
+    // If not push, the stack address and mode are restored by an outer POP
+    private int matchFunctor(final boolean push, final int stackAddr,
+            final FunctorSymbol symbol) throws BacktrackException {
         final int word = this.facade.getWordAt(stackAddr);
         switch (PlWords.getTag(word)) {
         case REF: {
@@ -218,7 +375,10 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
             final int functor = this.facade.pushFunctor(symbol);
             this.facade.setWord(address, functor);
             this.event.bindings.add(address);
-            this.facade.pushOnScratchpad(stackAddr + 1);
+            if (push) {
+                this.facade.pushOnScratchpad(stackAddr + 1);
+            }
+            this.copied = address;
             this.facade.setMode(COPY);
             return PlWords.getValue(functor) + 1;
         }
@@ -227,14 +387,42 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
             final int index = PlWords.getValue(this.facade
                     .getWordAt(globalAddr));
             if (symbol != this.facade.getConstant(index, FunctorSymbol.class)) {
-                return this.facade.backtrack(this.event.bindings);
+                return backtrack();
+            }
+            if (push) {
+                this.facade.pushOnScratchpad(stackAddr + 1);
             }
-            this.facade.pushOnScratchpad(stackAddr + 1);
             return globalAddr + 1;
         }
         default:
-            return this.facade.backtrack(this.event.bindings);
+            return backtrack();
+        }
+    }
+
+    // The arguments being void, there is nothing to match them against
+    private int matchVoidFunctor(final int stackAddr,
+            final FunctorSymbol symbol) throws BacktrackException {
+        final int word = this.facade.getWordAt(stackAddr);
+        switch (PlWords.getTag(word)) {
+        case REF: {
+            final int address = PlWords.getValue(word);
+            this.facade.trail(address);
+            this.facade.setWord(address, this.facade.pushFunctor(symbol));
+            this.event.bindings.add(address);
+            break;
+        }
+        case STR: {
+            final int index = PlWords.getValue(this.facade.getWordAt(
+                    PlWords.getValue(word)));
+            if (symbol != this.facade.getConstant(index, FunctorSymbol.class)) {
+                return backtrack();
+            }
+            break;
+        }
+        default:
+            return backtrack();
         }
+        return stackAddr + 1;
     }
 
     private int matchConstant(final int stackAddr, final FunctorSymbol symbol)
@@ -251,12 +439,12 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
         case CONS: {
             final int index = PlWords.getValue(word);
             if (symbol != this.facade.getConstant(index, FunctorSymbol.class)) {
-                return this.facade.backtrack(this.event.bindings);
+                return backtrack();
             }
             break;
         }
         default:
-            return this.facade.backtrack(this.event.bindings);
+            return backtrack();
         }
         return stackAddr + 1;
     }
@@ -268,7 +456,7 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
             this.facade.setWord(localAddr, this.facade.getWordAt(addr));
             this.event.bindings.add(localAddr);
         } else if ((unifier = this.facade.unifiable(localAddr, addr)) == null) {
-            return this.facade.backtrack(this.event.bindings);
+            return backtrack();
         } else {
             this.event.bindings.addAll(unifier);
         }
@@ -281,6 +469,13 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
         return addr + 1;
     }
 
+    // Static terms are shared rather than copied, being never bound
+    private int copyGround(final int addr, final int staticAddr) {
+        this.facade.setWord(addr, this.facade.getWordAt(staticAddr));
+        this.event.bindings.add(addr);
+        return addr + 1;
+    }
+
     private int argVariable(final boolean firstOccurrence, final int addr,
             final int localAddr) {
         int word = 0;
@@ -295,6 +490,15 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
         return addr + 1;
     }
 
+    // Initializes the arguments as unbound variables, not referenced elsewhere
+    private int argVoid(final int addr, final int count) {
+        for (int i = addr; i < addr + count; i++) {
+            this.facade.setWord(i, getWord(REF, i));
+            this.event.bindings.add(i);
+        }
+        return addr + count;
+    }
+
     private int copyVariable(final boolean firstOccurrence,
             final int globalAddr, final int localAddr) {
         if (firstOccurrence) {
@@ -306,15 +510,39 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
         return globalAddr + 1;
     }
 
-    private int argFunctor(final int stackAddr, final FunctorSymbol symbol) {
+    // If not push, the stack address and mode are restored by an outer POP
+    private int argFunctor(final boolean push, final int stackAddr,
+            final FunctorSymbol symbol) {
         final int word = this.facade.pushFunctor(symbol);
         this.facade.setWord(stackAddr, word);
         this.event.bindings.add(stackAddr);
-        this.facade.pushOnScratchpad(stackAddr + 1);
+        if (push) {
+            this.facade.pushOnScratchpad(stackAddr + 1);
+        }
+        if (this.facade.getMode() != COPY) {
+            this.copied = stackAddr;
+        }
         this.facade.setMode(COPY);
         return PlWords.getValue(word) + 1;
     }
 
+    // Completes the outermost term being copied once COPY mode is left
+    private int popCopied() {
+        final int stackAddr = this.facade.popFromScratchpad();
+        if (this.facade.getMode() != COPY) {
+            this.facade.shareTerm(this.copied);
+        }
+        return stackAddr;
+    }
+
+    // pushFunctor already initializes the arguments as unbound variables
+    private int argVoidFunctor(final int stackAddr,
+            final FunctorSymbol symbol) {
+        this.facade.setWord(stackAddr, this.facade.pushFunctor(symbol));
+        this.event.bindings.add(stackAddr);
+        return stackAddr + 1;
+    }
+
     // localAddr contains the local stack frame address for the first local
     // variable cell in the source frame to be pushed
     private int enterClause(final int size) {
@@ -328,26 +556,170 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
         return this.facade.pushTargetFrame();
     }
 
-    private int callPredicate(final ClauseSymbol symbol) {
+    private int callPredicate(final PredicateSymbol symbol)
+            throws BacktrackException {
+        // Only consider the clause alternatives visible at the time of the call
+        // and matching its first argument
+        final long generation = Factory.getDatabase().getGeneration();
+        final int key = this.indexing && symbol.getArity() > 0
+                ? getKey(this.facade.getTargetFrame()) : 0;
+        final ClauseSymbol first = ClauseSymbol.firstMatching(
+                symbol.getFirst(), generation, key);
+        if (first == null) {
+            if (this.tracker != null) {
+                this.tracker.call(symbol, null, generation, key);
+            }
+            return backtrack();
+        }
+
+        // A table of facts always gets a choice point, being left to FACTS to
+        // advance or pop it once no more rows match
+        if (first.getFacts() != null) {
+            if (this.tracker != null) {
+                this.tracker.call(symbol, first, generation, key);
+            }
+            this.facade.pushChoicePoint(first, generation, key);
+            this.facade.setMode(MATCH);
+            return this.facade.jump(first.getHeapptr());
+        }
+
         // Push a choice point if necessary
-        final ClauseSymbol next = symbol.getNext();
+        final ClauseSymbol next = ClauseSymbol.firstMatching(first.getNext(),
+                generation, key);
+        if (this.tracker != null) {
+            this.tracker.call(symbol, next, generation, key);
+        }
         if (next != null) {
-            this.facade.pushChoicePoint(next);
+            this.facade.pushChoicePoint(next, generation, key);
         }
 
         // Set the machine mode and jump to the first clause alternative for
-        // the called predicate
+        // the called predicate, unifying its head right away if compiled
         this.facade.setMode(MATCH);
-        return this.facade.jump(symbol.getHeapptr());
+        final CompiledHead head = getCompiledHead(symbol, first);
+        if (head == null) {
+            return this.facade.jump(first.getHeapptr());
+        }
+        final int frame = this.facade.jump(first.getHeapptr()
+                + head.getLength());
+        return head.unify(this.facade, frame) ? frame : backtrack();
+    }
+
+    /*
+     * Matches the call against the next row of the table of facts of the last
+     * choice point's clause, and completes the latter like RETURN. The choice
+     * point is kept for the row after, if any matches, and is otherwise
+     * advanced to the clause alternatives following the table.
+     */
+    private int matchFacts(final int frame, final int size)
+            throws BacktrackException {
+        final FactTable table = this.facade.getChoicePointClause().getFacts();
+        final int[] keys = getFactKeys(frame, size);
+        final int row = keys == null ? -1
+                : table.find(keys, this.facade.getChoicePointRow());
+        final int next = row < 0 ? -1 : table.find(keys, row + 1);
+        this.facade.setChoicePointRow(next);
+        if (this.tracker != null) {
+            this.tracker.matchedFacts(next);
+        }
+        if (row < 0) {
+            return backtrack();
+        }
+        for (int i = 0; i < size; i++) {
+            final int word = this.facade.getWordAt(frame + i);
+            if (PlWords.getTag(word) == REF) {
+                final int address = PlWords.getValue(word);
+                this.facade.setWord(address, getWord(CONS, table.get(row, i)));
+                this.facade.trail(address);
+                this.event.bindings.add(address);
+            }
+        }
+        return exitUnitClause(size);
+    }
+
+    /*
+     * Returns the keys for matching the arguments in the specified frame
+     * against the rows of a table of facts, or null if one of them is a
+     * compound term, there being no rows to match the latter. The keys are
+     * written to a buffer that is reused across calls, and that may hold
+     * more than size keys.
+     */
+    private int[] getFactKeys(final int frame, final int size) {
+        if (this.keys.length < size) {
+            this.keys = new int[size];
+        }
+        final int[] keys = this.keys;
+        for (int i = 0; i < size; i++) {
+            final int word = this.facade.getWordAt(frame + i);
+            switch (PlWords.getTag(word)) {
+            case CONS:
+                keys[i] = PlWords.getValue(word);
+                break;
+            case REF:
+                // A repeated variable must match the column of its first
+                keys[i] = 0;
+                for (int j = 0; j < i; j++) {
+                    if (this.facade.getWordAt(frame + j) == word) {
+                        keys[i] = -(j + 1);
+                        break;
+                    }
+                }
+                break;
+            default:
+                return null;
+            }
+        }
+        return keys;
+    }
+
+    /*
+     * Counts the call to the specified predicate, returning the compiled head
+     * of the specified clause thereof if the predicate was called often
+     * enough, compiling it if not done so before, or null otherwise.
+     */
+    private CompiledHead getCompiledHead(final PredicateSymbol symbol,
+            final ClauseSymbol clause) {
+        final int threshold = this.compileThreshold;
+        if (symbol.countCall() < threshold || threshold == 0
+                || symbol.getArity() == 0 || !this.listeners.isEmpty()) {
+            return null;
+        }
+        CompiledHead head = clause.getCompiledHead();
+        if (head == null) {
+            head = HeadCompiler.compile(Factory.getBytecode(), this.facade,
+                    clause);
+            clause.setCompiledHead(head);
+        }
+        return head;
+    }
+
+    /*
+     * Returns the constant pool index of the principal functor of the term at
+     * the specified address, or 0 if it is unbound.
+     */
+    private int getKey(final int address) {
+        final int word = this.facade.getWordAt(address);
+        switch (PlWords.getTag(word)) {
+        case CONS:
+            return PlWords.getValue(word);
+        case STR:
+            return PlWords.getValue(this.facade.getWordAt(
+                    PlWords.getValue(word)));
+        default:
+            return 0;
+        }
     }
 
     private int exitClause(final BufferedReader in, final Writer out)
             throws IOException, BacktrackException {
+        if (this.tracker != null) {
+            this.tracker.exit();
+        }
         // If popSourceFrame returns true, we have an answer
         if (this.facade.popSourceFrame()) {
             // If writeAnswer returns true, look for more
             if (writeAnswer(in, out)) {
-                return this.facade.backtrack(this.event.bindings);
+                return backtrack();
             }
             // else, we're done
             out.write(SUCCESS);
@@ -359,89 +731,36 @@ public final class ZipInterpreterImpl implements ZipInterpreter {
     }
 
     private int exitUnitClause(final int size) {
+        if (this.tracker != null) {
+            this.tracker.exit();
+        }
         this.facade.setMode(ARG);
         this.facade.popTargetFrame(size);
         return this.facade.pushTargetFrame();
     }
 
+    private int backtrack() throws BacktrackException {
+        this.metrics.backtracked();
+        if (this.tracker != null) {
+            this.tracker.backtrack();
+        }
+        return this.facade.backtrack(this.event.bindings);
+    }
+
     // == Answers ===
 
     // Returns whether to backtrack and look for more answers
     private boolean writeAnswer(final BufferedReader in, final Writer out)
             throws IOException {
-        Map<Integer,String> qVars = Factory.getQueryVars();
-
         // No query variables means nothing to print and no backtracking to do
-        final Set<Integer> addresses = qVars.keySet();
-        if (addresses.isEmpty()) {
+        if (!this.answers.hasQueryVars()) {
             return false;
         }
-
-        // qVars as returned by Factory is unmodifiable to guarantee that
-        // multiple invocations of this method for printing alternative answers
-        // to the same query are mutually independent. Thus, we should make a
-        // copy here.
-        qVars = new HashMap<>(qVars);
-
-        for (final Integer address : addresses) {
-            out.append(Factory.getQueryVars().get(address)).write(" = ");
-            walkWord(qVars, address.intValue(), out);
-            out.write(' ');
-        }
+        this.answers.write(out);
         out.flush();
         return NEXT_ANSWER.equals(in.readLine());
     }
 
-    private String getVarName(final Map<Integer,String> qVars, final int var) {
-        final Integer address = Integer.valueOf(var);
-        String result = qVars.get(address);
-        if (result == null) {
-            result = "?" + qVars.keySet().size();
-            qVars.put(address, result);
-        }
-        return result;
-    }
-
-    private final void walkWord(final Map<Integer,String> qVars,
-            final int addr, final Writer out) throws IOException {
-        final int word = this.facade.getWordAt(addr);
-        switch (PlWords.getTag(word)) {
-        case REF: {
-            out.write(getVarName(qVars, PlWords.getValue(word)));
-            return;
-        }
-        case STR: {
-            walkWord(qVars, PlWords.getValue(word), out);
-            return;
-        }
-        case FUNC: {
-            int index = PlWords.getValue(word);
-            final FunctorSymbol symbol = this.facade.getConstant(index,
-                    FunctorSymbol.class);
-            assert symbol.getArity() > 0;
-            out.append(symbol.getName()).write('(');
-            for (int i = 1; i <= symbol.getArity(); i++) {
-                walkWord(qVars, addr + i, out);
-                if (i < symbol.getArity()) {
-                    out.write(", ");
-                }
-            }
-            out.write(')');
-            return;
-        }
-        case CONS: {
-            final int index = PlWords.getValue(word);
-            final FunctorSymbol symbol = this.facade.getConstant(index,
-                    FunctorSymbol.class);
-            assert symbol.getArity() == 0;
-            out.write(symbol.getName());
-            return;
-        }
-        default:
-            throw new IllegalArgumentException(PlWords.toString(word));
-        }
-    }
-
     // === Nested classes ===
 
     private static class StepEventImpl implements StepEvent {
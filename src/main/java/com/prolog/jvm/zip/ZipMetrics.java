@@ -0,0 +1,177 @@
+package com.prolog.jvm.zip;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.prolog.jvm.zip.api.Gauge;
+import com.prolog.jvm.zip.api.ZipFacade;
+import com.prolog.jvm.zip.api.ZipMetricsMXBean;
+
+/**
+ * Implementation of {@link ZipMetricsMXBean}, updated by a single
+ * {@link ZipInterpreterImpl} and read by any number of monitoring threads.
+ * Being written by a single thread, the counters are incremented through
+ * {@link AtomicLong#lazySet(long)}, sparing the interpreter the cost of a
+ * memory fence per instruction.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+final class ZipMetrics implements ZipMetricsMXBean {
+
+    // Bucket i counts latencies below 2^i microseconds; the last the rest
+    private static final int BUCKETS = 24;
+
+    private final ZipFacade facade;
+    private final AtomicLong instructions = new AtomicLong();
+    private final AtomicLong backtracks = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+    private volatile long since = System.nanoTime(); // time of last reset
+
+    ZipMetrics(final ZipFacade facade) {
+        this.facade = requireNonNull(facade);
+    }
+
+    // === Updates by the interpreter ===
+
+    void instructionExecuted() {
+        this.instructions.lazySet(this.instructions.get() + 1L);
+    }
+
+    void backtracked() {
+        this.backtracks.lazySet(this.backtracks.get() + 1L);
+    }
+
+    void queryCompleted(final long nanos) {
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        final int bucket = Math.min(BUCKETS - 1,
+                Long.SIZE - Long.numberOfLeadingZeros(micros));
+        this.latencies.lazySet(bucket, this.latencies.get(bucket) + 1L);
+        this.queries.lazySet(this.queries.get() + 1L);
+    }
+
+    // === Gauges ===
+
+    @Override
+    public int getGlobalStackTop() {
+        return this.facade.getGauge(Gauge.GLOBAL_STACK);
+    }
+
+    @Override
+    public int getGlobalStackHighWaterMark() {
+        return this.facade.getHighWaterMark(Gauge.GLOBAL_STACK);
+    }
+
+    @Override
+    public int getLocalStackTop() {
+        return this.facade.getGauge(Gauge.LOCAL_STACK);
+    }
+
+    @Override
+    public int getLocalStackHighWaterMark() {
+        return this.facade.getHighWaterMark(Gauge.LOCAL_STACK);
+    }
+
+    @Override
+    public int getTrailTop() {
+        return this.facade.getGauge(Gauge.TRAIL);
+    }
+
+    @Override
+    public int getTrailHighWaterMark() {
+        return this.facade.getHighWaterMark(Gauge.TRAIL);
+    }
+
+    @Override
+    public int getPdlTop() {
+        return this.facade.getGauge(Gauge.PDL);
+    }
+
+    @Override
+    public int getPdlHighWaterMark() {
+        return this.facade.getHighWaterMark(Gauge.PDL);
+    }
+
+    @Override
+    public int getScratchpadTop() {
+        return this.facade.getGauge(Gauge.SCRATCHPAD);
+    }
+
+    @Override
+    public int getScratchpadHighWaterMark() {
+        return this.facade.getHighWaterMark(Gauge.SCRATCHPAD);
+    }
+
+    @Override
+    public int getChoicePointDepth() {
+        return this.facade.getGauge(Gauge.CHOICE_POINTS);
+    }
+
+    @Override
+    public int getChoicePointHighWaterMark() {
+        return this.facade.getHighWaterMark(Gauge.CHOICE_POINTS);
+    }
+
+    // === Counters ===
+
+    @Override
+    public long getInstructions() {
+        return this.instructions.get();
+    }
+
+    @Override
+    public long getBacktracks() {
+        return this.backtracks.get();
+    }
+
+    @Override
+    public long getQueries() {
+        return this.queries.get();
+    }
+
+    @Override
+    public double getQueriesPerSecond() {
+        final long elapsed = System.nanoTime() - this.since;
+        return elapsed <= 0L ? 0.0 : this.queries.get()
+                / (elapsed / (double) TimeUnit.SECONDS.toNanos(1L));
+    }
+
+    @Override
+    public long[] getLatencyBucketBounds() {
+        final long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            result[i] = 1L << i;
+        }
+        result[BUCKETS - 1] = Long.MAX_VALUE;
+        return result;
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        final long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = this.latencies.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc} Since the counters are owned by the interpreter's thread,
+     * updates made concurrently with a reset may be lost or survive it.
+     */
+    @Override
+    public void reset() {
+        this.instructions.set(0L);
+        this.backtracks.set(0L);
+        this.queries.set(0L);
+        for (int i = 0; i < BUCKETS; i++) {
+            this.latencies.set(i, 0L);
+        }
+        this.facade.resetHighWaterMarks();
+        this.since = System.nanoTime();
+    }
+}
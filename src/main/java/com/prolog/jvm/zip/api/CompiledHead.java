@@ -0,0 +1,36 @@
+package com.prolog.jvm.zip.api;
+
+import com.prolog.jvm.symbol.ClauseSymbol;
+
+/**
+ * The head literal of a clause, translated from its bytecode into a form that
+ * unifies it with the arguments of a call without dispatching on each of its
+ * instructions. The {@link ZipInterpreter} obtains such translations only for
+ * the clauses of predicates that are called frequently, attaching them to
+ * their {@link ClauseSymbol}s.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public interface CompiledHead {
+
+    /**
+     * Returns the number of code words taken up by the head literal's
+     * bytecode, being the offset from the clause's heap address of the
+     * {@code ENTER} or {@code RETURN} instruction following it.
+     */
+    int getLength();
+
+    /**
+     * Unifies the head literal with the arguments of a call, found in the
+     * first cells of the target frame, binding and trailing variables as the
+     * interpreted bytecode would have done.
+     *
+     * @param facade the machine to unify on; not allowed to be null
+     * @param frame the local stack address of the target frame
+     * @return whether unification succeeded; if not, any bindings made are
+     * to be undone by backtracking
+     */
+    boolean unify(ZipFacade facade, int frame);
+
+}
@@ -0,0 +1,42 @@
+package com.prolog.jvm.zip.api;
+
+/**
+ * The quantities of the ZIP machine's state that can be monitored through
+ * {@link ZipFacade#getGauge(Gauge)}, mainly for sizing its memory areas.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public enum Gauge {
+
+    /**
+     * The global stack top (G0).
+     */
+    GLOBAL_STACK,
+
+    /**
+     * The address just past the topmost frame on the local stack.
+     */
+    LOCAL_STACK,
+
+    /**
+     * The trail top (TR0).
+     */
+    TRAIL,
+
+    /**
+     * The Push-Down List top.
+     */
+    PDL,
+
+    /**
+     * The scratchpad top.
+     */
+    SCRATCHPAD,
+
+    /**
+     * The number of choice points on the local stack.
+     */
+    CHOICE_POINTS;
+
+}
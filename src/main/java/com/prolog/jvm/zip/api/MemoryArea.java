@@ -16,6 +16,8 @@ import com.prolog.jvm.zip.util.PlWords;
  * The following areas are assumed:
  * <ul>
  * <li>The global stack, used for storing compound terms.
+ * <li>The static area, storing the ground compound terms occurring in a
+ * compiled program once, for them to be shared rather than copied.
  * <li>The local stack, where activation frames are allocated.
  * <li>The trail stack, tracking variable bindings that need to be reset upon
  * backtracking.
@@ -27,11 +29,11 @@ import com.prolog.jvm.zip.util.PlWords;
  * for the compiled queries executed against it. (Note this terminology differs
  * from that of [1], where 'heap' is used as a synonym for the global stack.)
  * </ul>
- * The global and local stacks are to be placed together in the lower memory
- * region, as is necessary to ensure their cells can be addressed by
- * {@link PlWords} whose values are word pointers. Furthermore, Because of the
- * chosen representation of {@link PlWords}, the combined size of the global-
- * and local stacks is constrained by the largest array cell that can be
+ * The global stack, static area and local stack are to be placed together in
+ * the lower memory region, as is necessary to ensure their cells can be
+ * addressed by {@link PlWords} whose values are word pointers. Furthermore,
+ * Because of the chosen representation of {@link PlWords}, the combined size
+ * of these areas is constrained by the largest array cell that can be
  * addressed using a 24-bit unsigned integer.
  * <p>
  * [1] Aït-Kaci, Hassan. "Warren's Abstract Machine A Tutorial Reconstruction."
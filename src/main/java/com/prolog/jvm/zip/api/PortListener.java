@@ -0,0 +1,51 @@
+package com.prolog.jvm.zip.api;
+
+import com.prolog.jvm.symbol.PredicateSymbol;
+
+/**
+ * Callback interface listening for the ports through which the execution of
+ * a query enters and leaves the calls it makes to predicates, after the box
+ * model of Byrd [1]. Each call is entered through its {@code call} port, and
+ * left through either its {@code exit} port upon success or its {@code fail}
+ * port upon failure. A call that exited is re-entered through its
+ * {@code redo} port when backtracking into it, after which it is again left
+ * through either {@code exit} or {@code fail}. Trying a next clause
+ * alternative before a call has exited is internal to its box, and hence
+ * not reported. Calls left open when the execution of a query stops early,
+ * as when no further answers are requested, see no further ports.
+ * <p>
+ * As a consequence, the ports of the calls in progress are always properly
+ * nested, allowing listeners to track the latter on a stack.
+ * <p>
+ * [1] Byrd, Lawrence. "Understanding the control flow of Prolog programs."
+ * Logic Programming Workshop (1980).
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public interface PortListener {
+
+    /**
+     * Called by the {@link ZipInterpreter} when {@code predicate} is called.
+     */
+    void call(PredicateSymbol predicate);
+
+    /**
+     * Called by the {@link ZipInterpreter} when a call to {@code predicate}
+     * succeeds.
+     */
+    void exit(PredicateSymbol predicate);
+
+    /**
+     * Called by the {@link ZipInterpreter} when backtracking into a call to
+     * {@code predicate} that exited before.
+     */
+    void redo(PredicateSymbol predicate);
+
+    /**
+     * Called by the {@link ZipInterpreter} when a call to {@code predicate}
+     * fails.
+     */
+    void fail(PredicateSymbol predicate);
+
+}
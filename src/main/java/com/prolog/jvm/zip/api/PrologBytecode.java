@@ -1,7 +1,10 @@
 package com.prolog.jvm.zip.api;
 
+import java.nio.IntBuffer;
+
 import com.prolog.jvm.zip.util.Instructions;
 import com.prolog.jvm.zip.util.MemoryConstants;
+import com.prolog.jvm.zip.util.PlWords;
 
 /**
  * Representation of a compiled Prolog program and its query, containing their
@@ -21,8 +24,10 @@ public interface PrologBytecode<M extends PrologBytecode.Memento> {
      * Writes an instruction taking a single operand.
      *
      * @param opcode the instruction's opcode; must be one of
-     * {@link Instructions#FUNCTOR}, {@link Instructions#CONSTANT},
+     * {@link Instructions#FUNCTOR}, {@link Instructions#VOIDFUNCTOR},
+     * {@link Instructions#LASTFUNCTOR}, {@link Instructions#CONSTANT},
      * {@link Instructions#VAR}, {@link Instructions#FISTVAR},
+     * {@link Instructions#VOID}, {@link Instructions#GROUND},
      * {@link Instructions#CALL} or {@link Instructions#ENTER}
      * @param operand the instruction's operand
      * @throws IndexOutOfBoundsException if the heap has grown to its maximum
@@ -44,6 +49,18 @@ public interface PrologBytecode<M extends PrologBytecode.Memento> {
      */
     void writeIns(int opcode);
 
+    /**
+     * Writes the remaining words of the specified buffer verbatim, as for
+     * restoring code compiled earlier. Unlike for {@link #writeIns(int, int)},
+     * no attempt is made at validating the opcodes thus written.
+     *
+     * @param words the words to write; not allowed to be null
+     * @throws IndexOutOfBoundsException if the heap has grown to its maximum
+     * size
+     * @throws NullPointerException if {@code words == null}
+     */
+    void writeCode(IntBuffer words);
+
     /**
      * Reads a word from the specified address in the heap.
      *
@@ -58,6 +75,95 @@ public interface PrologBytecode<M extends PrologBytecode.Memento> {
      */
     int getCodeSize();
 
+    /**
+     * Returns the length (measured in 32-bit words) of the code for the
+     * clause starting at the specified address, decoded up to and including
+     * its terminating {@link Instructions#EXIT}, {@link Instructions#RETURN}
+     * or {@link Instructions#FACTS} instruction.
+     *
+     * @param address the address at which the clause's code starts
+     * @throws IndexOutOfBoundsException if the clause's code does not lie
+     * within the heap
+     */
+    int getClauseLength(int address);
+
+    /**
+     * Discards the code words at addresses {@code codeSize} and up, leaving
+     * the constant pool intact.
+     *
+     * @param codeSize the new size of the written bytecode; must be at least
+     * {@link MemoryConstants#MIN_HEAP_INDEX} and at most
+     * {@link #getCodeSize()}
+     * @throws IllegalArgumentException if {@code codeSize} is out of bounds
+     */
+    void setCodeSize(int codeSize);
+
+    /**
+     * Copies {@code length} code words from address {@code from} to address
+     * {@code to}. Since the compiled code for a clause refers to other code
+     * only through the constant pool, this allows for relocating it.
+     *
+     * @param from the address to copy from
+     * @param to the address to copy to
+     * @param length the number of words to copy; must be {@code >= 0}
+     * @throws IndexOutOfBoundsException if any of the source or target
+     * addresses lie outside the written bytecode
+     */
+    void copyCode(int from, int to, int length);
+
+    /**
+     * Returns whether a static area was set up, allowing ground terms to be
+     * stored through {@link #internTerm(int[])}.
+     */
+    boolean hasStaticArea();
+
+    /**
+     * Stores a ground compound term in the static area, unless an identical
+     * one was stored there before, and returns the address of a cell pointing
+     * to it. Terms thus stored are shared by all clauses referring to them,
+     * and are never bound or reclaimed while the program is loaded.
+     *
+     * @param words the words making up the term, starting with a
+     * {@link PlWords#STR} word pointing to its functor; STR words point to
+     * the index within {@code words} of the functor of their subterm; not
+     * allowed to be null
+     * @return the address within the static area of the relocated first word
+     * @throws IllegalStateException if {@code !hasStaticArea()}
+     * @throws IndexOutOfBoundsException if the static area has grown to its
+     * maximum size
+     * @throws NullPointerException if {@code words == null}
+     */
+    int internTerm(int[] words);
+
+    /**
+     * Writes the remaining words of the specified buffer verbatim to the
+     * static area, as for restoring terms stored earlier.
+     *
+     * @param words the words to write; not allowed to be null
+     * @throws IllegalStateException if {@code !hasStaticArea()} while
+     * {@code words} has any remaining
+     * @throws IndexOutOfBoundsException if the static area has grown to its
+     * maximum size
+     * @throws NullPointerException if {@code words == null}
+     */
+    void writeStatic(IntBuffer words);
+
+    /**
+     * Reads a word from the specified address in the static area.
+     *
+     * @param address the address in the static area to read from
+     * @throws IllegalStateException if {@code !hasStaticArea()}
+     * @throws IndexOutOfBoundsException if {@code address} lies outside the
+     * static area
+     */
+    int readStatic(int address);
+
+    /**
+     * Returns the address following the last word written to the static
+     * area, being {@link MemoryConstants#MIN_STATIC_INDEX} while empty.
+     */
+    int getStaticSize();
+
     /**
      * Returns the index for the specified constant pool entry. If not found,
      * the constant is added first.
@@ -0,0 +1,23 @@
+package com.prolog.jvm.zip.api;
+
+/**
+ * Callback interface for initializing the local stack slots of a query's
+ * variables prior to its execution, intended for queries compiled with their
+ * variables treated as parameters.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public interface QueryArguments {
+
+    /**
+     * Called by the {@link ZipInterpreter} after the ZIP machine has been
+     * reset, but before the first instruction of the query is executed.
+     * Implementations are expected to write a word to the local stack slot of
+     * each query variable, using the global stack for any compound terms.
+     *
+     * @param facade the facade for the ZIP machine about to execute the query
+     */
+    void writeTo(ZipFacade facade);
+
+}
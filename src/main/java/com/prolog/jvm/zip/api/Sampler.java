@@ -0,0 +1,29 @@
+package com.prolog.jvm.zip.api;
+
+/**
+ * Callback interface for sampling the state of the ZIP machine at intervals,
+ * as opposed to after each instruction like a {@link StepListener}. In
+ * between executing instructions, the {@link ZipInterpreter} polls
+ * {@link #isDue()}, and if it returns true, takes a sample through
+ * {@link #sample(ZipFacade)} on the executing thread. Implementations should
+ * keep {@link #isDue()} as cheap as reading a volatile flag, set from another
+ * thread whenever the next sample is to be taken.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public interface Sampler {
+
+    /**
+     * Returns whether the next sample is due.
+     */
+    boolean isDue();
+
+    /**
+     * Called by the {@link ZipInterpreter} in between instructions after
+     * {@link #isDue()} returned true, for inspecting (but not modifying) the
+     * machine state through the specified {@code facade}.
+     */
+    void sample(ZipFacade facade);
+
+}
@@ -33,6 +33,13 @@ public interface ZipFacade {
      */
     void reset(int queryAddr);
 
+    /**
+     * Sets whether ground structures are to be shared through
+     * {@link #shareTerm(int)}, taking effect from the next
+     * {@link #reset(int)} onwards. Disabled by default.
+     */
+    void setHashConsing(boolean enabled);
+
     // === Machine mode ===
 
     /**
@@ -43,6 +50,12 @@ public interface ZipFacade {
      */
     void setMode(int mode);
 
+    /**
+     * Returns the machine mode, being one of {@link ProcessorModes#ARG},
+     * {@link ProcessorModes#COPY} or {@link ProcessorModes#MATCH}.
+     */
+    int getMode();
+
     // === Constant pool ===
 
     /**
@@ -90,6 +103,17 @@ public interface ZipFacade {
      */
     int getProgramCounter();
 
+    /**
+     * Writes the PC register to {@code addresses}, followed by the
+     * continuation program counters of the calls in progress, innermost
+     * first, as found by following the chain of continuation frames. Stops
+     * short of the query's own frame, or when {@code addresses} is full.
+     *
+     * @param addresses the array to write to; not allowed to be null
+     * @return the number of addresses written
+     */
+    int getContinuations(int[] addresses);
+
     // === Global stack ===
 
     /**
@@ -100,6 +124,22 @@ public interface ZipFacade {
      */
     int pushFunctor(FunctorSymbol symbol);
 
+    /**
+     * Completes the term the specified {@code address} was bound to, all of
+     * whose structures were pushed on the global stack since, by sharing
+     * those that are ground if hash-consing is enabled. I.e., each such
+     * structure is replaced by a structurally identical one pushed before, if
+     * any, and is otherwise recorded for later ones to be replaced by. If the
+     * term itself is replaced, the global stack is cut back to where it was
+     * before pushing it. Unification of two shared terms then amounts to
+     * comparing their addresses.
+     *
+     * @param address a global- or local stack address holding (a reference
+     * to) an STR-tagged word
+     * @see #setHashConsing(boolean)
+     */
+    void shareTerm(int address);
+
     // === Local stack ===
 
     /**
@@ -108,6 +148,13 @@ public interface ZipFacade {
      */
     int pushTargetFrame();
 
+    /**
+     * Returns the local stack address at which the current target frame has
+     * been allocated, its first cells holding the arguments of the call
+     * about to be made.
+     */
+    int getTargetFrame();
+
     /**
      * Pops the current target frame, bypassing the need for calling
      * {@link #pushSourceFrame(int)} and {@link #popSourceFrame()} in sequence
@@ -124,8 +171,38 @@ public interface ZipFacade {
      * the current machine state.
      *
      * @param clause the backtrack clause pointer
+     * @param generation the generation in which the predicate was called, such
+     * that only the clause alternatives visible therein are backtracked into
+     * @param key the first argument index key of the call, such that only the
+     * clause alternatives matching it are backtracked into, or {@code 0} if
+     * the alternatives are not to be filtered
+     * @see ClauseSymbol#firstMatching(ClauseSymbol, long, int)
+     */
+    void pushChoicePoint(ClauseSymbol clause, long generation, int key);
+
+    /**
+     * Returns the backtrack clause pointer of the last choice point, or null
+     * if there is none.
      */
-    void pushChoicePoint(ClauseSymbol clause);
+    ClauseSymbol getChoicePointClause();
+
+    /**
+     * Returns the row of the {@link ClauseSymbol#getFacts() table of facts}
+     * of the last choice point's backtrack clause at which to resume matching,
+     * being {@code 0} right after the choice point was pushed.
+     */
+    int getChoicePointRow();
+
+    /**
+     * Sets the row of the {@link ClauseSymbol#getFacts() table of facts} of
+     * the last choice point's backtrack clause at which to resume matching
+     * upon backtracking. If negative, as when no rows are left to match, the
+     * choice point is instead advanced to the clause alternatives following
+     * the table like for any other clause, being popped if there are none.
+     *
+     * @param row a row of the table, or a negative number if none
+     */
+    void setChoicePointRow(int row);
 
     /**
      * Sets the last source frame to the current target frame, storing therein
@@ -217,7 +294,10 @@ public interface ZipFacade {
 
     /**
      * Performs backtracking, recording which variables were unbound in
-     * {@code vars}.
+     * {@code vars}. If the backtrack clause of the last choice point stands
+     * for a table of facts, the choice point is left in place for the next
+     * row to be matched, it being up to the caller to advance or pop it
+     * afterwards through {@link #setChoicePointRow(int)}.
      *
      * @param vars a list for storing the addresses of variables that have
      * become unbound during backtracking; must be empty and not allowed to be
@@ -228,4 +308,30 @@ public interface ZipFacade {
      */
     int backtrack(List<Integer> vars) throws BacktrackException;
 
+    // === Monitoring ===
+
+    /**
+     * Returns the current value of the specified {@code gauge}. Being meant
+     * for monitoring, this method may be invoked from a thread other than the
+     * one executing queries, in which case the value returned may be stale.
+     *
+     * @throws NullPointerException if {@code gauge == null}
+     */
+    int getGauge(Gauge gauge);
+
+    /**
+     * Returns the highest value reached by the specified {@code gauge} since
+     * the last invocation of {@link #resetHighWaterMarks()}. Like
+     * {@link #getGauge(Gauge)}, this method may be invoked from another
+     * thread.
+     *
+     * @throws NullPointerException if {@code gauge == null}
+     */
+    int getHighWaterMark(Gauge gauge);
+
+    /**
+     * Resets the high-water marks of all gauges to their current values.
+     */
+    void resetHighWaterMarks();
+
 }
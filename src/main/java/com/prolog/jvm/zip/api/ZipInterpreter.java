@@ -25,6 +25,21 @@ public interface ZipInterpreter {
     void execute(int queryAddress, BufferedReader in, Writer out)
             throws Exception;
 
+    /**
+     * Commences the interpreter's fetch/decode/execute cycle after setting its
+     * program counter to the supplied {@code queryAddress} and letting the
+     * specified {@code arguments} initialize the query's variables.
+     *
+     * @param queryAddress the code memory address for a compiled query
+     * @param arguments the values for the query's variables
+     * @param in the source for reading in user commands
+     * @param out the target for writing the answer to
+     * @throws Exception
+     * @throws NullPointerException if {@code arguments == null}
+     */
+    void execute(int queryAddress, QueryArguments arguments, BufferedReader in,
+            Writer out) throws Exception;
+
     /**
      * Registers the specified {@code listener} to receive notifications for
      * each instruction executed. The order in which listeners are notified is
@@ -42,4 +57,66 @@ public interface ZipInterpreter {
      */
     void unregister(StepListener listener);
 
+    /**
+     * Registers the specified {@code listener} to receive notifications for
+     * each port through which a call to a predicate is entered or left.
+     * Listeners registered during the execution of a query take effect from
+     * the next query onwards.
+     *
+     * @throws NullPointerException if {@code listener == null}
+     */
+    void register(PortListener listener);
+
+    /**
+     * Unregisters the specified {@code listener}.
+     *
+     * @throws NullPointerException if {@code listener == null}
+     */
+    void unregister(PortListener listener);
+
+    /**
+     * Sets the {@link Sampler} to poll in between instructions, replacing any
+     * set before, or pass null for disabling sampling altogether. Like for
+     * port listeners, a sampler set during the execution of a query takes
+     * effect from the next query onwards.
+     */
+    void setSampler(Sampler sampler);
+
+    /**
+     * Sets the nesting depth from which compound terms in answers are elided,
+     * being written as {@code ...} instead. By default, answers are written
+     * in full.
+     *
+     * @throws IllegalArgumentException if {@code maxDepth <= 0}
+     */
+    void setMaxAnswerDepth(int maxDepth);
+
+    /**
+     * Sets the number of calls to a predicate after which the head literals
+     * of its clauses are compiled, unifying them with the arguments of later
+     * calls without interpreting their bytecode instructions one by one.
+     * Compiled heads are bypassed while any {@link StepListener}s are
+     * registered, these expecting to be notified of every instruction. Pass
+     * {@code 0} for disabling compilation altogether.
+     *
+     * @throws IllegalArgumentException if {@code calls < 0}
+     */
+    void setCompileThreshold(int calls);
+
+    /**
+     * Sets whether ground compound terms are hash-consed as they are built on
+     * the global stack, such that structurally identical ones are shared
+     * rather than duplicated. The shared terms are forgotten again upon
+     * backtracking past their construction. Disabled by default. Like for
+     * port listeners, this takes effect from the next query onwards.
+     */
+    void setHashConsing(boolean enabled);
+
+    /**
+     * Returns the live metrics of this interpreter and the machine it runs
+     * on, for registration with a JMX MBean server. Guaranteed to return the
+     * same instance upon each invocation.
+     */
+    ZipMetricsMXBean getMetrics();
+
 }
@@ -0,0 +1,117 @@
+package com.prolog.jvm.zip.api;
+
+import com.prolog.jvm.zip.util.MemoryConstants;
+
+/**
+ * Management interface exposing live metrics of a {@link ZipInterpreter} and
+ * the machine it runs on, for registration with a JMX MBean server. The
+ * stack gauges are given as the raw values of their registers, allowing
+ * comparison against the bounds in {@link MemoryConstants}. High-water
+ * marks and counters accumulate from the last invocation of {@link #reset()}
+ * onwards.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public interface ZipMetricsMXBean {
+
+    /**
+     * Returns the current global stack top.
+     */
+    int getGlobalStackTop();
+
+    /**
+     * Returns the highest global stack top reached.
+     */
+    int getGlobalStackHighWaterMark();
+
+    /**
+     * Returns the address just past the topmost frame on the local stack.
+     */
+    int getLocalStackTop();
+
+    /**
+     * Returns the highest local stack top reached.
+     */
+    int getLocalStackHighWaterMark();
+
+    /**
+     * Returns the current trail top.
+     */
+    int getTrailTop();
+
+    /**
+     * Returns the highest trail top reached.
+     */
+    int getTrailHighWaterMark();
+
+    /**
+     * Returns the current Push-Down List top.
+     */
+    int getPdlTop();
+
+    /**
+     * Returns the highest Push-Down List top reached.
+     */
+    int getPdlHighWaterMark();
+
+    /**
+     * Returns the current scratchpad top.
+     */
+    int getScratchpadTop();
+
+    /**
+     * Returns the highest scratchpad top reached.
+     */
+    int getScratchpadHighWaterMark();
+
+    /**
+     * Returns the number of choice points currently on the local stack.
+     */
+    int getChoicePointDepth();
+
+    /**
+     * Returns the highest number of choice points on the local stack reached.
+     */
+    int getChoicePointHighWaterMark();
+
+    /**
+     * Returns the number of instructions executed.
+     */
+    long getInstructions();
+
+    /**
+     * Returns the number of times the machine backtracked.
+     */
+    long getBacktracks();
+
+    /**
+     * Returns the number of queries whose execution completed.
+     */
+    long getQueries();
+
+    /**
+     * Returns the average number of queries completed per second.
+     */
+    double getQueriesPerSecond();
+
+    /**
+     * Returns the exclusive upper bounds of the buckets of
+     * {@link #getLatencyHistogram()} in microseconds, the last one being
+     * {@link Long#MAX_VALUE}.
+     */
+    long[] getLatencyBucketBounds();
+
+    /**
+     * Returns the number of completed queries per latency bucket, the latter
+     * being bounded by {@link #getLatencyBucketBounds()}. A query's latency
+     * includes the time spent awaiting the requests for its further answers.
+     */
+    long[] getLatencyHistogram();
+
+    /**
+     * Resets all counters, the latency histogram and the high-water marks.
+     */
+    void reset();
+
+}
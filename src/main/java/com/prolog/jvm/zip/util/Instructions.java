@@ -55,6 +55,20 @@ public final class Instructions {
      */
     public static final int FUNCTOR = 9;
 
+    /**
+     * Opcode for unifying a functor of some non-zero arity whose arguments
+     * are all void, fusing a {@link #FUNCTOR} with its {@link #POP}.
+     */
+    public static final int VOIDFUNCTOR = 10;
+
+    /**
+     * Opcode for unifying a functor of some non-zero arity occurring as the
+     * last argument of another term or literal, leaving it to the
+     * {@link #POP} of the former to restore the stack address and processor
+     * mode, or else not restoring them at all.
+     */
+    public static final int LASTFUNCTOR = 8;
+
     /**
      * Opcode for unifying a constant (i.e., a functor of zero arity).
      */
@@ -72,6 +86,19 @@ public final class Instructions {
      */
     public static final int VAR = 4;
 
+    /**
+     * Opcode for skipping a number of consecutive arguments, each of which is
+     * the only occurrence of a variable within some clause.
+     */
+    public static final int VOID = 6;
+
+    /**
+     * Opcode for an argument that is a ground compound term, stored once in
+     * the static area. Its operand is the address of a cell in the latter
+     * holding a pointer to the term.
+     */
+    public static final int GROUND = 7;
+
     /**
      * Opcode for calling a predicate.
      */
@@ -92,6 +119,13 @@ public final class Instructions {
      */
     public static final int EXIT = 25;
 
+    /**
+     * Opcode making up the code of a clause that stands for a table of
+     * facts, matching the call against the next row thereof and completing
+     * the clause like a {@link #RETURN}.
+     */
+    public static final int FACTS = 14;
+
     // === String representations ===
 
     /**
@@ -116,13 +150,18 @@ public final class Instructions {
         final Map<Integer,String> map = new HashMap<>();
         map.put(Integer.valueOf(POP), "POP");
         map.put(Integer.valueOf(FUNCTOR), "FUNCTOR");
+        map.put(Integer.valueOf(VOIDFUNCTOR), "VOIDFUNCTOR");
+        map.put(Integer.valueOf(LASTFUNCTOR), "LASTFUNCTOR");
         map.put(Integer.valueOf(CONSTANT), "CONSTANT");
         map.put(Integer.valueOf(FIRSTVAR), "FIRSTVAR");
         map.put(Integer.valueOf(VAR), "VAR");
+        map.put(Integer.valueOf(VOID), "VOID");
+        map.put(Integer.valueOf(GROUND), "GROUND");
         map.put(Integer.valueOf(CALL), "CALL");
         map.put(Integer.valueOf(ENTER), "ENTER");
         map.put(Integer.valueOf(RETURN), "RETURN");
         map.put(Integer.valueOf(EXIT), "EXIT");
+        map.put(Integer.valueOf(FACTS), "FACTS");
         MNEMONICS = Collections.unmodifiableMap(map);
     }
 
@@ -151,6 +190,35 @@ public final class Instructions {
         return modeToString(getMode(operator));
     }
 
+    /**
+     * Returns the number of operands following the specified {@code opcode}
+     * in code memory.
+     *
+     * @throws IllegalArgumentException if {@code opcode} is unknown
+     */
+    public static int getOperandCount(final int opcode) {
+        switch (opcode) {
+        case POP:
+        case EXIT:
+            return 0;
+        case FUNCTOR:
+        case VOIDFUNCTOR:
+        case LASTFUNCTOR:
+        case CONSTANT:
+        case FIRSTVAR:
+        case VAR:
+        case VOID:
+        case GROUND:
+        case CALL:
+        case ENTER:
+        case RETURN:
+        case FACTS:
+            return 1;
+        default:
+            throw new IllegalArgumentException(opcodeToString(opcode));
+        }
+    }
+
     /**
      * Returns the lower 6 bits of {@code operator}, comprising the opcode.
      */
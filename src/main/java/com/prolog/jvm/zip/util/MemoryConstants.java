@@ -17,7 +17,7 @@ public final class MemoryConstants {
     /**
      * The total number of words that can be allocated in virtual memory.
      */
-    public static final int MEMORY_SIZE = 25000512;
+    public static final int MEMORY_SIZE = 25777728;
 
     /**
      * The smallest address in virtual memory for use by the global stack.
@@ -39,15 +39,28 @@ public final class MemoryConstants {
      */
     public static final int MAX_LOCAL_INDEX = 15999999;
 
+    /**
+     * The smallest address in virtual memory for use by the static area,
+     * holding the ground terms occurring in compiled clauses.
+     */
+    public static final int MIN_STATIC_INDEX = MAX_LOCAL_INDEX + 1;
+
+    /**
+     * The largest address in virtual memory for use by the static area, being
+     * the largest value of a word (spanning 24 bits) and thereby the largest
+     * address that a word can refer to.
+     */
+    public static final int MAX_STATIC_INDEX = 16777215;
+
     /**
      * The smallest address in virtual memory for use by the trail.
      */
-    public static final int MIN_TRAIL_INDEX = MAX_LOCAL_INDEX + 1;
+    public static final int MIN_TRAIL_INDEX = MAX_STATIC_INDEX + 1;
 
     /**
      * The largest address in virtual memory for use by the trail.
      */
-    public static final int MAX_TRAIL_INDEX = 23999999;
+    public static final int MAX_TRAIL_INDEX = 24777215;
 
     /**
      * The smallest address in virtual memory for use by the PDL (Push-Down
@@ -59,7 +72,7 @@ public final class MemoryConstants {
      * The largest address in virtual memory for use by the PDL (Push-Down
      * List).
      */
-    public static final int MAX_PDL_INDEX = 24000255;
+    public static final int MAX_PDL_INDEX = 24777471;
 
     /**
      * The smallest address in virtual memory for use by the scratchpad area.
@@ -69,7 +82,7 @@ public final class MemoryConstants {
     /**
      * The largest address in virtual memory for use by the scratchpad area.
      */
-    public static final int MAX_SCRATCHPAD_INDEX = 24000511;
+    public static final int MAX_SCRATCHPAD_INDEX = 24777727;
 
     /**
      * The smallest address in virtual memory for use by the heap.
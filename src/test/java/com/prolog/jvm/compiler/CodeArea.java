@@ -0,0 +1,46 @@
+package com.prolog.jvm.compiler;
+
+import com.prolog.jvm.zip.api.MemoryArea;
+import com.prolog.jvm.zip.util.MemoryConstants;
+
+/**
+ * Code memory starting at {@link MemoryConstants#MIN_HEAP_INDEX} (or at a
+ * base address of choice), used for inspecting the bytecode written by
+ * compilers under test.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+final class CodeArea implements MemoryArea {
+
+    private static final int CODE_SIZE = 4096;
+
+    private final int[] words = new int[CODE_SIZE];
+    private final int base;
+
+    CodeArea() {
+        this(MemoryConstants.MIN_HEAP_INDEX);
+    }
+
+    CodeArea(final int base) {
+        this.base = base;
+    }
+
+    @Override
+    public int readFrom(final int address) {
+        return this.words[address - this.base];
+    }
+
+    @Override
+    public void writeTo(final int address, final int value) {
+        this.words[address - this.base] = value;
+    }
+
+    // Returns the words written up to (but excluding) the specified address
+    int[] getWords(final int codeptr) {
+        final int size = codeptr - this.base;
+        final int[] result = new int[size];
+        System.arraycopy(this.words, 0, result, 0, size);
+        return result;
+    }
+}
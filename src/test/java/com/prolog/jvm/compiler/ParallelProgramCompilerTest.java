@@ -0,0 +1,122 @@
+package com.prolog.jvm.compiler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.prolog.jvm.exceptions.InternalCompilerException;
+import com.prolog.jvm.exceptions.RecognitionException;
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.Scope;
+import com.prolog.jvm.symbol.SymbolKeys;
+import com.prolog.jvm.zip.PrologBytecodeImpl;
+
+/**
+ * Test class for {@link ParallelProgramCompiler}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class ParallelProgramCompilerTest {
+
+    // Clauses for p/1 and q/0 are spread over multiple files
+    private static final String[] SOURCES = {
+        "p(a). q :- p(X), r(X).",
+        "r(b). p(b).",
+        "s(X) :- p(X). p(c). q.",
+        "r(a)."
+    };
+
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    @Test
+    public void sameAsConcatenation() throws Exception {
+        final StringBuilder concatenation = new StringBuilder();
+        for (final String source : SOURCES) {
+            concatenation.append(source).append('\n');
+        }
+
+        // Sequential compilation of the concatenated sources
+        final List<Object> expectedPool = new ArrayList<>();
+        final CodeArea expectedArea = new CodeArea();
+        final PrologBytecodeImpl expectedCode = new PrologBytecodeImpl(
+                expectedPool, expectedArea);
+        final Scope expectedScope = Scope.newRootInstance();
+        try (final Reader reader = new StringReader(concatenation.toString())) {
+            new ProgramCompiler(expectedCode, expectedScope).compile(reader);
+        }
+
+        // Parallel compilation of the separate sources
+        final List<Object> actualPool = new ArrayList<>();
+        final CodeArea actualArea = new CodeArea();
+        final PrologBytecodeImpl actualCode = new PrologBytecodeImpl(
+                actualPool, actualArea);
+        final Scope actualScope = Scope.newRootInstance();
+        new ParallelProgramCompiler(actualCode, actualScope, POOL)
+                .compile(writeFiles(SOURCES));
+
+        assertArrayEquals(expectedArea.getWords(expectedCode.getCodeSize()),
+                actualArea.getWords(actualCode.getCodeSize()));
+        assertEquals(expectedPool.toString(), actualPool.toString());
+        assertClauses(expectedScope, actualScope, "p", 1);
+        assertClauses(expectedScope, actualScope, "q", 0);
+        assertClauses(expectedScope, actualScope, "r", 1);
+        assertClauses(expectedScope, actualScope, "s", 1);
+    }
+
+    @Test(expected = InternalCompilerException.class)
+    public void undefinedPredicate() throws Exception {
+        compile("p :- q.", "r.");
+    }
+
+    @Test(expected = RecognitionException.class)
+    public void syntaxError() throws Exception {
+        compile("p.", "q :- .");
+    }
+
+    private static void compile(final String... sources) throws Exception {
+        final PrologBytecodeImpl code = new PrologBytecodeImpl(
+                new ArrayList<Object>(), new CodeArea());
+        new ParallelProgramCompiler(code, Scope.newRootInstance(), POOL)
+                .compile(writeFiles(sources));
+    }
+
+    // Compares the addresses of the clause alternatives for a predicate
+    private static void assertClauses(final Scope expected,
+            final Scope actual, final String name, final int arity) {
+        ClauseSymbol e = expected.resolveLocal(SymbolKeys.ofPredicate(name,
+                arity)).getFirst();
+        ClauseSymbol a = actual.resolveLocal(SymbolKeys.ofPredicate(name,
+                arity)).getFirst();
+        while (e != null) {
+            assertEquals(e.getHeapptr(), a.getHeapptr());
+            e = e.getNext();
+            a = a.getNext();
+        }
+        assertNull(a);
+    }
+
+    private static List<Path> writeFiles(final String... sources)
+            throws IOException {
+        final List<Path> files = new ArrayList<>();
+        for (final String source : sources) {
+            final Path file = Files.createTempFile("consult", ".pl");
+            file.toFile().deleteOnExit();
+            Files.write(file, source.getBytes(Charset.defaultCharset()));
+            files.add(file);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,125 @@
+package com.prolog.jvm.compiler;
+
+import static com.prolog.jvm.zip.util.Instructions.CALL;
+import static com.prolog.jvm.zip.util.Instructions.CONSTANT;
+import static com.prolog.jvm.zip.util.Instructions.ENTER;
+import static com.prolog.jvm.zip.util.Instructions.EXIT;
+import static com.prolog.jvm.zip.util.Instructions.FIRSTVAR;
+import static com.prolog.jvm.zip.util.Instructions.FUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.LASTFUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.POP;
+import static com.prolog.jvm.zip.util.Instructions.RETURN;
+import static com.prolog.jvm.zip.util.Instructions.VAR;
+import static com.prolog.jvm.zip.util.Instructions.VOIDFUNCTOR;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.prolog.jvm.main.Factory;
+import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.symbol.Scope;
+import com.prolog.jvm.zip.PrologBytecodeImpl;
+
+/**
+ * Test class for {@link PeepholeOptimizer}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class PeepholeOptimizerTest {
+
+    private static final String PROGRAM =
+            "p(f(X,g(Y,Z)),h(W,V)) :- q(c(a,c(b,nil)),X). q(A,B).";
+
+    private final List<Object> pool = new ArrayList<>();
+    private final List<String> reports = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        Factory.getPeepholeOptimizer().setListener(
+                new PeepholeOptimizer.Listener() {
+                    @Override
+                    public void clauseOptimized(final FunctorSymbol head,
+                            final int address, final int before,
+                            final int after) {
+                        PeepholeOptimizerTest.this.reports.add(head + " "
+                                + before + " " + after);
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        Factory.getPeepholeOptimizer().setListener(null);
+        Factory.getPeepholeOptimizer().setEnabled(true);
+    }
+
+    @Test
+    public void superinstructions() throws Exception {
+        final int[] words = compile(PROGRAM);
+        final int f = indexOf("f/2");
+        final int g = indexOf("g/2");
+        final int h = indexOf("h/2");
+        final int c = indexOf("c/2");
+        final int a = indexOf("a/0");
+        final int b = indexOf("b/0");
+        final int nil = indexOf("nil/0");
+        final int q = indexOf("q/2");
+        assertArrayEquals(new int[] {
+                FUNCTOR, f, FIRSTVAR, 2, VOIDFUNCTOR, g, POP,
+                VOIDFUNCTOR, h, ENTER, 3,
+                FUNCTOR, c, CONSTANT, a, LASTFUNCTOR, c, CONSTANT, b,
+                CONSTANT, nil, POP, VAR, 2, CALL, q, EXIT,
+                RETURN, 2 }, words);
+        assertEquals(2, this.reports.size());
+        assertEquals("p/2 18 15", this.reports.get(0));
+        assertEquals("q/2 1 1", this.reports.get(1));
+    }
+
+    @Test
+    public void lastArguments() throws Exception {
+        final int[] words = compile("r(X,s(X)) :- r(X,t(X)).");
+        final int s = indexOf("s/1");
+        final int t = indexOf("t/1");
+        final int r = indexOf("r/2");
+        assertArrayEquals(new int[] {
+                FIRSTVAR, 2, LASTFUNCTOR, s, VAR, 2, ENTER, 3,
+                VAR, 2, LASTFUNCTOR, t, VAR, 2, CALL, r, EXIT }, words);
+        assertEquals("r/2 11 9", this.reports.get(0));
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        Factory.getPeepholeOptimizer().setEnabled(false);
+        final int[] words = compile(PROGRAM);
+        assertEquals(FUNCTOR, words[4]);
+        assertEquals(0, this.reports.size());
+    }
+
+    private int[] compile(final String program) throws Exception {
+        final CodeArea area = new CodeArea();
+        final PrologBytecodeImpl code = new PrologBytecodeImpl(this.pool,
+                area);
+        try (final Reader reader = new StringReader(program)) {
+            new ProgramCompiler(code, Scope.newRootInstance()).compile(reader);
+        }
+        return area.getWords(code.getCodeSize());
+    }
+
+    private int indexOf(final String constant) {
+        for (int i = 0; i < this.pool.size(); i++) {
+            if (this.pool.get(i).toString().equals(constant)) {
+                return i;
+            }
+        }
+        throw new AssertionError(constant);
+    }
+}
@@ -0,0 +1,142 @@
+package com.prolog.jvm.compiler;
+
+import static com.prolog.jvm.zip.util.Instructions.CALL;
+import static com.prolog.jvm.zip.util.Instructions.ENTER;
+import static com.prolog.jvm.zip.util.Instructions.EXIT;
+import static com.prolog.jvm.zip.util.Instructions.FIRSTVAR;
+import static com.prolog.jvm.zip.util.Instructions.FUNCTOR;
+import static com.prolog.jvm.zip.util.Instructions.GROUND;
+import static com.prolog.jvm.zip.util.Instructions.POP;
+import static com.prolog.jvm.zip.util.Instructions.RETURN;
+import static com.prolog.jvm.zip.util.Instructions.VAR;
+import static com.prolog.jvm.zip.util.Instructions.VOID;
+import static com.prolog.jvm.zip.util.MemoryConstants.MIN_STATIC_INDEX;
+import static com.prolog.jvm.zip.util.PlWords.CONS;
+import static com.prolog.jvm.zip.util.PlWords.FUNC;
+import static com.prolog.jvm.zip.util.PlWords.STR;
+import static com.prolog.jvm.zip.util.PlWords.getWord;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.prolog.jvm.main.Factory;
+import com.prolog.jvm.symbol.Scope;
+import com.prolog.jvm.zip.PrologBytecodeImpl;
+import com.prolog.jvm.zip.util.MemoryConstants;
+
+/**
+ * Test class for {@link ProgramCompiler}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class ProgramCompilerTest {
+
+    private final List<Object> pool = new ArrayList<>();
+
+    // Test the code as generated, before optimization
+    @Before
+    public void setUp() {
+        Factory.getPeepholeOptimizer().setEnabled(false);
+    }
+
+    @After
+    public void tearDown() {
+        Factory.getPeepholeOptimizer().setEnabled(true);
+    }
+
+    @Test
+    public void voidVariables() throws Exception {
+        // Y, Z, W and V occur only once, and are allocated no slots
+        final int[] words = compile("p(X,Y,Z) :- q(W,V,X). q(A,B,C).");
+        final int q = indexOf("q/3");
+        assertArrayEquals(new int[] {
+                FIRSTVAR, 3, ENTER, 4, VOID, 2, VAR, 3, CALL, q, EXIT,
+                RETURN, 3 }, words);
+    }
+
+    @Test
+    public void voidVariablesInCompounds() throws Exception {
+        // Voids trailing a compound term need not be skipped
+        final int[] words = compile("p(f(X,Y,Z)) :- q(g(Y,A,B)). q(C).");
+        final int f = indexOf("f/3");
+        final int g = indexOf("g/3");
+        final int q = indexOf("q/1");
+        assertArrayEquals(new int[] {
+                FUNCTOR, f, VOID, 1, FIRSTVAR, 1, POP, ENTER, 2,
+                FUNCTOR, g, VAR, 1, POP, CALL, q, EXIT,
+                RETURN, 1 }, words);
+    }
+
+    @Test
+    public void temporaryVariables() throws Exception {
+        // X occurs in the head only, and is allocated past the frame's end
+        final int[] words = compile("p(X,X,Y) :- q(Y). q(A). eq(B,B).");
+        final int q = indexOf("q/1");
+        assertArrayEquals(new int[] {
+                FIRSTVAR, 4, VAR, 4, FIRSTVAR, 3, ENTER, 4,
+                VAR, 3, CALL, q, EXIT,
+                RETURN, 1,
+                FIRSTVAR, 2, VAR, 2, RETURN, 2 }, words);
+    }
+
+    @Test
+    public void groundTerms() throws Exception {
+        // Identical ground terms are stored once, in the static area
+        final CodeArea statics = new CodeArea(MIN_STATIC_INDEX);
+        final PrologBytecodeImpl code = new PrologBytecodeImpl(this.pool,
+                new CodeArea(), statics);
+        final int[] words = compile("p :- q(f(a,g(b))). r :- q(f(a,g(b))). "
+                + "q(f(X,g(b))).", code);
+        final int f = indexOf("f/2");
+        final int g = indexOf("g/1");
+        final int q = indexOf("q/1");
+        assertArrayEquals(new int[] {
+                ENTER, 0, GROUND, MIN_STATIC_INDEX, CALL, q, EXIT,
+                ENTER, 0, GROUND, MIN_STATIC_INDEX, CALL, q, EXIT,
+                FUNCTOR, f, VOID, 1, GROUND, MIN_STATIC_INDEX + 6, POP,
+                RETURN, 1 }, words);
+        assertArrayEquals(new int[] {
+                getWord(STR, MIN_STATIC_INDEX + 1), getWord(FUNC, f),
+                getWord(CONS, indexOf("a/0")),
+                getWord(STR, MIN_STATIC_INDEX + 4), getWord(FUNC, g),
+                getWord(CONS, indexOf("b/0")),
+                getWord(STR, MIN_STATIC_INDEX + 7), getWord(FUNC, g),
+                getWord(CONS, indexOf("b/0")) },
+                statics.getWords(code.getStaticSize()));
+    }
+
+    private int[] compile(final String program) throws Exception {
+        return compile(program, new PrologBytecodeImpl(this.pool,
+                new CodeArea()));
+    }
+
+    private int[] compile(final String program,
+            final PrologBytecodeImpl code) throws Exception {
+        try (final Reader reader = new StringReader(program)) {
+            new ProgramCompiler(code, Scope.newRootInstance()).compile(reader);
+        }
+        final int[] words = new int[code.getCodeSize()
+                - MemoryConstants.MIN_HEAP_INDEX];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = code.read(MemoryConstants.MIN_HEAP_INDEX + i);
+        }
+        return words;
+    }
+
+    private int indexOf(final String constant) {
+        for (int i = 0; i < this.pool.size(); i++) {
+            if (this.pool.get(i).toString().equals(constant)) {
+                return i;
+            }
+        }
+        throw new AssertionError(constant);
+    }
+}
@@ -0,0 +1,54 @@
+package com.prolog.jvm.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.prolog.jvm.symbol.Scope;
+import com.prolog.jvm.symbol.SymbolKey;
+import com.prolog.jvm.symbol.SymbolKeys;
+import com.prolog.jvm.zip.PrologBytecodeImpl;
+
+/**
+ * Test class for {@link QueryCompiler}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class QueryCompilerTest {
+
+    @Test
+    public void overlayScope() throws Exception {
+        final PrologBytecodeImpl code = new PrologBytecodeImpl(
+                new ArrayList<Object>(), new CodeArea());
+        final Scope root = Scope.newRootInstance();
+        try (final Reader reader = new StringReader("p(a). q(X) :- p(X).")) {
+            new ProgramCompiler(code, root).compile(reader);
+        }
+        final Set<SymbolKey<?>> keys = new HashSet<>(root.getKeys());
+
+        // The query's symbols are defined in the overlay only
+        final Scope overlay = Scope.newOverlayInstance(root);
+        try (final Reader reader = new StringReader("q(b), p(a).")) {
+            new QueryCompiler(code, overlay, new HashMap<Integer,String>())
+                    .compile(reader);
+        }
+        assertEquals(keys, root.getKeys());
+        assertNull(root.resolveGlobal(SymbolKeys.ofFunctor("b", 0)));
+        assertNotNull(overlay.resolveGlobal(SymbolKeys.ofFunctor("b", 0)));
+        assertNotNull(overlay.resolveGlobal(SymbolKeys.ofPredicate("p", 1)));
+        for (final SymbolKey<?> key : overlay.getKeys()) {
+            assertNull(root.resolveLocal(key));
+        }
+    }
+
+}
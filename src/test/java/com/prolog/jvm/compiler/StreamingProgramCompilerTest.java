@@ -0,0 +1,106 @@
+package com.prolog.jvm.compiler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.prolog.jvm.exceptions.InternalCompilerException;
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.FunctorSymbol;
+import com.prolog.jvm.symbol.Scope;
+import com.prolog.jvm.symbol.SymbolKeys;
+import com.prolog.jvm.zip.PrologBytecodeImpl;
+
+/**
+ * Test class for {@link StreamingProgramCompiler}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class StreamingProgramCompilerTest {
+
+    // Class-path resource
+    private static final String PROGRAM = "parser/program.pl";
+
+    @Test
+    public void sameBytecode() throws Exception {
+        final List<Object> expectedPool = new ArrayList<>();
+        final int[] expected = compile(false, expectedPool);
+        final List<Object> actualPool = new ArrayList<>();
+        final int[] actual = compile(true, actualPool);
+        assertArrayEquals(expected, actual);
+        assertEquals(expectedPool.toString(), actualPool.toString());
+    }
+
+    @Test
+    public void factTables() throws Exception {
+        final List<Object> pool = new ArrayList<>();
+        // As for Factory, whose tables take index 0 to match any constant
+        pool.add(null);
+        final PrologBytecodeImpl code = new PrologBytecodeImpl(pool,
+                new CodeArea());
+        final Scope scope = Scope.newRootInstance();
+        try (final Reader reader = new StringReader("p(a,b). p(c,[]). "
+                + "q(X) :- p(X,a). p(e,f). p(X,b). p(g,h). r(a). r(X).")) {
+            new StreamingProgramCompiler(code, scope, 2).compile(reader);
+        }
+
+        // The first three facts of p/2 make up a table, the last not
+        final ClauseSymbol table = scope.resolveGlobal(
+                SymbolKeys.ofPredicate("p", 2)).getFirst();
+        assertEquals(3, table.getFacts().getRows());
+        assertEquals(pool.indexOf(FunctorSymbol.valueOf("a")),
+                table.getFacts().get(0, 0));
+        assertEquals(pool.indexOf(FunctorSymbol.valueOf("b")),
+                table.getFacts().get(0, 1));
+        assertEquals(pool.indexOf(FunctorSymbol.valueOf("[]")),
+                table.getFacts().get(1, 1));
+        assertEquals(pool.indexOf(FunctorSymbol.valueOf("e")),
+                table.getFacts().get(2, 0));
+        assertNull(table.getNext().getFacts());
+        assertNull(table.getNext().getNext().getFacts());
+        assertNull(table.getNext().getNext().getNext());
+
+        // Too few facts for r/1, which are compiled instead
+        final ClauseSymbol fact = scope.resolveGlobal(
+                SymbolKeys.ofPredicate("r", 1)).getFirst();
+        assertNull(fact.getFacts());
+        assertNull(fact.getNext().getFacts());
+    }
+
+    @Test(expected = InternalCompilerException.class)
+    public void undefinedPredicate() throws Exception {
+        final PrologBytecodeImpl code = new PrologBytecodeImpl(
+                new ArrayList<Object>(), new CodeArea());
+        try (final Reader reader = new StringReader("p :- q. r.")) {
+            new StreamingProgramCompiler(code, Scope.newRootInstance())
+                    .compile(reader);
+        }
+    }
+
+    // Compiles PROGRAM, returning the written code
+    private int[] compile(final boolean streaming, final List<Object> pool)
+            throws Exception {
+        final CodeArea area = new CodeArea();
+        final PrologBytecodeImpl code = new PrologBytecodeImpl(pool, area);
+        final Scope scope = Scope.newRootInstance();
+        final AbstractCompiler compiler = streaming
+                ? new StreamingProgramCompiler(code, scope)
+                : new ProgramCompiler(code, scope);
+        try (final InputStream is = this.getClass().getResourceAsStream(
+                PROGRAM);
+                final Reader reader = new InputStreamReader(is)) {
+            compiler.compile(reader);
+        }
+        return area.getWords(code.getCodeSize());
+    }
+}
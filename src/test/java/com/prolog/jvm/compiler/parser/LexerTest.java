@@ -3,8 +3,13 @@ package com.prolog.jvm.compiler.parser;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import org.junit.Test;
 
@@ -27,6 +32,8 @@ public final class LexerTest {
     private static final String INLINE_COMMENT = "%\r\n";
     private static final String MULTILINE_COMMENT = " \t\r\n";
 
+    private static final String PROGRAM = "program.pl"; // Class-path resource
+
     @Test
     public void nextToken() throws IOException, RecognitionException {
         // Expected tokens
@@ -51,6 +58,52 @@ public final class LexerTest {
         expectMatch(MULTILINE_COMMENT + ".", Tokens.PERIOD);
     }
 
+    @Test
+    public void blockBoundaries() throws IOException, RecognitionException {
+        // Tokens straddling, and exceeding the size of, the input buffer
+        final StringBuilder longName = new StringBuilder("x");
+        while (longName.length() < 20000) {
+            longName.append("y0_");
+        }
+        final StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            input.append("atom").append(i).append(" Var\n");
+        }
+        input.append(longName).append(" #$& .");
+        try (final Reader reader = new StringReader(input.toString())) {
+            final Lexer lexer = PrologLexer.newInstance(reader);
+            for (int i = 0; i < 3000; i++) {
+                assertEquals(Tokens.getAtom("atom" + i), lexer.nextToken());
+                assertEquals(Tokens.getVar("Var"), lexer.nextToken());
+            }
+            assertEquals(Tokens.getAtom(longName.toString()),
+                    lexer.nextToken());
+            assertEquals(Tokens.getAtom("#$&"), lexer.nextToken());
+            assertEquals(Tokens.PERIOD, lexer.nextToken());
+            assertEquals(Tokens.EOF, lexer.nextToken());
+            assertEquals(Tokens.EOF, lexer.nextToken());
+            assertEquals(3001, lexer.getLine());
+        }
+    }
+
+    @Test
+    public void mappedFile() throws Exception {
+        final Path file = Paths.get(this.getClass().getResource(PROGRAM)
+                .toURI());
+        try (final Reader expected = new InputStreamReader(
+                Files.newInputStream(file), StandardCharsets.UTF_8);
+                final Reader actual = MappedFileReader.newInstance(file,
+                        StandardCharsets.UTF_8)) {
+            final Lexer expectedLexer = PrologLexer.newInstance(expected);
+            final Lexer actualLexer = PrologLexer.newInstance(actual);
+            Token token;
+            do {
+                token = expectedLexer.nextToken();
+                assertEquals(token, actualLexer.nextToken());
+            } while (token != Tokens.EOF);
+        }
+    }
+
     @Test(expected = RecognitionException.class)
     public void wrongSlash() throws IOException, RecognitionException {
         expectException("/");
@@ -0,0 +1,229 @@
+package com.prolog.jvm.main;
+
+import static com.prolog.jvm.main.QueryFixture.compileResource;
+import static com.prolog.jvm.main.QueryFixture.execute;
+import static com.prolog.jvm.zip.util.ReplConstants.FAILURE;
+import static com.prolog.jvm.zip.util.ReplConstants.NEXT_ANSWER;
+import static com.prolog.jvm.zip.util.ReplConstants.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.prolog.jvm.exceptions.InternalCompilerException;
+
+/**
+ * Integration tests for {@link Database}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class DatabaseTest {
+
+    private Database database;
+
+    @Before
+    public void setUp() throws Exception {
+        compileResource("ancestry.pl");
+        this.database = Factory.getDatabase();
+    }
+
+    @Test
+    public void assertClauses() throws Exception {
+        this.database.assertz("father(ares, eros).");
+        this.database.asserta("father(ares, phobos).");
+        assertEquals("X = phobos X = harmonia X = eros " + FAILURE,
+                execute("father(ares,X).", ";\n;\n;\n"));
+
+        // A new predicate, calling those of the program
+        this.database.assertz("sibling(X,Y) :- parent(Z,X), parent(Z,Y).");
+        assertEquals("X = phobos " + SUCCESS,
+                execute("sibling(X,eros).", "\n"));
+    }
+
+    @Test
+    public void retractClauses() throws Exception {
+        this.database.assertz("father(ares, eros).");
+        this.database.assertz("father(ares, eros).");
+        assertTrue(this.database.retract("father( ares,eros )."));
+        assertEquals("X = harmonia X = eros " + FAILURE,
+                execute("father(ares,X).", ";\n;\n"));
+        assertTrue(this.database.retract("father(ares, eros)."));
+        assertFalse(this.database.retract("father(ares, eros)."));
+
+        // Clauses of the program itself cannot be retracted
+        assertFalse(this.database.retract("father(ares, harmonia)."));
+        assertEquals("X = harmonia " + FAILURE,
+                execute("father(ares,X).", ";\n"));
+
+        // Neither can clauses be told apart by their variables' names
+        this.database.assertz("parent(X,Y) :- father(Y,X).");
+        assertTrue(this.database.retract("parent(A,B) :- father(B,A)."));
+
+        // Clauses are compared textually rather than unified
+        this.database.assertz("father(ares, eros).");
+        assertFalse(this.database.retract("father(ares, X)."));
+    }
+
+    @Test
+    public void logicalUpdateView() throws Exception {
+        this.database.assertz("father(ares, eros).");
+        final String answers = execute("father(ares,X).",
+                new UpdatingReader() {
+                    @Override
+                    void update() throws Exception {
+                        // Neither affects the call in progress
+                        DatabaseTest.this.database.retract(
+                                "father(ares, eros).");
+                        DatabaseTest.this.database.assertz(
+                                "father(ares, phobos).");
+                    }
+                });
+        assertEquals("X = harmonia X = eros " + FAILURE, answers);
+        assertEquals("X = harmonia X = phobos " + FAILURE,
+                execute("father(ares,X).", ";\n;\n"));
+    }
+
+    @Test
+    public void codeReclamation() throws Exception {
+        final int codeSize = Factory.getBytecode().getCodeSize();
+        for (int i = 0; i < 100; i++) {
+            this.database.assertz("father(ares, eros).");
+            this.database.assertz("father(ares, phobos).");
+            this.database.retract("father(ares, eros).");
+            this.database.retract("father(ares, phobos).");
+        }
+        assertEquals(codeSize, Factory.getBytecode().getCodeSize());
+
+        // Freed code in between clauses is reused
+        this.database.assertz("father(ares, eros).");
+        this.database.assertz("father(ares, phobos).");
+        final int maxCodeSize = Factory.getBytecode().getCodeSize();
+        this.database.retract("father(ares, eros).");
+        assertTrue(this.database.getFreeCodeSize() > 0);
+        this.database.assertz("father(ares, deimos).");
+        assertEquals(0, this.database.getFreeCodeSize());
+        assertEquals(maxCodeSize, Factory.getBytecode().getCodeSize());
+        assertEquals("X = harmonia X = phobos X = deimos " + FAILURE,
+                execute("father(ares,X).", ";\n;\n;\n"));
+
+        // Reclamation is deferred for as long as a call may still see clauses
+        final String answers = execute("father(ares,X).",
+                new UpdatingReader() {
+                    @Override
+                    void update() throws Exception {
+                        DatabaseTest.this.database.retract(
+                                "father(ares, phobos).");
+                        assertEquals(0, DatabaseTest.this.database
+                                .getFreeCodeSize());
+                        DatabaseTest.this.database.assertz(
+                                "father(ares, eros).");
+                    }
+                });
+        assertEquals("X = harmonia X = phobos X = deimos " + FAILURE,
+                answers);
+        assertTrue(this.database.getFreeCodeSize() > 0);
+    }
+
+    @Test
+    public void reload() throws Exception {
+        this.database.assertz("father(ares, eros).");
+        this.database.reload(new StringReader(
+                "father(zeus, ares). father(ares, phobos).\n"
+                        + "sibling(X,Y) :- parent(Z,X), parent(Z,Y)."));
+        assertEquals("X = phobos " + FAILURE,
+                execute("father(ares,X).", ";\n"));
+        assertEquals("X = dionisius " + SUCCESS,
+                execute("parent(semele,X).", "\n"));
+        assertEquals("X = phobos " + SUCCESS,
+                execute("sibling(X,phobos).", "\n"));
+        assertFalse(this.database.retract("father(ares, eros)."));
+        assertTrue(this.database.getFreeCodeSize() > 0);
+
+        // The reloaded clauses are swapped in at once, after the call
+        final String answers = execute("father(X,Y).", new UpdatingReader() {
+            @Override
+            void update() throws Exception {
+                DatabaseTest.this.database.reload(new StringReader(
+                        "father(ares, deimos)."));
+            }
+        });
+        assertEquals("X = zeus Y = ares X = ares Y = phobos " + FAILURE,
+                answers);
+        assertEquals("X = ares Y = deimos " + FAILURE,
+                execute("father(X,Y).", ";\n"));
+    }
+
+    @Test
+    public void tabulate() throws Exception {
+        // Only father/2 has as many as three facts
+        assertEquals(1, this.database.tabulate(3));
+        assertTrue(this.database.getFreeCodeSize() > 0);
+        assertEquals("X = zeus Y = ares X = ares Y = harmonia X = zeus "
+                + "Y = dionisius " + FAILURE,
+                execute("father(X,Y).", ";\n;\n;\n"));
+        assertEquals("X = harmonia " + FAILURE,
+                execute("grandparent(zeus,X).", ";\n"));
+        assertEquals(FAILURE, execute("father(X,X).", ""));
+        assertEquals(FAILURE, execute("father(zeus,f(X)).", ""));
+
+        // Added clauses go before and after the table
+        this.database.asserta("father(ares, phobos).");
+        this.database.assertz("father(ares, eros).");
+        assertEquals("X = phobos X = harmonia X = eros " + FAILURE,
+                execute("father(ares,X).", ";\n;\n;\n"));
+
+        // The table is replaced like any other clause
+        final String answers = execute("father(zeus,X).",
+                new UpdatingReader() {
+                    @Override
+                    void update() throws Exception {
+                        DatabaseTest.this.database.reload(new StringReader(
+                                "father(ares, deimos)."));
+                    }
+                });
+        assertEquals("X = ares X = dionisius " + FAILURE, answers);
+        assertEquals("X = ares Y = deimos " + FAILURE,
+                execute("father(X,Y).", ";\n"));
+    }
+
+    @Test(expected = InternalCompilerException.class)
+    public void undefinedPredicate() throws Exception {
+        this.database.assertz("sibling(X,Y) :- brother(X,Y).");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void multipleClauses() throws Exception {
+        this.database.assertz("father(ares, eros). father(ares, phobos).");
+    }
+
+    // Asks for all answers, updating the database before the second one
+    private abstract static class UpdatingReader extends BufferedReader {
+        private boolean updated;
+
+        private UpdatingReader() {
+            super(new StringReader(""));
+        }
+
+        abstract void update() throws Exception;
+
+        @Override
+        public String readLine() throws IOException {
+            if (!this.updated) {
+                this.updated = true;
+                try {
+                    update();
+                } catch (final Exception e) {
+                    throw new AssertionError(e);
+                }
+            }
+            return NEXT_ANSWER;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.prolog.jvm.main;
+
+import static com.prolog.jvm.main.Term.atom;
+import static com.prolog.jvm.main.Term.compound;
+import static com.prolog.jvm.zip.util.ReplConstants.FAILURE;
+import static com.prolog.jvm.zip.util.ReplConstants.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Integration tests for {@link PreparedQuery}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class PreparedQueryTest {
+
+    private PreparedQuery query;
+
+    @Before
+    public void setUp() throws Exception {
+        try (final InputStream is = this.getClass().getResourceAsStream(
+                "lists.pl");
+                final Reader file = new InputStreamReader(is)) {
+            Factory.newProgramCompiler().compile(file);
+        }
+        this.query = Factory.prepareQuery("append(XS,YS,ZS).");
+    }
+
+    @Test
+    public void parameters() {
+        assertEquals(new HashSet<>(Arrays.asList("XS", "YS", "ZS")),
+                this.query.getParameters());
+    }
+
+    @Test
+    public void boundParameters() throws Exception {
+        final Term ab = compound("cons", atom("a"), compound("cons", atom("b"),
+                atom("[]")));
+        this.query.bind("XS", compound("cons", atom("a"), atom("[]")))
+                .bind("YS", compound("cons", atom("b"), atom("[]")));
+        assertEquals("ZS = cons(a, cons(b, [])) " + SUCCESS, execute(""));
+
+        // Same compiled code, other arguments
+        this.query.bind("ZS", ab);
+        assertEquals(SUCCESS, execute(""));
+        this.query.bind("ZS", "a");
+        assertEquals(FAILURE, execute(""));
+    }
+
+    @Test
+    public void unboundParameters() throws Exception {
+        this.query.bind("ZS", compound("cons", atom("a"), atom("[]")));
+        final String answer = execute(";\n;\n");
+        assertTrue(answer.contains("XS = [] "));
+        assertTrue(answer.contains("YS = cons(a, []) "));
+        assertTrue(answer.contains("XS = cons(a, []) "));
+        assertTrue(answer.contains("YS = [] "));
+        assertTrue(answer.endsWith(FAILURE));
+
+        this.query.clearBindings();
+        this.query.bind("XS", "[]").bind("YS", "b");
+        assertEquals("ZS = b " + SUCCESS, execute(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownParameter() {
+        this.query.bind("X", "a");
+    }
+
+    private String execute(final String input) throws Exception {
+        try (final BufferedReader in = new BufferedReader(new StringReader(
+                input));
+                final StringWriter out = new StringWriter()) {
+            this.query.execute(in, out);
+            return out.toString();
+        }
+    }
+}
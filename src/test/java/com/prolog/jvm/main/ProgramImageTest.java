@@ -0,0 +1,86 @@
+package com.prolog.jvm.main;
+
+import static com.prolog.jvm.zip.util.MemoryConstants.MIN_HEAP_INDEX;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.prolog.jvm.zip.api.PrologBytecode;
+
+/**
+ * Integration tests for {@link ProgramImage}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class ProgramImageTest {
+
+    private static final String QUERIES = "parent(zeus,X), parent(X,harmonia)."
+            + "\n\nfather(zeus,Y).\n;\n;\nmother(X,dionisius).\n;\n"
+            + "ancestor(zeus,harmonia).\nfathers(zeus,Y).\nhalt.\n";
+
+    @Test
+    public void roundTrip() throws Exception {
+        compile("ancestry.pl");
+        final int[] expected = getCode();
+        final String answers = runQueries();
+
+        final Path image = Files.createTempFile("ancestry", ".pli");
+        try {
+            compile("ancestry.pl");
+            Factory.saveImage(image);
+            compile("lists.pl"); // discard the program
+            Factory.loadImage(image);
+            assertArrayEquals(expected, getCode());
+            assertEquals(answers, runQueries());
+        } finally {
+            Files.delete(image);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptImage() throws Exception {
+        final Path image = Files.createTempFile("corrupt", ".pli");
+        try {
+            Files.write(image, new byte[] { 'P', 'L', 'J', 'V', 0, 0 });
+            Factory.loadImage(image);
+        } finally {
+            Files.delete(image);
+        }
+    }
+
+    private static void compile(final String resource) throws Exception {
+        try (final InputStream is = ProgramImageTest.class
+                .getResourceAsStream(resource);
+                final Reader file = new InputStreamReader(is)) {
+            Factory.newProgramCompiler().compile(file);
+        }
+    }
+
+    private static int[] getCode() {
+        final PrologBytecode<?> code = Factory.getBytecode();
+        final int[] words = new int[code.getCodeSize() - MIN_HEAP_INDEX];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = code.read(MIN_HEAP_INDEX + i);
+        }
+        return words;
+    }
+
+    private static String runQueries() throws Exception {
+        try (final Reader reader = new StringReader(QUERIES);
+                final StringWriter writer = new StringWriter()) {
+            Repl.INSTANCE.run(reader, writer);
+            return writer.toString();
+        }
+    }
+}
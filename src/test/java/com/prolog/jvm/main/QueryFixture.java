@@ -0,0 +1,94 @@
+package com.prolog.jvm.main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import com.prolog.jvm.exceptions.RecognitionException;
+
+/**
+ * Test utility class for compiling programs through the {@link Factory} and
+ * running queries against them, shared by the integration tests.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class QueryFixture {
+
+    // Private to prevent instantiation.
+    private QueryFixture() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Compiles the program stored in the resource of the specified
+     * {@code name}, located relative to the {@link Factory} class.
+     *
+     * @throws IOException
+     * @throws RecognitionException
+     */
+    public static void compileResource(final String name) throws IOException,
+            RecognitionException {
+        try (final InputStream is = Factory.class.getResourceAsStream(name);
+                final Reader file = new InputStreamReader(is)) {
+            Factory.newProgramCompiler().compile(file);
+        }
+    }
+
+    /**
+     * Compiles the specified {@code program}.
+     *
+     * @throws IOException
+     * @throws RecognitionException
+     */
+    public static void compile(final String program) throws IOException,
+            RecognitionException {
+        Factory.newProgramCompiler().compile(new StringReader(program));
+    }
+
+    /**
+     * Executes the specified {@code query}, reading the user's responses
+     * from {@code input}, and returns the answers written.
+     *
+     * @throws Exception
+     */
+    public static String execute(final String query, final String input)
+            throws Exception {
+        return execute(query, new BufferedReader(new StringReader(input)));
+    }
+
+    /**
+     * Executes the specified {@code query}, reading the user's responses
+     * from {@code in}, and returns the answers written.
+     *
+     * @throws Exception
+     */
+    public static String execute(final String query, final BufferedReader in)
+            throws Exception {
+        return execute(Factory.prepareQuery(query), in);
+    }
+
+    /**
+     * Executes the specified prepared {@code query}, reading the user's
+     * responses from {@code input}, and returns the answers written.
+     *
+     * @throws Exception
+     */
+    public static String execute(final PreparedQuery query,
+            final String input) throws Exception {
+        return execute(query, new BufferedReader(new StringReader(input)));
+    }
+
+    private static String execute(final PreparedQuery query,
+            final BufferedReader in) throws Exception {
+        try (final StringWriter out = new StringWriter()) {
+            query.execute(in, out);
+            return out.toString();
+        }
+    }
+
+}
@@ -57,6 +57,79 @@ public final class ReplTest {
             .halt();
     }
 
+    @Test
+    public void cachedQueries() throws Exception {
+        final long hits = Factory.getQueryCache().getHits();
+        ZipAssert.forFile(EXAMPLE_1)
+            .prompt("parent(zeus,X), parent(X,harmonia).")
+            .binding("X", "ares")
+            .enough()
+            .yes()
+            .prompt("parent(zeus, Z),parent(Z , harmonia).")
+            .binding("Z", "ares")
+            .enough()
+            .yes()
+            .prompt("father(zeus,Y).")
+            .binding("Y", "ares")
+            .more()
+            .binding("Y", "dionisius")
+            .more()
+            .no()
+            .prompt("father(zeus,Y).")
+            .binding("Y", "ares")
+            .more()
+            .binding("Y", "dionisius")
+            .more()
+            .no()
+            .prompt("father(zeus,zeus).")
+            .no()
+            .prompt("fathers(zeus,Y).")
+            .error("No clauses defined for predicate fathers/2")
+            .prompt("fathers(zeus,Y).")
+            .error("No clauses defined for predicate fathers/2")
+            .halt();
+
+        // The second parent/2 and father/2 queries were found in the cache,
+        // whereas queries failing to compile are not cached
+        assertEquals(hits + 2, Factory.getQueryCache().getHits());
+        assertEquals(3, Factory.getQueryCache().size());
+    }
+
+    @Test
+    public void cachedQueriesAfterAssert() throws Exception {
+        try (final InputStream is = this.getClass().getResourceAsStream(
+                EXAMPLE_1);
+                final Reader file = new InputStreamReader(is)) {
+            Factory.newProgramCompiler().compile(file);
+        }
+        final String query = "father(zeus,zzz).\n" + HALT + "\n";
+        assertEquals(PROMPT + FAILURE + PROMPT, run(query));
+
+        // The asserted clause takes the pool index zzz had during the query
+        Factory.getDatabase().assertz("father(zeus, eros).");
+        assertEquals(PROMPT + FAILURE + PROMPT, run(query));
+        assertEquals(PROMPT + SUCCESS + PROMPT,
+                run("father(zeus,eros).\n" + HALT + "\n"));
+    }
+
+    @Test
+    public void cachedQueriesAfterPreparedQuery() throws Exception {
+        try (final InputStream is = this.getClass().getResourceAsStream(
+                EXAMPLE_2);
+                final Reader file = new InputStreamReader(is)) {
+            Factory.newProgramCompiler().compile(file);
+        }
+        final String query = "append(cons(qq,[]),[],Z).\n\n" + HALT + "\n";
+        final String answer = PROMPT + "Z = cons(qq, []) " + SUCCESS + PROMPT;
+        assertEquals(answer, run(query));
+
+        // Adds a constant to the pool outside of any database generation
+        Factory.prepareQuery("append(XS,YS,ZS).").bind("XS", "zz");
+        final long hits = Factory.getQueryCache().getHits();
+        assertEquals(answer, run(query));
+        assertEquals(hits + 1, Factory.getQueryCache().getHits());
+    }
+
     @Test
     public void lists() throws Exception {
         ZipAssert.forFile(EXAMPLE_2)
@@ -94,6 +167,29 @@ public final class ReplTest {
             .halt();
     }
 
+    @Test
+    public void backtrackIntoStructures() throws Exception {
+        // Failures in the midst of unifying or matching structures
+        ZipAssert.forFile(EXAMPLE_2)
+            .prompt("append(X,X,cons(a,cons(b,cons(a,cons(b,[]))))).")
+            .binding("X", "cons(a, cons(b, []))")
+            .more()
+            .no()
+            .prompt("append(X,cons(f(b,c),[]),cons(f(a,c),cons(f(b,c),[]))).")
+            .binding("X", "cons(f(a, c), [])")
+            .more()
+            .no()
+            .halt();
+    }
+
+    private static String run(final String queries) throws Exception {
+        try (final Reader reader = new StringReader(queries);
+                final StringWriter writer = new StringWriter()) {
+            Repl.INSTANCE.run(reader, writer);
+            return writer.toString();
+        }
+    }
+
     private static class ZipAssert {
 
         private final StringBuilder in = new StringBuilder();
@@ -0,0 +1,64 @@
+package com.prolog.jvm.symbol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link Scope}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class ScopeTest {
+
+    private static final SymbolKey<FunctorSymbol> A = SymbolKeys.ofFunctor(
+            "a", 0);
+    private static final SymbolKey<FunctorSymbol> B = SymbolKeys.ofFunctor(
+            "b", 0);
+
+    private Scope base;
+    private Scope overlay;
+
+    @Before
+    public void setUp() {
+        this.base = Scope.newRootInstance();
+        this.base.defineGlobal(A, FunctorSymbol.valueOf("a"));
+        this.overlay = Scope.newOverlayInstance(this.base);
+    }
+
+    @Test
+    public void resolveFallsBackOnBase() {
+        assertSame(this.base.resolveGlobal(A), this.overlay.resolveGlobal(A));
+        assertSame(this.base.resolveLocal(A), this.overlay.resolveLocal(A));
+        assertNull(this.overlay.resolveGlobal(B));
+
+        // Definitions in the overlay shadow those in the base
+        final FunctorSymbol a = FunctorSymbol.valueOf("a");
+        this.overlay.defineLocal(A, a);
+        assertSame(a, this.overlay.resolveLocal(A));
+        this.overlay.removeLocal(A);
+        assertSame(this.base.resolveLocal(A), this.overlay.resolveLocal(A));
+    }
+
+    @Test
+    public void definitionsDoNotLeak() {
+        // As for the symbols defined while resolving a query's clause
+        final Scope clause = Scope.newIntermediateInstance(this.overlay);
+        clause.defineGlobal(B, FunctorSymbol.valueOf("b"));
+        assertSame(this.overlay.resolveLocal(B), clause.resolveGlobal(B));
+        assertSame(this.base.resolveLocal(A), clause.resolveGlobal(A));
+        assertNull(this.base.resolveGlobal(B));
+        assertEquals(Collections.singleton(A), this.base.getKeys());
+
+        // Only the overlay's own symbols are reported
+        assertEquals(Collections.singleton(B), this.overlay.getKeys());
+        assertEquals(1, this.overlay.getSize());
+    }
+
+}
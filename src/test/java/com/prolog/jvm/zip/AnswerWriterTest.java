@@ -0,0 +1,76 @@
+package com.prolog.jvm.zip;
+
+import static com.prolog.jvm.main.QueryFixture.compile;
+import static com.prolog.jvm.main.QueryFixture.execute;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.prolog.jvm.main.Factory;
+import com.prolog.jvm.main.Term;
+
+/**
+ * Integration tests for {@link AnswerWriter}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class AnswerWriterTest {
+
+    private static final String PROGRAM = "id(X,X).\n"
+            + "pair(X,Y,p(X,Y)).\n"
+            + "dbl(z,z).\n"
+            + "dbl(s(X),s(s(Y))) :- dbl(X,Y).\n";
+
+    @Before
+    public void setUp() throws Exception {
+        compile(PROGRAM);
+    }
+
+    @After
+    public void tearDown() {
+        Factory.getInterpreter().setMaxAnswerDepth(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void freshVariables() throws Exception {
+        // Numbered after the query variables, restarting for each answer
+        assertEquals("X = p(?3, ?4) A = ?3 B = ?4 no\n",
+                execute("pair(A,B,X).", ";\n"));
+        assertEquals("X = ?2 Y = p(?2, ?2) no\n",
+                execute("pair(X,X,Y).", ";\n"));
+    }
+
+    @Test
+    public void longChain() throws Exception {
+        // Doubling thrice yields a chain 8 times longer than the input
+        final int n = 5000;
+        Term input = Term.atom("z");
+        for (int i = 0; i < n; i++) {
+            input = Term.compound("s", input);
+        }
+        final String answer = execute(Factory.prepareQuery(
+                "dbl(N,A), dbl(A,B), dbl(B,C).").bind("N", input), "");
+        final int start = answer.indexOf("C = ") + 4;
+        final String expected = repeat("s(", 8 * n) + "z" + repeat(")", 8 * n);
+        assertEquals(expected, answer.substring(start,
+                start + expected.length()));
+    }
+
+    @Test
+    public void depthLimit() throws Exception {
+        Factory.getInterpreter().setMaxAnswerDepth(2);
+        final String answer = execute("id(X,f(a,g(b,h(c)),V)).", ";\n");
+        assertEquals("X = f(a, g(b, ...), ?2) V = ?2 no\n", answer);
+    }
+
+    private static String repeat(final String s, final int n) {
+        final StringBuilder result = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            result.append(s);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package com.prolog.jvm.zip;
+
+import static com.prolog.jvm.main.QueryFixture.compileResource;
+import static com.prolog.jvm.main.QueryFixture.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.prolog.jvm.main.Factory;
+
+/**
+ * Integration tests for {@link FlightRecorder} and
+ * {@link FlightRecordDecoder}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class FlightRecorderTest {
+
+    private static final String QUERY = "reverse(cons(a,cons(b,[])),X).";
+
+    @Before
+    public void setUp() throws Exception {
+        compileResource("lists.pl");
+    }
+
+    @Test
+    public void mappedFile() throws Exception {
+        final Path file = Files.createTempFile("trace", ".zipt");
+        try {
+            final long count;
+            try (final FlightRecorder recorder = FlightRecorder.newInstance(
+                    Factory.getBytecode(), file, 1000)) {
+                record(recorder);
+                count = recorder.getCount();
+            }
+            final String[] lines = decode(file);
+            assertEquals(count, lines.length);
+            assertTrue(lines[0].startsWith("           0  "));
+            assertTrue(lines[0].contains("ENTER")); // the query's neck
+            boolean called = false;
+            for (final String line : lines) {
+                called |= line.contains("CALL") && line.contains("#");
+            }
+            assertTrue(called);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void ringBuffer() throws Exception {
+        final FlightRecorder recorder = FlightRecorder.newInstance(
+                Factory.getBytecode(), 8);
+        record(recorder);
+        final long count = recorder.getCount();
+        assertTrue(count > 8);
+
+        final Path file = Files.createTempFile("trace", ".zipt");
+        try {
+            try (final OutputStream out = Files.newOutputStream(file)) {
+                recorder.writeTo(out);
+            }
+            // Only the most recent records are kept, oldest first
+            final String[] lines = decode(file);
+            assertEquals(8, lines.length);
+            assertEquals(count - 8, Long.parseLong(lines[0].trim().split(
+                    " ")[0]));
+            assertEquals(count - 1, Long.parseLong(lines[7].trim().split(
+                    " ")[0]));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptRecord() throws Exception {
+        final Path file = Files.createTempFile("corrupt", ".zipt");
+        try {
+            Files.write(file, new byte[] { 'Z', 'I', 'P', 'T', 0, 0 });
+            decode(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void record(final FlightRecorder recorder)
+            throws Exception {
+        Factory.getInterpreter().register(recorder);
+        try {
+            execute(QUERY, ";\n");
+        } finally {
+            Factory.getInterpreter().unregister(recorder);
+        }
+    }
+
+    private static String[] decode(final Path file) throws IOException {
+        final StringWriter out = new StringWriter();
+        FlightRecordDecoder.decode(file, out);
+        return out.toString().split("\n");
+    }
+}
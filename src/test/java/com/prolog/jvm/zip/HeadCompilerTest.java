@@ -0,0 +1,92 @@
+package com.prolog.jvm.zip;
+
+import static com.prolog.jvm.main.QueryFixture.compile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.prolog.jvm.main.Factory;
+import com.prolog.jvm.main.QueryFixture;
+import com.prolog.jvm.symbol.ClauseSymbol;
+import com.prolog.jvm.symbol.PredicateSymbol;
+import com.prolog.jvm.zip.api.CompiledHead;
+
+/**
+ * Integration tests for {@link HeadCompiler}, comparing the answers found
+ * using compiled heads against those found by the interpreter alone.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class HeadCompilerTest {
+
+    private static final String PROGRAM = "id(X,X).\n"
+            + "app([],YS,YS).\n"
+            + "app(c(X,XS),YS,c(X,ZS)) :- app(XS,YS,ZS).\n"
+            + "first(f(a,g(X,_),_),X).\n"
+            + "first(f(b,_,h(X)),X).\n"
+            + "pair(X,Y,p(X,Y),q(_)).\n";
+
+    private static final String[] QUERIES = { "app(X,Y,c(a,c(b,[]))).",
+            "app(c(a,[]),c(b,[]),Z).", "first(f(A,g(b,c),h(d)),X).",
+            "first(Y,X).", "pair(X,Y,Z,W).", "pair(a,b,p(A,B),q(C)).",
+            "pair(a,b,p(b,a),Q).", "id(f(X,Y),f(Y,a))." };
+
+    @Before
+    public void setUp() throws Exception {
+        compile(PROGRAM);
+    }
+
+    @After
+    public void tearDown() {
+        Factory.getInterpreter().setCompileThreshold(100);
+    }
+
+    @Test
+    public void sameAnswers() throws Exception {
+        final String[] expected = new String[QUERIES.length];
+        Factory.getInterpreter().setCompileThreshold(0);
+        for (int i = 0; i < QUERIES.length; i++) {
+            expected[i] = execute(QUERIES[i]);
+        }
+        Factory.getInterpreter().setCompileThreshold(1);
+        for (int i = 0; i < QUERIES.length; i++) {
+            assertEquals(QUERIES[i], expected[i], execute(QUERIES[i]));
+        }
+    }
+
+    @Test
+    public void threshold() throws Exception {
+        Factory.getInterpreter().setCompileThreshold(2);
+        execute("id(a,X).");
+        final ClauseSymbol clause = getPredicate("id", 2).getFirst();
+        assertNull(clause.getCompiledHead());
+        execute("id(a,X).");
+        final CompiledHead head = clause.getCompiledHead();
+        assertNotNull(head);
+        // FIRSTVAR 0, VAR 0
+        assertEquals(4, head.getLength());
+    }
+
+    // Looks up the predicate in the constant pool, as referred to by queries
+    private static PredicateSymbol getPredicate(final String name,
+            final int arity) {
+        for (int i = 1;; i++) {
+            final Object constant = Factory.getMachine().getConstant(i,
+                    Object.class);
+            if (constant instanceof PredicateSymbol
+                    && ((PredicateSymbol) constant).getName().equals(name)
+                    && ((PredicateSymbol) constant).getArity() == arity) {
+                return (PredicateSymbol) constant;
+            }
+        }
+    }
+
+    private static String execute(final String query) throws Exception {
+        return QueryFixture.execute(query, ";\n;\n;\n;\n");
+    }
+}
@@ -0,0 +1,105 @@
+package com.prolog.jvm.zip;
+
+import static com.prolog.jvm.main.QueryFixture.compileResource;
+import static com.prolog.jvm.main.QueryFixture.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.prolog.jvm.main.Factory;
+import com.prolog.jvm.zip.PortProfiler.SortKey;
+import com.prolog.jvm.zip.PortProfiler.Statistics;
+import com.prolog.jvm.zip.api.PortListener;
+import com.prolog.jvm.zip.api.StepListener;
+
+/**
+ * Integration tests for {@link PortProfiler}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class PortProfilerTest {
+
+    private final PortProfiler profiler = new PortProfiler();
+
+    @Before
+    public void setUp() throws Exception {
+        compileResource("lists.pl");
+        Factory.getInterpreter().register((PortListener) this.profiler);
+        Factory.getInterpreter().register((StepListener) this.profiler);
+    }
+
+    @After
+    public void tearDown() {
+        Factory.getInterpreter().unregister((PortListener) this.profiler);
+        Factory.getInterpreter().unregister((StepListener) this.profiler);
+    }
+
+    @Test
+    public void deterministicCall() throws Exception {
+        // Trying the second clause after the first failed is not a redo
+        execute("append(cons(a,[]),cons(b,[]),cons(a,cons(b,[]))).", "");
+        assertPorts("append/3", 2, 2, 0, 0);
+    }
+
+    @Test
+    public void backtrackIntoExitedCalls() throws Exception {
+        execute("append(X,Y,cons(a,[])).", ";\n;\n");
+        assertPorts("append/3", 2, 3, 3, 2);
+    }
+
+    @Test
+    public void nestedCalls() throws Exception {
+        execute("reverse(cons(a,cons(b,[])),X).", ";\n");
+        final Statistics reverse = get("reverse/2");
+        final Statistics append = get("append/3");
+        assertEquals(3, reverse.getCalls());
+        assertEquals(3, append.getCalls());
+        // Every entry into a box is matched by a departure
+        assertEquals(reverse.getCalls() + reverse.getRedos(),
+                reverse.getExits() + reverse.getFails());
+        assertEquals(append.getCalls() + append.getRedos(),
+                append.getExits() + append.getFails());
+        assertTrue(reverse.getInstructions() > 0);
+        assertTrue(reverse.getTotalTime() >= append.getTotalTime());
+        assertEquals(reverse, this.profiler.getStatistics(
+                SortKey.TOTAL_TIME).get(0));
+
+        final StringWriter csv = new StringWriter();
+        this.profiler.writeCsv(csv);
+        final String[] lines = csv.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].startsWith("reverse/2,3,"));
+    }
+
+    @Test
+    public void noMatchingClause() throws Exception {
+        // A call for which no clause matches fails without exiting
+        execute("reverse(a,X).", "");
+        assertPorts("reverse/2", 1, 0, 0, 1);
+    }
+
+    private void assertPorts(final String predicate, final long calls,
+            final long exits, final long redos, final long fails) {
+        final Statistics statistics = get(predicate);
+        assertEquals(calls, statistics.getCalls());
+        assertEquals(exits, statistics.getExits());
+        assertEquals(redos, statistics.getRedos());
+        assertEquals(fails, statistics.getFails());
+    }
+
+    private Statistics get(final String predicate) {
+        for (final Statistics s : this.profiler.getStatistics(
+                SortKey.CALLS)) {
+            if (s.getPredicate().toString().equals(predicate)) {
+                return s;
+            }
+        }
+        throw new AssertionError(predicate);
+    }
+}
@@ -0,0 +1,96 @@
+package com.prolog.jvm.zip;
+
+import static com.prolog.jvm.main.QueryFixture.compileResource;
+import static com.prolog.jvm.main.QueryFixture.execute;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.prolog.jvm.main.Factory;
+import com.prolog.jvm.zip.api.Sampler;
+import com.prolog.jvm.zip.api.ZipFacade;
+
+/**
+ * Integration tests for {@link SamplingProfiler}, taking a sample after each
+ * instruction so as to make the outcome deterministic.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class SamplingProfilerTest {
+
+    @Before
+    public void setUp() throws Exception {
+        compileResource("lists.pl");
+    }
+
+    @After
+    public void tearDown() {
+        Factory.getInterpreter().setSampler(null);
+    }
+
+    @Test
+    public void collapsedStacks() throws Exception {
+        final List<String> lines = profile(64);
+        assertTrue(lines.contains("<query>;ARG"));
+        assertTrue(lines.contains("<query>;reverse/2:2;MATCH"));
+        assertTrue(lines.contains("<query>;reverse/2:2;ARG"));
+        assertTrue(lines.contains(
+                "<query>;reverse/2:2;reverse/2:2;append/3:1;MATCH"));
+        assertTrue(lines.contains(
+                "<query>;reverse/2:2;append/3:2;append/3:1;MATCH"));
+        for (final String line : lines) {
+            assertTrue(line, line.startsWith("<query>"));
+        }
+    }
+
+    @Test
+    public void truncatedStacks() throws Exception {
+        final List<String> lines = profile(2);
+        assertTrue(lines.contains("...;append/3:2;append/3:1;MATCH"));
+        for (final String line : lines) {
+            assertTrue(line, line.split(";").length <= 4);
+        }
+    }
+
+    // Returns the sampled stacks, after checking their counts add up
+    private static List<String> profile(final int maxDepth)
+            throws Exception {
+        final SamplingProfiler profiler = Factory.newSamplingProfiler(1L,
+                TimeUnit.DAYS, maxDepth);
+        Factory.getInterpreter().setSampler(new Sampler() {
+            @Override
+            public boolean isDue() {
+                return true;
+            }
+
+            @Override
+            public void sample(final ZipFacade facade) {
+                profiler.sample(facade);
+            }
+        });
+        execute("reverse(cons(a,cons(b,[])),X).", "");
+
+        final StringWriter collapsed = new StringWriter();
+        profiler.writeCollapsed(collapsed);
+        final List<String> result = Arrays.asList(
+                collapsed.toString().split("\n"));
+        long total = 0L;
+        for (int i = 0; i < result.size(); i++) {
+            final String line = result.get(i);
+            final int space = line.lastIndexOf(' ');
+            total += Long.parseLong(line.substring(space + 1));
+            result.set(i, line.substring(0, space));
+        }
+        assertEquals(profiler.getSampleCount(), total);
+        return result;
+    }
+}
@@ -1,5 +1,6 @@
 package com.prolog.jvm.zip;
 
+import static com.prolog.jvm.zip.util.MemoryConstants.MIN_HEAP_INDEX;
 import static com.prolog.jvm.zip.util.PlWords.CONS;
 import static com.prolog.jvm.zip.util.PlWords.FUNC;
 import static com.prolog.jvm.zip.util.PlWords.LIS;
@@ -17,6 +18,7 @@ import java.util.List;
 
 import org.junit.Test;
 
+import com.prolog.jvm.symbol.ClauseSymbol;
 import com.prolog.jvm.symbol.FunctorSymbol;
 import com.prolog.jvm.zip.api.MemoryArea;
 
@@ -191,6 +193,108 @@ public final class ZipFacadeTest {
         assertEquals(getWord(STR, 3), wordStore[17]);
     }
 
+    @Test
+    public final void unifyAfterFailure() {
+        // Keep a reference to the word store for post-asserts
+        final int[] wordStore = new int[] {
+                getWord(STR, 1), // f(X,a)
+                getWord(FUNC, 0),
+                getWord(REF, 2),
+                getWord(CONS, 1),
+                getWord(STR, 5), // f(b,b)
+                getWord(FUNC, 0),
+                getWord(CONS, 2),
+                getWord(CONS, 2),
+                getWord(REF, 8), // Y
+                getWord(CONS, 1) }; // a
+
+        // Mock constant pool
+        final List<Object> constants = new ArrayList<>();
+        constants.add(FunctorSymbol.valueOf("f", 2));
+
+        // Build (Note: trailing disabled by default)
+        final ZipFacadeMockImpl facade = this.builder.setConstants(constants)
+                .setWordStore(new MemoryAreaMockImpl(wordStore))
+                .setPdl(new MemoryAreaMockImpl(new int[8])).build();
+
+        // #1: Unification fails on the second arguments, before the first
+        assertNull(facade.unifiable(0, 4));
+
+        // #2: Unification does not pick up where the previous one failed
+        assertEquals(1, facade.unifiable(8, 9).size());
+        assertEquals(getWord(CONS, 1), wordStore[8]);
+        assertEquals(getWord(REF, 2), wordStore[2]);
+    }
+
+    @Test
+    public final void unifyShared() {
+        // Keep a reference to the word store for post-asserts
+        final int[] wordStore = new int[] {
+                getWord(STR, 2), // f(X)
+                getWord(STR, 2), // The same f(X)
+                getWord(FUNC, 0),
+                getWord(REF, 3) };
+
+        // Mock constant pool
+        final List<Object> constants = new ArrayList<>();
+        constants.add(FunctorSymbol.valueOf("f", 1));
+
+        // Build (Note: trailing disabled by default)
+        final ZipFacadeMockImpl facade = this.builder.setConstants(constants)
+                .setWordStore(new MemoryAreaMockImpl(wordStore))
+                .setPdl(new MemoryAreaMockImpl(new int[4])).build();
+
+        // Identical pointers are unified without visiting their arguments
+        assertEquals(0, facade.unifiable(0, 1).size());
+    }
+
+    @Test
+    public final void shareTerm() throws Exception {
+        // Keep a reference to the word store for post-asserts
+        final int[] wordStore = new int[16];
+
+        // Mock constant pool
+        final FunctorSymbol f = FunctorSymbol.valueOf("f", 1);
+        final List<Object> constants = new ArrayList<>();
+        constants.add(f);
+        constants.add(FunctorSymbol.valueOf("a", 0));
+        constants.add(FunctorSymbol.valueOf("b", 0));
+
+        // Build, using the top cells for binding the terms pushed
+        final ZipFacadeMockImpl facade = this.builder.setConstants(constants)
+                .setWordStore(new MemoryAreaMockImpl(wordStore))
+                .build();
+        facade.setHashConsing(true);
+        facade.reset(MIN_HEAP_INDEX);
+
+        // #1: The first f(a) is consed
+        facade.setWord(15, facade.pushFunctor(f));
+        wordStore[1] = getWord(CONS, 1);
+        facade.shareTerm(15);
+        assertEquals(getWord(STR, 0), wordStore[15]);
+
+        // #2: The second is replaced by the first, and popped
+        facade.setWord(14, facade.pushFunctor(f));
+        wordStore[3] = getWord(CONS, 1);
+        facade.shareTerm(14);
+        assertEquals(getWord(STR, 0), wordStore[14]);
+        assertEquals(getWord(STR, 2), facade.pushFunctor(f));
+
+        // #3: Terms consed after a choice point are forgotten upon
+        // backtracking to it
+        facade.pushChoicePoint(new ClauseSymbol(), 0, 0);
+        facade.setWord(13, facade.pushFunctor(f));
+        wordStore[5] = getWord(CONS, 2);
+        facade.shareTerm(13);
+        facade.backtrack(new ArrayList<Integer>());
+        facade.setWord(12, facade.pushFunctor(f));
+        wordStore[5] = getWord(CONS, 1);
+        facade.setWord(11, facade.pushFunctor(f));
+        wordStore[7] = getWord(CONS, 2);
+        facade.shareTerm(11);
+        assertEquals(getWord(STR, 6), wordStore[11]);
+    }
+
     // Memory area mock implementation backed by an array supplied by the
     // client code
     private static final class MemoryAreaMockImpl implements MemoryArea {
@@ -0,0 +1,94 @@
+package com.prolog.jvm.zip;
+
+import static com.prolog.jvm.main.QueryFixture.compileResource;
+import static com.prolog.jvm.main.QueryFixture.execute;
+import static com.prolog.jvm.zip.util.MemoryConstants.MIN_GLOBAL_INDEX;
+import static com.prolog.jvm.zip.util.MemoryConstants.MIN_LOCAL_INDEX;
+import static com.prolog.jvm.zip.util.MemoryConstants.MIN_TRAIL_INDEX;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.prolog.jvm.main.Factory;
+import com.prolog.jvm.zip.api.ZipMetricsMXBean;
+
+/**
+ * Integration tests for {@link ZipMetrics}.
+ *
+ * @author Arno Bastenhof
+ *
+ */
+public final class ZipMetricsTest {
+
+    private final ZipMetricsMXBean metrics =
+            Factory.getInterpreter().getMetrics();
+
+    @Before
+    public void setUp() throws Exception {
+        compileResource("lists.pl");
+        this.metrics.reset();
+    }
+
+    @Test
+    public void counters() throws Exception {
+        execute("append(X,Y,cons(a,[])).", ";\n;\n");
+        assertEquals(1L, this.metrics.getQueries());
+        assertEquals(3L, this.metrics.getBacktracks());
+        assertTrue(this.metrics.getInstructions() > 0L);
+        assertTrue(this.metrics.getQueriesPerSecond() > 0.0);
+
+        long queries = 0L;
+        for (final long count : this.metrics.getLatencyHistogram()) {
+            queries += count;
+        }
+        assertEquals(1L, queries);
+        assertEquals(this.metrics.getLatencyBucketBounds().length,
+                this.metrics.getLatencyHistogram().length);
+
+        this.metrics.reset();
+        assertEquals(0L, this.metrics.getQueries());
+        assertEquals(0L, this.metrics.getBacktracks());
+        assertEquals(0L, this.metrics.getInstructions());
+    }
+
+    @Test
+    public void highWaterMarks() throws Exception {
+        execute("append(X,Y,cons(a,cons(b,[]))).", ";\n;\n;\n");
+        // Backtracking cut the stacks back to where they were at the start
+        assertEquals(0, this.metrics.getChoicePointDepth());
+        assertTrue(this.metrics.getChoicePointHighWaterMark() > 0);
+        assertTrue(this.metrics.getGlobalStackHighWaterMark()
+                > MIN_GLOBAL_INDEX);
+        assertTrue(this.metrics.getLocalStackHighWaterMark()
+                > MIN_LOCAL_INDEX);
+        assertTrue(this.metrics.getTrailHighWaterMark() >= MIN_TRAIL_INDEX);
+        assertTrue(this.metrics.getGlobalStackHighWaterMark()
+                >= this.metrics.getGlobalStackTop());
+        assertTrue(this.metrics.getScratchpadHighWaterMark()
+                > this.metrics.getScratchpadTop());
+    }
+
+    @Test
+    public void firstArgumentIndexing() throws Exception {
+        // Each call's first argument selects a single clause alternative
+        execute("reverse(cons(a,cons(b,[])),X).", "");
+        assertEquals(0L, this.metrics.getBacktracks());
+        assertEquals(0, this.metrics.getChoicePointHighWaterMark());
+    }
+
+    @Test
+    public void registration() throws Exception {
+        Factory.registerMBean();
+        Factory.registerMBean(); // no-op
+        execute("append([],[],X).", "");
+        assertEquals(Long.valueOf(1L), ManagementFactory
+                .getPlatformMBeanServer().getAttribute(new ObjectName(
+                        "com.prolog.jvm:type=ZipInterpreter"), "Queries"));
+    }
+}